@@ -9,11 +9,23 @@ import org.springframework.util.StringUtils;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.ProfileCredentialsProvider;
+import software.amazon.awssdk.awscore.retry.AwsRetryStrategy;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.http.Protocol;
+import software.amazon.awssdk.http.ProtocolNegotiation;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
 import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
 import software.amazon.awssdk.services.rekognition.RekognitionClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.SqsAsyncClientBuilder;
 import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.SqsClientBuilder;
+
+import java.net.URI;
+import java.time.Duration;
 
 @Configuration
 public class AwsConfig {
@@ -26,6 +38,28 @@ public class AwsConfig {
     @Value("${aws.profile:}")
     private String profile;
 
+    @Value("${aws.bedrock.async.max-concurrency:256}")
+    private int bedrockAsyncMaxConcurrency;
+
+    @Value("${aws.bedrock.async.http2:true}")
+    private boolean bedrockAsyncHttp2;
+
+    /** SQS endpoint to use instead of AWS, such as a local ElasticMQ or LocalStack. */
+    @Value("${aws.sqs.endpoint:}")
+    private String sqsEndpoint;
+
+    /** Longest single request attempt of the S3, SQS and Rekognition clients. */
+    @Value("${aws.api-call-attempt-timeout:30s}")
+    private Duration apiCallAttemptTimeout;
+
+    /** Longest time for all attempts of one S3, SQS or Rekognition call, including retries. */
+    @Value("${aws.api-call-timeout:2m}")
+    private Duration apiCallTimeout;
+
+    /** Longest single Bedrock request, streamed or not; BedrockInvoker retries on its own. */
+    @Value("${aws.bedrock.api-call-attempt-timeout:2m}")
+    private Duration bedrockApiCallAttemptTimeout;
+
     @Bean
     public AwsCredentialsProvider awsCredentialsProvider() {
         if (StringUtils.hasText(profile)) {
@@ -45,6 +79,7 @@ public class AwsConfig {
         return RekognitionClient.builder()
                 .region(Region.of(region))
                 .credentialsProvider(provider)
+                .overrideConfiguration(this::timeouts)
                 .build();
     }
 
@@ -53,23 +88,83 @@ public class AwsConfig {
         return S3Client.builder()
                 .region(Region.of(region))
                 .credentialsProvider(provider)
+                .overrideConfiguration(this::timeouts)
                 .build();
     }
 
     @Bean
     public SqsClient sqsClient(AwsCredentialsProvider provider) {
-        return SqsClient.builder()
+        SqsClientBuilder builder = SqsClient.builder()
                 .region(Region.of(region))
                 .credentialsProvider(provider)
-                .build();
+                .overrideConfiguration(this::timeouts);
+        if (StringUtils.hasText(sqsEndpoint)) {
+            log.info("Using SQS endpoint {}", sqsEndpoint);
+            builder.endpointOverride(URI.create(sqsEndpoint));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Non-blocking SQS client, so the batches of a large enqueue are all in flight at once.
+     */
+    @Bean
+    public SqsAsyncClient sqsAsyncClient(AwsCredentialsProvider provider) {
+        SqsAsyncClientBuilder builder = SqsAsyncClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(provider)
+                .overrideConfiguration(this::timeouts);
+        if (StringUtils.hasText(sqsEndpoint)) {
+            builder.endpointOverride(URI.create(sqsEndpoint));
+        }
+        return builder.build();
     }
 
+    /**
+     * Bedrock clients do not retry on their own: BedrockInvoker retries with backoff and needs
+     * to see every throttle to adjust its concurrency limit.
+     */
     @Bean
     public BedrockRuntimeClient bedrockRuntimeClient(AwsCredentialsProvider provider) {
         log.info("Configuring Bedrock Runtime client for region: {}", region);
         return BedrockRuntimeClient.builder()
                 .region(Region.of(region))
                 .credentialsProvider(provider)
+                .overrideConfiguration(o -> o.retryStrategy(AwsRetryStrategy.doNotRetry())
+                        .apiCallAttemptTimeout(bedrockApiCallAttemptTimeout))
+                .build();
+    }
+
+    /**
+     * Non-blocking Bedrock client on a Netty connection pool.
+     * With HTTP/2 many model calls are multiplexed over a few connections, and no thread
+     * is held while a call is in flight.
+     */
+    @Bean
+    public BedrockRuntimeAsyncClient bedrockRuntimeAsyncClient(AwsCredentialsProvider provider) {
+        log.info("Configuring Bedrock Runtime async client for region: {} (max concurrency: {}, HTTP/2: {})",
+                region, bedrockAsyncMaxConcurrency, bedrockAsyncHttp2);
+        NettyNioAsyncHttpClient.Builder httpClient = NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(bedrockAsyncMaxConcurrency);
+        if (bedrockAsyncHttp2) {
+            httpClient.protocol(Protocol.HTTP2)
+                    .protocolNegotiation(ProtocolNegotiation.ALPN);
+        }
+        return BedrockRuntimeAsyncClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(provider)
+                .httpClientBuilder(httpClient)
+                .overrideConfiguration(o -> o.retryStrategy(AwsRetryStrategy.doNotRetry())
+                        .apiCallAttemptTimeout(bedrockApiCallAttemptTimeout))
                 .build();
     }
+
+    /**
+     * Default timeouts, so no call can hang a worker indefinitely. Card processing requests
+     * shorten them further to fit the card's remaining budget.
+     */
+    private void timeouts(ClientOverrideConfiguration.Builder override) {
+        override.apiCallAttemptTimeout(apiCallAttemptTimeout)
+                .apiCallTimeout(apiCallTimeout);
+    }
 }
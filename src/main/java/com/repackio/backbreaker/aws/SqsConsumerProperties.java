@@ -0,0 +1,58 @@
+package com.repackio.backbreaker.aws;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the card processing queue consumer.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "aws.sqs.consumer")
+public class SqsConsumerProperties {
+
+    /**
+     * Whether this instance consumes the card processing queue.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Threads long-polling the queue. Each receive asks for at most as many messages as there
+     * are idle workers, up to 10.
+     */
+    private int pollers = 2;
+
+    /**
+     * Cards processed at the same time by this instance.
+     */
+    private int workers = 8;
+
+    /**
+     * Long-poll wait of each receive (at most 20 seconds).
+     */
+    private Duration waitTime = Duration.ofSeconds(20);
+
+    /**
+     * Visibility timeout of received messages, renewed by the heartbeat while a card is processed.
+     */
+    private Duration visibilityTimeout = Duration.ofMinutes(2);
+
+    /**
+     * How often the visibility of messages still being processed is renewed.
+     */
+    private Duration heartbeatInterval = Duration.ofSeconds(60);
+
+    /**
+     * Longest a processed message waits for others to share its delete batch.
+     */
+    private Duration ackMaxWait = Duration.ofMillis(500);
+
+    /**
+     * Deliveries after which a card that keeps failing is marked as failed and its message
+     * dropped. Should match the queue's redrive {@code maxReceiveCount}.
+     */
+    private int maxReceiveCount = 5;
+}
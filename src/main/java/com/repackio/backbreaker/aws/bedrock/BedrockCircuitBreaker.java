@@ -0,0 +1,231 @@
+package com.repackio.backbreaker.aws.bedrock;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Circuit breaker for Bedrock calls, kept separately for each model in the configured region.
+ * <p>
+ * While closed, the outcomes of the last {@code window} calls are kept; once enough are known and
+ * the share of failed or of slow calls reaches its threshold, the circuit opens and calls fail at
+ * once with {@link BedrockUnavailableException}. After {@code open-duration} the circuit is half
+ * open: a few trial calls go through, and it closes again if they all succeed quickly, or reopens
+ * otherwise. The state is exported as the {@code bedrock.circuit.state} gauge (0 closed, 1 half
+ * open, 2 open) and every transition is counted in {@code bedrock.circuit.transitions}.
+ */
+@Slf4j
+@Component
+public class BedrockCircuitBreaker {
+
+    public enum State { CLOSED, HALF_OPEN, OPEN }
+
+    private final BedrockModelConfig.CircuitBreaker settings;
+    private final MeterRegistry meterRegistry;
+    private final String region;
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+
+    public BedrockCircuitBreaker(BedrockModelConfig modelConfig, MeterRegistry meterRegistry,
+                                 @Value("${aws.region}") String region) {
+        this.settings = modelConfig.getCircuitBreaker();
+        this.meterRegistry = meterRegistry;
+        this.region = region;
+    }
+
+    /**
+     * Starts a call to {@code modelId}. Exactly one of the returned call's outcome methods must be
+     * called once it is known.
+     *
+     * @throws BedrockUnavailableException if the circuit is open
+     */
+    public Call begin(String modelId) {
+        if (!settings.isEnabled()) {
+            return Call.NOOP;
+        }
+        return circuitFor(modelId).begin();
+    }
+
+    /**
+     * Current state of the circuit for a model.
+     */
+    public State getState(String modelId) {
+        Circuit circuit = circuits.get(modelId);
+        return circuit == null ? State.CLOSED : circuit.state();
+    }
+
+    private Circuit circuitFor(String modelId) {
+        return circuits.computeIfAbsent(modelId, k -> {
+            Circuit circuit = new Circuit(modelId);
+            Gauge.builder("bedrock.circuit.state", circuit, c -> c.state().ordinal())
+                    .description("Bedrock circuit breaker state: 0 closed, 1 half open, 2 open")
+                    .tags("model", modelId, "region", region)
+                    .register(meterRegistry);
+            return circuit;
+        });
+    }
+
+    /**
+     * A call admitted by the breaker.
+     */
+    public interface Call {
+
+        Call NOOP = new Call() {
+            @Override
+            public void succeeded(long elapsedNanos) {
+            }
+
+            @Override
+            public void failed() {
+            }
+
+            @Override
+            public void ignored() {
+            }
+        };
+
+        /** The call completed; it still counts against the circuit if it was slow. */
+        void succeeded(long elapsedNanos);
+
+        /** Bedrock failed the call, or it timed out. */
+        void failed();
+
+        /** The call failed for reasons that say nothing about Bedrock's health, or never ran. */
+        void ignored();
+    }
+
+    private final class Circuit {
+
+        private final String modelId;
+        private final boolean[] failures;
+        private final boolean[] slow;
+        private int next;
+        private int size;
+        private State state = State.CLOSED;
+        /** Incremented on every transition, so outcomes of calls begun in an earlier state are dropped. */
+        private long generation;
+        private long openedNanos;
+        private int trials;
+        private int trialSuccesses;
+
+        Circuit(String modelId) {
+            this.modelId = modelId;
+            int window = Math.max(1, settings.getWindow());
+            this.failures = new boolean[window];
+            this.slow = new boolean[window];
+        }
+
+        synchronized State state() {
+            return state;
+        }
+
+        synchronized Call begin() {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedNanos < settings.getOpenDuration().toNanos()) {
+                    throw rejected();
+                }
+                transition(State.HALF_OPEN);
+            }
+            boolean trial = state == State.HALF_OPEN;
+            if (trial) {
+                if (trials >= settings.getHalfOpenCalls()) {
+                    throw rejected();
+                }
+                trials++;
+            }
+            long callGeneration = generation;
+            return new Call() {
+                @Override
+                public void succeeded(long elapsedNanos) {
+                    record(callGeneration, false, elapsedNanos >= settings.getSlowCallDuration().toNanos());
+                }
+
+                @Override
+                public void failed() {
+                    record(callGeneration, true, false);
+                }
+
+                @Override
+                public void ignored() {
+                    release(callGeneration, trial);
+                }
+            };
+        }
+
+        private synchronized void record(long callGeneration, boolean failed, boolean wasSlow) {
+            if (callGeneration != generation) {
+                return;
+            }
+            if (state == State.HALF_OPEN) {
+                if (failed || wasSlow) {
+                    open(failed ? "trial call failed" : "trial call was slow");
+                } else if (++trialSuccesses >= settings.getHalfOpenCalls()) {
+                    transition(State.CLOSED);
+                }
+                return;
+            }
+            failures[next] = failed;
+            slow[next] = wasSlow;
+            next = (next + 1) % failures.length;
+            size = Math.min(size + 1, failures.length);
+            if (size < settings.getMinCalls()) {
+                return;
+            }
+            double failureRate = rate(failures);
+            double slowRate = rate(slow);
+            if (failureRate >= settings.getFailureRateThreshold()) {
+                open(String.format("%.0f%% of the last %d calls failed", failureRate * 100, size));
+            } else if (slowRate >= settings.getSlowCallRateThreshold()) {
+                open(String.format("%.0f%% of the last %d calls took over %s",
+                        slowRate * 100, size, settings.getSlowCallDuration()));
+            }
+        }
+
+        private synchronized void release(long callGeneration, boolean trial) {
+            if (trial && callGeneration == generation) {
+                trials--;
+            }
+        }
+
+        private double rate(boolean[] outcomes) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (outcomes[i]) {
+                    count++;
+                }
+            }
+            return (double) count / size;
+        }
+
+        private void open(String reason) {
+            log.warn("Bedrock circuit for {} in {} opening for {}: {}",
+                    modelId, region, settings.getOpenDuration(), reason);
+            openedNanos = System.nanoTime();
+            transition(State.OPEN);
+        }
+
+        private void transition(State to) {
+            if (to != State.OPEN) {
+                log.info("Bedrock circuit for {} in {}: {} -> {}", modelId, region, state, to);
+            }
+            meterRegistry.counter("bedrock.circuit.transitions", "model", modelId, "region", region,
+                    "from", state.name().toLowerCase(), "to", to.name().toLowerCase()).increment();
+            state = to;
+            generation++;
+            trials = 0;
+            trialSuccesses = 0;
+            next = 0;
+            size = 0;
+        }
+
+        private BedrockUnavailableException rejected() {
+            meterRegistry.counter("bedrock.circuit.rejected", "model", modelId, "region", region).increment();
+            return new BedrockUnavailableException("Bedrock circuit for " + modelId + " in " + region + " is " +
+                    state.name().toLowerCase().replace('_', ' '));
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.repackio.backbreaker.aws.bedrock;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Adaptive concurrency limit for Bedrock calls, kept separately for each model and use case.
+ * <p>
+ * The limit follows an AIMD scheme: every successful call at normal latency raises it by
+ * {@code 1/limit} (about one slot per round of calls), a call much slower than the running
+ * average lowers it by 10%, and a throttled call multiplies it by the configured backoff ratio.
+ * Callers over the limit wait in FIFO order. The current limit and in-flight count are exported
+ * as the {@code bedrock.limiter.limit} and {@code bedrock.limiter.in_flight} gauges.
+ */
+@Slf4j
+@Component
+public class BedrockConcurrencyLimiter {
+
+    public enum Outcome {
+        /** The call completed; its latency feeds the limit. */
+        SUCCESS,
+        /** Bedrock rejected the call for capacity reasons. */
+        THROTTLED,
+        /** The call failed for unrelated reasons or never ran; the limit is left unchanged. */
+        IGNORED
+    }
+
+    private static final double LATENCY_DECREASE_RATIO = 0.9;
+    private static final double LATENCY_SMOOTHING = 0.05;
+
+    private final BedrockModelConfig.Limiter settings;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AdaptiveLimit> limits = new ConcurrentHashMap<>();
+
+    public BedrockConcurrencyLimiter(BedrockModelConfig modelConfig, MeterRegistry meterRegistry) {
+        this.settings = modelConfig.getLimiter();
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Requests a slot for a call. The returned future completes once the call may proceed, or
+     * fails with {@link BedrockThrottledException} if no slot frees up within the configured
+     * acquire timeout. Cancelling it gives up the caller's place in the queue.
+     */
+    public CompletableFuture<Permit> acquire(String modelId, String useCase) {
+        if (!settings.isEnabled()) {
+            return CompletableFuture.completedFuture(new Permit(null));
+        }
+        return limitFor(modelId, useCase).acquire();
+    }
+
+    /**
+     * Blocking variant of {@link #acquire}; gives up after the configured acquire timeout.
+     */
+    public Permit acquireBlocking(String modelId, String useCase) throws InterruptedException {
+        CompletableFuture<Permit> pending = acquire(modelId, useCase);
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            abandon(pending);
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BedrockThrottledException throttled) {
+                throw throttled;
+            }
+            throw new IllegalStateException("Bedrock concurrency slot request failed", e.getCause());
+        }
+    }
+
+    /**
+     * Current limit for a model and use case, or the initial limit if it has not been used yet.
+     */
+    public double getLimit(String modelId, String useCase) {
+        AdaptiveLimit limit = limits.get(key(modelId, useCase));
+        return limit == null ? settings.getInitialLimit() : limit.currentLimit();
+    }
+
+    private void abandon(CompletableFuture<Permit> pending) {
+        // If the slot was granted concurrently, hand it straight back.
+        if (!pending.cancel(false) && !pending.isCompletedExceptionally()) {
+            pending.join().release(Outcome.IGNORED);
+        }
+    }
+
+    private AdaptiveLimit limitFor(String modelId, String useCase) {
+        return limits.computeIfAbsent(key(modelId, useCase), k -> {
+            AdaptiveLimit limit = new AdaptiveLimit(modelId, useCase);
+            Tags tags = Tags.of("model", modelId, "use_case", useCaseTag(useCase));
+            Gauge.builder("bedrock.limiter.limit", limit, AdaptiveLimit::currentLimit)
+                    .description("Adaptive concurrency limit for Bedrock calls")
+                    .tags(tags)
+                    .register(meterRegistry);
+            Gauge.builder("bedrock.limiter.in_flight", limit, AdaptiveLimit::currentInFlight)
+                    .description("Bedrock calls currently holding a concurrency slot")
+                    .tags(tags)
+                    .register(meterRegistry);
+            return limit;
+        });
+    }
+
+    private static String key(String modelId, String useCase) {
+        return modelId + "|" + useCaseTag(useCase);
+    }
+
+    static String useCaseTag(String useCase) {
+        return useCase == null ? "default" : useCase;
+    }
+
+    /**
+     * A granted slot. Must be released exactly once with the outcome of the call.
+     */
+    public static final class Permit {
+
+        private final AdaptiveLimit owner;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(AdaptiveLimit owner) {
+            this.owner = owner;
+        }
+
+        public void release(Outcome outcome) {
+            if (owner != null && released.compareAndSet(false, true)) {
+                owner.release(outcome, System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    private final class AdaptiveLimit {
+
+        private final String modelId;
+        private final String useCase;
+        private final Deque<CompletableFuture<Permit>> waiters = new ArrayDeque<>();
+        private double limit = settings.getInitialLimit();
+        private double averageLatencyNanos;
+        private int inFlight;
+
+        AdaptiveLimit(String modelId, String useCase) {
+            this.modelId = modelId;
+            this.useCase = useCase;
+        }
+
+        synchronized double currentLimit() {
+            return limit;
+        }
+
+        synchronized int currentInFlight() {
+            return inFlight;
+        }
+
+        CompletableFuture<Permit> acquire() {
+            synchronized (this) {
+                if (inFlight < effectiveLimit()) {
+                    inFlight++;
+                    return CompletableFuture.completedFuture(new Permit(this));
+                }
+                CompletableFuture<Permit> waiter = new CompletableFuture<>();
+                waiters.add(waiter);
+                expireLater(waiter);
+                return waiter;
+            }
+        }
+
+        /**
+         * Fails the waiter once the acquire timeout passes, and drops a waiter that timed out or
+         * was cancelled from the queue so it cannot hold up or take a slot meant for others.
+         */
+        private void expireLater(CompletableFuture<Permit> waiter) {
+            CompletableFuture.delayedExecutor(settings.getAcquireTimeout().toNanos(), TimeUnit.NANOSECONDS)
+                    .execute(() -> waiter.completeExceptionally(new BedrockThrottledException(
+                            "No Bedrock concurrency slot for " + modelId + " within " + settings.getAcquireTimeout(),
+                            new TimeoutException())));
+            waiter.whenComplete((permit, error) -> {
+                if (error != null) {
+                    synchronized (this) {
+                        waiters.remove(waiter);
+                    }
+                }
+            });
+        }
+
+        void release(Outcome outcome, long latencyNanos) {
+            List<CompletableFuture<Permit>> granted = new ArrayList<>();
+            synchronized (this) {
+                inFlight--;
+                adjust(outcome, latencyNanos);
+                while (inFlight < effectiveLimit() && !waiters.isEmpty()) {
+                    CompletableFuture<Permit> waiter = waiters.poll();
+                    if (!waiter.isDone()) {
+                        inFlight++;
+                        granted.add(waiter);
+                    }
+                }
+            }
+            // Complete outside the lock: callers continue their work on this thread.
+            for (CompletableFuture<Permit> waiter : granted) {
+                Permit permit = new Permit(this);
+                if (!waiter.complete(permit)) {
+                    permit.release(Outcome.IGNORED);
+                }
+            }
+        }
+
+        private void adjust(Outcome outcome, long latencyNanos) {
+            double previous = limit;
+            switch (outcome) {
+                case THROTTLED -> limit = Math.max(settings.getMinLimit(), limit * settings.getBackoffRatio());
+                case SUCCESS -> {
+                    if (averageLatencyNanos > 0 && latencyNanos > averageLatencyNanos * settings.getLatencyTolerance()) {
+                        limit = Math.max(settings.getMinLimit(), limit * LATENCY_DECREASE_RATIO);
+                    } else if (inFlight + 1 >= effectiveLimit() / 2) {
+                        // Only grow while the current limit is actually being used.
+                        limit = Math.min(settings.getMaxLimit(), limit + 1.0 / limit);
+                    }
+                    averageLatencyNanos = averageLatencyNanos == 0
+                            ? latencyNanos
+                            : averageLatencyNanos + LATENCY_SMOOTHING * (latencyNanos - averageLatencyNanos);
+                }
+                case IGNORED -> {
+                }
+            }
+            if ((int) previous != (int) limit) {
+                log.info("Bedrock concurrency limit for {} ({}) changed {} -> {} after {} call",
+                        modelId, useCaseTag(useCase), (int) previous, (int) limit, outcome.name().toLowerCase());
+            }
+        }
+
+        private int effectiveLimit() {
+            return Math.max(1, (int) limit);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.repackio.backbreaker.aws.bedrock;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Hedged Bedrock calls: when a call has not answered within a percentile of the recent latency of
+ * its model, a second, identical call is sent and whichever answers first wins.
+ * <p>
+ * Hedges are paid for out of a budget that every call adds {@code bedrock.hedge.max-rate} to, so
+ * at most that fraction of calls is ever duplicated, however slow Bedrock gets. The outcome of
+ * each call is counted in {@code bedrock.hedge.calls} (tag {@code outcome}: {@code not_needed},
+ * {@code primary_won}, {@code hedge_won}, {@code no_budget}), from which the hedge and win rates
+ * follow.
+ */
+@Slf4j
+@Component
+public class BedrockHedger {
+
+    /** Hedges the budget can save up while traffic is fast, so a burst of slow calls can use them. */
+    private static final double MAX_BUDGET = 10;
+
+    private final BedrockModelConfig.Hedge settings;
+    private final BedrockModelConfig modelConfig;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final Object budgetLock = new Object();
+    private double budget;
+
+    public BedrockHedger(BedrockModelConfig modelConfig, MeterRegistry meterRegistry) {
+        this.modelConfig = modelConfig;
+        this.settings = modelConfig.getHedge();
+        this.meterRegistry = meterRegistry;
+        log.info("Bedrock hedging: enabled={}, percentile={}, max rate={}, hedge model={}",
+                settings.isEnabled(), settings.getPercentile(), settings.getMaxRate(),
+                settings.getModel().isEmpty() ? "same as call" : settings.getModel());
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    /**
+     * Runs {@code call} against {@code modelId} and, if it is still running after the hedge delay
+     * and the budget allows, once more against the hedge model. The first successful answer wins
+     * and the other call is cancelled; the result only fails once both calls have failed.
+     *
+     * @param call Sends the call to the given model ID; must not block
+     */
+    public <T> CompletableFuture<T> hedge(String useCase, String modelId, Function<String, CompletableFuture<T>> call) {
+        if (!settings.isEnabled()) {
+            return call.apply(modelId);
+        }
+        addBudget();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture<T> primary = timed(modelId, call);
+        Race<T> race = new Race<>(result, primary);
+        primary.whenComplete((value, error) -> race.finished(false, value, error));
+
+        long delay = delayMillis(modelId);
+        if (delay < 0) {
+            primary.whenComplete((value, error) -> count(useCase, modelId, "not_needed"));
+        } else {
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+                String outcome = race.claimHedge(this::spendBudget);
+                if (outcome != null) {
+                    count(useCase, modelId, outcome);
+                    return;
+                }
+                String hedgeModelId = settings.getModel().isEmpty()
+                        ? modelId
+                        : modelConfig.resolveModelId(settings.getModel());
+                log.debug("Bedrock call to {} slower than {} ms, hedging to {}", modelId, delay, hedgeModelId);
+                CompletableFuture<T> hedge = timed(hedgeModelId, call);
+                race.hedged(hedge);
+                hedge.whenComplete((value, error) -> race.finished(true, value, error));
+                result.whenComplete((value, error) -> count(useCase, modelId, race.hedgeWon ? "hedge_won" : "primary_won"));
+            });
+        }
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                race.cancelAll();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * How long a call to {@code modelId} may run before it is hedged, or -1 while too few of its
+     * latencies are known.
+     */
+    long delayMillis(String modelId) {
+        LatencyWindow window = latencies.get(modelId);
+        long percentile = window == null ? -1 : window.percentile(settings.getPercentile(), settings.getMinSamples());
+        return percentile < 0 ? -1 : Math.max(percentile, settings.getMinDelay().toMillis());
+    }
+
+    private <T> CompletableFuture<T> timed(String modelId, Function<String, CompletableFuture<T>> call) {
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.apply(modelId);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                latencies.computeIfAbsent(modelId, k -> new LatencyWindow(settings.getWindow()))
+                        .add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        });
+        return future;
+    }
+
+    private void addBudget() {
+        synchronized (budgetLock) {
+            budget = Math.min(MAX_BUDGET, budget + settings.getMaxRate());
+        }
+    }
+
+    private boolean spendBudget() {
+        synchronized (budgetLock) {
+            if (budget < 1) {
+                return false;
+            }
+            budget--;
+            return true;
+        }
+    }
+
+    private void count(String useCase, String modelId, String outcome) {
+        meterRegistry.counter("bedrock.hedge.calls", "model", modelId,
+                "use_case", BedrockConcurrencyLimiter.useCaseTag(useCase), "outcome", outcome).increment();
+    }
+
+    /**
+     * The primary call and, once sent, its hedge, racing to complete {@code result}.
+     */
+    private static final class Race<T> {
+
+        private final CompletableFuture<T> result;
+        private final CompletableFuture<T> primary;
+        private boolean hedging;
+        private CompletableFuture<T> hedge;
+        private int failures;
+        private volatile boolean hedgeWon;
+
+        Race(CompletableFuture<T> result, CompletableFuture<T> primary) {
+            this.result = result;
+            this.primary = primary;
+        }
+
+        /**
+         * Commits to sending a hedge, so a failure of the primary call waits for it.
+         *
+         * @return null if the hedge should be sent, otherwise the outcome to count instead
+         */
+        synchronized String claimHedge(BooleanSupplier budget) {
+            if (result.isDone() || primary.isDone()) {
+                return "not_needed";
+            }
+            if (!budget.getAsBoolean()) {
+                return "no_budget";
+            }
+            hedging = true;
+            return null;
+        }
+
+        void hedged(CompletableFuture<T> hedge) {
+            synchronized (this) {
+                if (!result.isDone()) {
+                    this.hedge = hedge;
+                    return;
+                }
+            }
+            hedge.cancel(true);
+        }
+
+        void finished(boolean fromHedge, T value, Throwable error) {
+            CompletableFuture<T> loser;
+            synchronized (this) {
+                if (result.isDone()) {
+                    return;
+                }
+                if (error != null) {
+                    // A failure only ends the race once nothing else is left running
+                    if (++failures < (hedging ? 2 : 1)) {
+                        return;
+                    }
+                    result.completeExceptionally(error);
+                    return;
+                }
+                hedgeWon = fromHedge;
+                loser = fromHedge ? primary : hedge;
+            }
+            result.complete(value);
+            if (loser != null) {
+                loser.cancel(true);
+            }
+        }
+
+        synchronized void cancelAll() {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * The most recent successful call latencies of one model.
+     */
+    private static final class LatencyWindow {
+
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[Math.max(1, capacity)];
+        }
+
+        synchronized void add(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        /**
+         * The given percentile (0-1) of the window, or -1 with fewer than {@code minSamples} samples.
+         */
+        synchronized long percentile(double percentile, int minSamples) {
+            if (size == 0 || size < minSamples) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * size) - 1;
+            return sorted[Math.max(0, Math.min(size - 1, index))];
+        }
+    }
+}
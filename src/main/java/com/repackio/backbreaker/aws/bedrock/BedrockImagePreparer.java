@@ -0,0 +1,81 @@
+package com.repackio.backbreaker.aws.bedrock;
+
+import com.repackio.backbreaker.image.EncodedImage;
+import com.repackio.backbreaker.image.ImageCodec;
+import com.repackio.backbreaker.image.Resampler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Chooses the bytes embedded in a Bedrock request for an image.
+ * <p>
+ * The uploaded file is sent as-is when the model accepts its encoding, size and dimensions and
+ * it has no EXIF rotation (the model would see it rotated relative to the decoded pixels that the
+ * analysis is applied to). Otherwise the decoded image is encoded to JPEG once, scaled down to
+ * {@code bedrock.image.resize-dimension} if it is over the limits.
+ */
+@Slf4j
+@Component
+public class BedrockImagePreparer {
+
+    private final BedrockModelConfig.Image limits;
+
+    public BedrockImagePreparer(BedrockModelConfig modelConfig) {
+        this.limits = modelConfig.getImage();
+    }
+
+    /**
+     * @param decoded The decoded pixels the analysis will be applied to
+     * @param source  The encoded original of {@code decoded}, or null if there is none
+     */
+    public EncodedImage prepare(BufferedImage decoded, EncodedImage source) throws IOException {
+        if (source != null) {
+            String rejection = passThroughRejection(source);
+            if (rejection == null) {
+                log.debug("Sending original image to Bedrock: {}", source);
+                return source;
+            }
+            log.info("Re-encoding image for Bedrock ({}): {}", rejection, source);
+        }
+
+        if (Math.max(decoded.getWidth(), decoded.getHeight()) > limits.getMaxDimension()) {
+            return ImageCodec.encodeJpeg(scaleToFit(decoded, limits.getResizeDimension()));
+        }
+        EncodedImage encoded = ImageCodec.encodeJpeg(decoded);
+        if (encoded.sizeBytes() > limits.getMaxBytes()) {
+            log.info("Encoded image is {} bytes, over the {} byte limit; resizing", encoded.sizeBytes(), limits.getMaxBytes());
+            return ImageCodec.encodeJpeg(scaleToFit(decoded, limits.getResizeDimension()));
+        }
+        return encoded;
+    }
+
+    private String passThroughRejection(EncodedImage source) {
+        if (!limits.getMediaTypes().contains(source.mediaType())) {
+            return "unsupported media type";
+        }
+        if (source.sizeBytes() > limits.getMaxBytes()) {
+            return "over " + limits.getMaxBytes() + " bytes";
+        }
+        if (source.longestEdge() > limits.getMaxDimension()) {
+            return "over " + limits.getMaxDimension() + " px";
+        }
+        if (ImageCodec.exifOrientation(source) != 1) {
+            return "EXIF orientation";
+        }
+        return null;
+    }
+
+    private static BufferedImage scaleToFit(BufferedImage image, int longestEdge) {
+        double scale = (double) longestEdge / Math.max(image.getWidth(), image.getHeight());
+        if (scale >= 1.0) {
+            return image;
+        }
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        return Resampler.resize(image, width, height, Resampler.Filter.AREA, false);
+    }
+}
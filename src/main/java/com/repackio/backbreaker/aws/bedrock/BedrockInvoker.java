@@ -0,0 +1,366 @@
+package com.repackio.backbreaker.aws.bedrock;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.exception.AbortedException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelRequest;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelResponse;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamRequest;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamResponseHandler;
+import software.amazon.awssdk.services.bedrockruntime.model.ModelNotReadyException;
+import software.amazon.awssdk.services.bedrockruntime.model.ServiceUnavailableException;
+import software.amazon.awssdk.services.bedrockruntime.model.ThrottlingException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Sends prepared requests to Bedrock through the adaptive concurrency limiter.
+ * <p>
+ * Throttled and transient failures are retried with exponential backoff and full jitter. The
+ * Bedrock clients themselves do not retry (see {@code AwsConfig}), so every throttle is visible
+ * to the limiter. If Bedrock is still throttling after the last attempt a
+ * {@link BedrockThrottledException} is thrown; other failures are rethrown as-is. Every attempt
+ * also passes the {@link BedrockCircuitBreaker}, which fails it with
+ * {@link BedrockUnavailableException} while the model's circuit is open.
+ */
+@Slf4j
+@Component
+public class BedrockInvoker {
+
+    private enum FailureKind { THROTTLED, TRANSIENT, PERMANENT }
+
+    private final BedrockRuntimeClient bedrockClient;
+    private final BedrockRuntimeAsyncClient bedrockAsyncClient;
+    private final BedrockConcurrencyLimiter limiter;
+    private final BedrockCircuitBreaker circuitBreaker;
+    private final BedrockModelConfig.Retry retry;
+    private final MeterRegistry meterRegistry;
+
+    public BedrockInvoker(BedrockRuntimeClient bedrockClient,
+                          BedrockRuntimeAsyncClient bedrockAsyncClient,
+                          BedrockConcurrencyLimiter limiter,
+                          BedrockCircuitBreaker circuitBreaker,
+                          BedrockModelConfig modelConfig,
+                          MeterRegistry meterRegistry) {
+        this.bedrockClient = bedrockClient;
+        this.bedrockAsyncClient = bedrockAsyncClient;
+        this.limiter = limiter;
+        this.circuitBreaker = circuitBreaker;
+        this.retry = modelConfig.getRetry();
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Invokes the model, blocking the calling thread until a response arrives.
+     */
+    public InvokeModelResponse invoke(String useCase, InvokeModelRequest request) {
+        String modelId = request.modelId();
+        for (int attempt = 1; ; attempt++) {
+            BedrockCircuitBreaker.Call breakerCall = circuitBreaker.begin(modelId);
+            BedrockConcurrencyLimiter.Permit permit;
+            try {
+                permit = limiter.acquireBlocking(modelId, useCase);
+            } catch (InterruptedException e) {
+                breakerCall.ignored();
+                throw interrupted(e);
+            } catch (RuntimeException e) {
+                breakerCall.ignored();
+                throw e;
+            }
+
+            long sent = System.nanoTime();
+            try {
+                InvokeModelResponse response = bedrockClient.invokeModel(request);
+                permit.release(BedrockConcurrencyLimiter.Outcome.SUCCESS);
+                breakerCall.succeeded(System.nanoTime() - sent);
+                return response;
+            } catch (SdkException e) {
+                FailureKind kind = classify(e);
+                permit.release(kind == FailureKind.THROTTLED
+                        ? BedrockConcurrencyLimiter.Outcome.THROTTLED
+                        : BedrockConcurrencyLimiter.Outcome.IGNORED);
+                report(breakerCall, kind);
+                if (!shouldRetry(kind, attempt, modelId, useCase, e)) {
+                    throw finalFailure(kind, attempt, modelId, e);
+                }
+                try {
+                    Thread.sleep(backoff(attempt).toMillis());
+                } catch (InterruptedException ie) {
+                    throw interrupted(ie);
+                }
+            } catch (RuntimeException e) {
+                permit.release(BedrockConcurrencyLimiter.Outcome.IGNORED);
+                breakerCall.ignored();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Invokes the model without blocking. Cancelling the returned future cancels the in-flight
+     * request and any pending retry.
+     */
+    public CompletableFuture<InvokeModelResponse> invokeAsync(String useCase, InvokeModelRequest request) {
+        CompletableFuture<InvokeModelResponse> result = new CompletableFuture<>();
+        attemptAsync(useCase, request, 1, result);
+        return result;
+    }
+
+    private void attemptAsync(String useCase, InvokeModelRequest request, int attempt,
+                              CompletableFuture<InvokeModelResponse> result) {
+        if (result.isDone()) {
+            return;
+        }
+        String modelId = request.modelId();
+        BedrockCircuitBreaker.Call breakerCall;
+        try {
+            breakerCall = circuitBreaker.begin(modelId);
+        } catch (BedrockUnavailableException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        CompletableFuture<BedrockConcurrencyLimiter.Permit> slot = limiter.acquire(modelId, useCase);
+        // A caller that gives up while queued leaves the queue instead of taking a slot later
+        result.whenComplete((r, e) -> slot.cancel(false));
+        slot.whenComplete((permit, acquireError) -> {
+            if (acquireError != null) {
+                breakerCall.ignored();
+                result.completeExceptionally(acquireError);
+                return;
+            }
+            if (result.isDone()) {
+                permit.release(BedrockConcurrencyLimiter.Outcome.IGNORED);
+                breakerCall.ignored();
+                return;
+            }
+            long sent = System.nanoTime();
+
+            CompletableFuture<InvokeModelResponse> call = bedrockAsyncClient.invokeModel(request);
+            result.whenComplete((r, e) -> {
+                if (result.isCancelled()) {
+                    call.cancel(true);
+                }
+            });
+            call.whenComplete((response, error) -> {
+                if (error == null) {
+                    permit.release(BedrockConcurrencyLimiter.Outcome.SUCCESS);
+                    breakerCall.succeeded(System.nanoTime() - sent);
+                    result.complete(response);
+                    return;
+                }
+
+                Throwable cause = unwrap(error);
+                FailureKind kind = cause instanceof SdkException sdk ? classify(sdk) : FailureKind.PERMANENT;
+                permit.release(kind == FailureKind.THROTTLED
+                        ? BedrockConcurrencyLimiter.Outcome.THROTTLED
+                        : BedrockConcurrencyLimiter.Outcome.IGNORED);
+                report(breakerCall, kind);
+                if (result.isDone()) {
+                    return;
+                }
+                if (!shouldRetry(kind, attempt, modelId, useCase, cause)) {
+                    result.completeExceptionally(finalFailure(kind, attempt, modelId, cause));
+                    return;
+                }
+                CompletableFuture.delayedExecutor(backoff(attempt).toMillis(), TimeUnit.MILLISECONDS)
+                        .execute(() -> attemptAsync(useCase, request, attempt + 1, result));
+            });
+        });
+    }
+
+    /**
+     * Invokes the model with a streamed response, without blocking. Each payload chunk (one JSON
+     * event of the provider's stream format) is passed to {@code onChunk} as it arrives; when it
+     * returns false the stream is stopped and the returned future completes normally, so callers
+     * can end a call as soon as they have what they need. Cancelling the returned future also
+     * stops the stream.
+     * <p>
+     * Failures before the first chunk are retried like {@link #invokeAsync}. Once chunks have
+     * been delivered a failure is final, since a retry would deliver them again.
+     */
+    public CompletableFuture<Void> invokeStreamAsync(String useCase, InvokeModelWithResponseStreamRequest request,
+                                                     Predicate<byte[]> onChunk) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        attemptStreamAsync(useCase, request, onChunk, 1, result);
+        return result;
+    }
+
+    private void attemptStreamAsync(String useCase, InvokeModelWithResponseStreamRequest request,
+                                    Predicate<byte[]> onChunk, int attempt, CompletableFuture<Void> result) {
+        if (result.isDone()) {
+            return;
+        }
+        String modelId = request.modelId();
+        BedrockCircuitBreaker.Call breakerCall;
+        try {
+            breakerCall = circuitBreaker.begin(modelId);
+        } catch (BedrockUnavailableException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        CompletableFuture<BedrockConcurrencyLimiter.Permit> slot = limiter.acquire(modelId, useCase);
+        // A caller that gives up while queued leaves the queue instead of taking a slot later
+        result.whenComplete((r, e) -> slot.cancel(false));
+        slot.whenComplete((permit, acquireError) -> {
+            if (acquireError != null) {
+                breakerCall.ignored();
+                result.completeExceptionally(acquireError);
+                return;
+            }
+            if (result.isDone()) {
+                permit.release(BedrockConcurrencyLimiter.Outcome.IGNORED);
+                breakerCall.ignored();
+                return;
+            }
+            long sent = System.nanoTime();
+
+            AtomicBoolean delivered = new AtomicBoolean();
+            InvokeModelWithResponseStreamResponseHandler handler = InvokeModelWithResponseStreamResponseHandler.builder()
+                    .subscriber(InvokeModelWithResponseStreamResponseHandler.Visitor.builder()
+                            .onChunk(part -> {
+                                delivered.set(true);
+                                if (!result.isDone() && !onChunk.test(part.bytes().asByteArrayUnsafe())) {
+                                    result.complete(null);
+                                }
+                            })
+                            .build())
+                    .build();
+
+            CompletableFuture<Void> call = bedrockAsyncClient.invokeModelWithResponseStream(request, handler);
+            result.whenComplete((r, e) -> {
+                if (!call.isDone()) {
+                    call.cancel(true);
+                }
+            });
+            call.whenComplete((ignored, error) -> {
+                boolean stoppedEarly = result.isDone() && !result.isCompletedExceptionally();
+                if (error == null || stoppedEarly) {
+                    permit.release(BedrockConcurrencyLimiter.Outcome.SUCCESS);
+                    breakerCall.succeeded(System.nanoTime() - sent);
+                    result.complete(null);
+                    return;
+                }
+
+                Throwable cause = unwrap(error);
+                FailureKind kind = cause instanceof SdkException sdk ? classify(sdk) : FailureKind.PERMANENT;
+                permit.release(kind == FailureKind.THROTTLED
+                        ? BedrockConcurrencyLimiter.Outcome.THROTTLED
+                        : BedrockConcurrencyLimiter.Outcome.IGNORED);
+                report(breakerCall, kind);
+                if (result.isDone()) {
+                    return;
+                }
+                if (delivered.get() || !shouldRetry(kind, attempt, modelId, useCase, cause)) {
+                    result.completeExceptionally(finalFailure(kind, attempt, modelId, cause));
+                    return;
+                }
+                CompletableFuture.delayedExecutor(backoff(attempt).toMillis(), TimeUnit.MILLISECONDS)
+                        .execute(() -> attemptStreamAsync(useCase, request, onChunk, attempt + 1, result));
+            });
+        });
+    }
+
+    /**
+     * Throttled and transient failures count against the circuit; permanent ones (bad requests,
+     * cancelled calls) say nothing about Bedrock's health.
+     */
+    private static void report(BedrockCircuitBreaker.Call breakerCall, FailureKind kind) {
+        if (kind == FailureKind.PERMANENT) {
+            breakerCall.ignored();
+        } else {
+            breakerCall.failed();
+        }
+    }
+
+    private boolean shouldRetry(FailureKind kind, int attempt, String modelId, String useCase, Throwable error) {
+        String useCaseTag = BedrockConcurrencyLimiter.useCaseTag(useCase);
+        if (kind == FailureKind.THROTTLED) {
+            meterRegistry.counter("bedrock.throttles", "model", modelId, "use_case", useCaseTag).increment();
+        }
+        if (kind == FailureKind.PERMANENT || attempt >= retry.getMaxAttempts()) {
+            return false;
+        }
+        meterRegistry.counter("bedrock.retries", "model", modelId, "use_case", useCaseTag).increment();
+        log.warn("Bedrock call to {} failed ({}), retrying (attempt {}/{}): {}",
+                modelId, kind.name().toLowerCase(), attempt + 1, retry.getMaxAttempts(), error.getMessage());
+        return true;
+    }
+
+    private RuntimeException finalFailure(FailureKind kind, int attempt, String modelId, Throwable error) {
+        if (kind == FailureKind.THROTTLED) {
+            return new BedrockThrottledException(
+                    "Bedrock throttled " + modelId + " after " + attempt + " attempt(s)", error);
+        }
+        return error instanceof RuntimeException runtime ? runtime : new CompletionException(error);
+    }
+
+    /**
+     * Full-jitter exponential backoff: a random delay between zero and {@code base * 2^(attempt-1)},
+     * capped at the configured maximum.
+     */
+    private Duration backoff(int attempt) {
+        long base = retry.getBaseDelay().toMillis();
+        long cap = retry.getMaxDelay().toMillis();
+        long ceiling = Math.min(cap, base << Math.min(attempt - 1, 20));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    private static FailureKind classify(SdkException e) {
+        if (e instanceof AbortedException) {
+            return FailureKind.PERMANENT;
+        }
+        if (e instanceof ThrottlingException
+                || e instanceof ServiceUnavailableException
+                || e instanceof ModelNotReadyException) {
+            return FailureKind.THROTTLED;
+        }
+        if (e instanceof SdkServiceException service) {
+            if (service.isThrottlingException()) {
+                return FailureKind.THROTTLED;
+            }
+            return service.statusCode() >= 500 ? FailureKind.TRANSIENT : FailureKind.PERMANENT;
+        }
+        return e instanceof SdkClientException ? FailureKind.TRANSIENT : FailureKind.PERMANENT;
+    }
+
+    /**
+     * Returns true if the error, or anything it wraps, is a Bedrock throttling failure after retries.
+     */
+    public static boolean isThrottled(Throwable error) {
+        return unwrap(error) instanceof BedrockThrottledException;
+    }
+
+    /**
+     * Returns true if the error, or anything it wraps, is a call refused by an open circuit breaker.
+     */
+    public static boolean isUnavailable(Throwable error) {
+        return unwrap(error) instanceof BedrockUnavailableException;
+    }
+
+    static Throwable unwrap(Throwable error) {
+        Throwable current = error;
+        while ((current instanceof CompletionException || current instanceof ExecutionException)
+                && current.getCause() != null) {
+            current = current.getCause();
+        }
+        return current;
+    }
+
+    private static AbortedException interrupted(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return AbortedException.builder().message("Interrupted while calling Bedrock").cause(e).build();
+    }
+}
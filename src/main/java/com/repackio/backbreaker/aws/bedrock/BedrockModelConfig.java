@@ -4,8 +4,13 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Configuration properties for Bedrock models.
@@ -49,6 +54,41 @@ public class BedrockModelConfig {
      */
     private Map<String, String> presets = new HashMap<>();
 
+    /**
+     * Adaptive concurrency limit applied per model and use case.
+     */
+    private Limiter limiter = new Limiter();
+
+    /**
+     * Retry behaviour for throttled and transient Bedrock failures.
+     */
+    private Retry retry = new Retry();
+
+    /**
+     * Content-addressed cache of analysis results.
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * Limits for images embedded in requests; originals within them are sent as uploaded.
+     */
+    private Image image = new Image();
+
+    /**
+     * Packing of several cards into one card analysis request.
+     */
+    private Batch batch = new Batch();
+
+    /**
+     * Duplicate requests sent when a call is slower than usual for its model.
+     */
+    private Hedge hedge = new Hedge();
+
+    /**
+     * Fails calls fast while a model is failing or slow, instead of waiting out timeouts and retries.
+     */
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
     /**
      * Gets the model ID for a specific use case, falling back to default.
      */
@@ -62,6 +102,7 @@ public class BedrockModelConfig {
 
     /**
      * Gets the model settings for a specific use case, with defaults.
+     * Preset names are resolved to model IDs.
      */
     public ModelSettings getSettingsForUseCase(String useCase) {
         ModelSettings settings = models.get(useCase);
@@ -72,9 +113,7 @@ public class BedrockModelConfig {
             settings.setTemperature(temperature);
         } else {
             // Fill in defaults for missing values
-            if (settings.getModelId() == null) {
-                settings.setModelId(defaultModelId);
-            }
+            settings.setModelId(resolveModelId(settings.getModelId()));
             if (settings.getMaxTokens() == null) {
                 settings.setMaxTokens(maxTokens);
             }
@@ -85,6 +124,20 @@ public class BedrockModelConfig {
         return settings;
     }
 
+    /**
+     * Gets the models to try for a use case, cheapest first: its model followed by its
+     * escalation chain, with presets resolved and repeated models dropped.
+     */
+    public List<String> getModelChainForUseCase(String useCase) {
+        ModelSettings settings = getSettingsForUseCase(useCase);
+        Set<String> chain = new LinkedHashSet<>();
+        chain.add(settings.getModelId());
+        if (settings.getEscalation() != null) {
+            settings.getEscalation().forEach(model -> chain.add(resolveModelId(model)));
+        }
+        return List.copyOf(chain);
+    }
+
     /**
      * Resolves a preset name to a model ID.
      * If the input is already a model ID (contains dots), returns it as-is.
@@ -108,5 +161,123 @@ public class BedrockModelConfig {
         private String modelId;
         private Integer maxTokens;
         private Double temperature;
+        /**
+         * Models (IDs or preset names) to escalate to, in order, when an answer fails to parse or
+         * its confidence is below {@link #escalationConfidence}. The last model's answer is final.
+         */
+        private List<String> escalation = new ArrayList<>();
+        /** Confidence (0-100) below which an answer escalates to the next model. */
+        private double escalationConfidence;
+        /**
+         * Send the prompt of image requests as a cacheable system prefix (Claude only). Bedrock
+         * only caches prefixes above a model-specific minimum length (1024 tokens for Sonnet).
+         */
+        private boolean promptCaching;
+        /**
+         * Stream responses of non-blocking calls and stop as soon as the fields the caller needs
+         * are complete (for card analyses: bounding box, rotation and confidence).
+         */
+        private boolean streaming;
+        /** Ask the model to leave out the free-text reasoning, which is only logged. */
+        private boolean omitReasoning;
+        /**
+         * Have Claude answer through a forced tool call whose input schema is the answer's JSON
+         * Schema, so the answer is bound directly instead of being cut out of free text.
+         */
+        private boolean toolUse;
+    }
+
+    @Data
+    public static class Limiter {
+        private boolean enabled = true;
+        /** Concurrent calls allowed before any feedback has been observed. */
+        private int initialLimit = 8;
+        private int minLimit = 1;
+        private int maxLimit = 64;
+        /** Factor applied to the limit when Bedrock throttles a call. */
+        private double backoffRatio = 0.5;
+        /** A call slower than this multiple of the average latency counts as congestion. */
+        private double latencyTolerance = 2.0;
+        /** Longest a caller waits for a free slot before the call is treated as throttled. */
+        private Duration acquireTimeout = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Retry {
+        /** Total attempts per call, including the first one. */
+        private int maxAttempts = 6;
+        /** Base of the exponential backoff; the actual delay is jittered between zero and the cap. */
+        private Duration baseDelay = Duration.ofMillis(500);
+        private Duration maxDelay = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Cache {
+        private boolean enabled = true;
+        /** Maximum number of results kept in memory; least recently used entries are evicted first. */
+        private int maxEntries = 10000;
+        /** Directory for the persistent tier; empty disables it. */
+        private String diskPath = "";
+    }
+
+    @Data
+    public static class Image {
+        /** Largest encoded image the model accepts (3.75 MB for Claude on Bedrock). */
+        private int maxBytes = 3_932_160;
+        /** Largest width or height, in pixels, the model accepts. */
+        private int maxDimension = 8000;
+        /** Longest edge used when an image has to be resized to fit the limits. */
+        private int resizeDimension = 1568;
+        /** Encodings the model accepts as-is. */
+        private List<String> mediaTypes = new ArrayList<>(List.of("image/jpeg", "image/png", "image/gif", "image/webp"));
+    }
+
+    @Data
+    public static class Batch {
+        private boolean enabled = false;
+        /** Most images in one request (Claude accepts up to 20 at full size). */
+        private int maxImages = 20;
+        /** Most encoded image bytes in one request, before base64. */
+        private int maxBytes = 12_000_000;
+        /** Longest a card waits for others to share its request. */
+        private Duration maxWait = Duration.ofMillis(100);
+        /** Response tokens allowed per image; the request gets at least the use case's max tokens. */
+        private int maxTokensPerImage = 256;
+    }
+
+    @Data
+    public static class Hedge {
+        private boolean enabled = false;
+        /** Percentile (0-1) of the model's recent latencies after which a call is hedged. */
+        private double percentile = 0.95;
+        /** Shortest wait before hedging, whatever the percentile. */
+        private Duration minDelay = Duration.ofSeconds(2);
+        /** Most calls, as a fraction of all calls, that may be hedged. */
+        private double maxRate = 0.05;
+        /** Recent latencies kept per model. */
+        private int window = 200;
+        /** Calls of a model that must complete before its calls are hedged. */
+        private int minSamples = 20;
+        /** Model ID or preset the hedge is sent to; empty sends it to the model of the call. */
+        private String model = "";
+    }
+
+    @Data
+    public static class CircuitBreaker {
+        private boolean enabled = true;
+        /** Outcomes of the most recent calls the failure and slow-call rates are taken over. */
+        private int window = 20;
+        /** Calls that must be known before the circuit can open. */
+        private int minCalls = 10;
+        /** Share (0-1) of failed calls at which the circuit opens. */
+        private double failureRateThreshold = 0.5;
+        /** A successful call at least this long counts as slow. */
+        private Duration slowCallDuration = Duration.ofSeconds(30);
+        /** Share (0-1) of slow calls at which the circuit opens. */
+        private double slowCallRateThreshold = 0.8;
+        /** How long the circuit stays open before trial calls are let through. */
+        private Duration openDuration = Duration.ofSeconds(30);
+        /** Trial calls that must all succeed, not slowly, to close the circuit again. */
+        private int halfOpenCalls = 3;
     }
 }
@@ -1,77 +1,134 @@
 package com.repackio.backbreaker.aws.bedrock;
 
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import lombok.RequiredArgsConstructor;
+import com.repackio.backbreaker.image.EncodedImage;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * Builds request payloads for different Bedrock model providers.
+ * <p>
+ * Bodies are streamed with a {@link JsonGenerator} straight into a single byte array sized
+ * exactly to the payload: images are base64-encoded on the fly from their encoded bytes, so
+ * neither a base64 {@code String}, a JSON tree nor a serialized {@code String} copy is ever
+ * created. The returned array is owned by the caller and can be handed to the SDK without
+ * copying (e.g. {@code SdkBytes.fromByteArrayUnsafe}).
  */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class BedrockRequestBuilder {
 
-    private final ObjectMapper objectMapper;
+    private final JsonFactory jsonFactory;
+
+    public BedrockRequestBuilder(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
 
     /**
      * Builds a request body for a text-and-image prompt (single image).
+     *
+     * @param image Encoded image (JPEG, PNG...) sent as-is
      */
-    public String buildImageRequest(BedrockModelProvider provider, String base64Image,
-                                     String prompt, int maxTokens, double temperature) throws IOException {
-        return buildImageRequest(provider, new String[]{base64Image}, prompt, maxTokens, temperature);
+    public byte[] buildImageRequest(BedrockModelProvider provider, EncodedImage image,
+                                    String prompt, int maxTokens, double temperature) throws IOException {
+        return buildImageRequest(provider, new EncodedImage[]{image}, prompt, maxTokens, temperature);
     }
 
     /**
      * Builds a request body for a text-and-image prompt (multiple images).
      * Useful for sending front/back of a card or multiple views.
      *
-     * @param base64Images Array of base64-encoded images
+     * @param images Array of encoded images (JPEG, PNG...) sent as-is
+     */
+    public byte[] buildImageRequest(BedrockModelProvider provider, EncodedImage[] images,
+                                    String prompt, int maxTokens, double temperature) throws IOException {
+        return buildImageRequest(provider, images, prompt, maxTokens, temperature, false, null);
+    }
+
+    /**
+     * Builds a request body for a text-and-image prompt (multiple images).
+     *
+     * @param images            Array of encoded images (JPEG, PNG...) sent as-is
+     * @param cacheInstructions For Claude, send the prompt as a system block marked for prompt
+     *                          caching, ahead of the images, instead of after them. Ignored for
+     *                          other providers.
+     * @param tool              For Claude, a tool the model must call with its answer, or null
+     *                          for a text answer. Ignored for other providers.
      */
-    public String buildImageRequest(BedrockModelProvider provider, String[] base64Images,
-                                     String prompt, int maxTokens, double temperature) throws IOException {
-        if (base64Images == null || base64Images.length == 0) {
+    public byte[] buildImageRequest(BedrockModelProvider provider, EncodedImage[] images, String prompt,
+                                    int maxTokens, double temperature, boolean cacheInstructions,
+                                    BedrockTool tool) throws IOException {
+        if (images == null || images.length == 0) {
             throw new IllegalArgumentException("At least one image is required");
         }
 
         return switch (provider) {
-            case ANTHROPIC -> buildAnthropicImageRequest(base64Images, prompt, maxTokens, temperature);
-            case META -> buildMetaImageRequest(base64Images, prompt, maxTokens, temperature);
-            case AMAZON -> buildAmazonImageRequest(base64Images, prompt, maxTokens, temperature);
+            case ANTHROPIC -> render(images, (gen, img) -> writeAnthropicImageRequest(gen, img, images, null, prompt,
+                    maxTokens, temperature, cacheInstructions, tool));
+            case META -> render(images, (gen, img) -> writeMetaImageRequest(gen, img, images, prompt, maxTokens, temperature));
+            case AMAZON -> render(images, (gen, img) -> writeAmazonImageRequest(gen, img, images, prompt, maxTokens, temperature));
             default -> throw new UnsupportedOperationException(
                     "Image requests not yet supported for provider: " + provider);
         };
     }
 
+    /**
+     * Builds a request body for a text-and-image prompt where each image is preceded by a text
+     * label the prompt can refer to, e.g. "Image 3" (Claude only).
+     *
+     * @param images            Array of encoded images (JPEG, PNG...) sent as-is
+     * @param labels            One label per image
+     * @param cacheInstructions Send the prompt as a system block marked for prompt caching
+     * @param tool              A tool the model must call with its answer, or null for a text answer
+     */
+    public byte[] buildLabeledImageRequest(BedrockModelProvider provider, EncodedImage[] images, String[] labels,
+                                           String prompt, int maxTokens, double temperature,
+                                           boolean cacheInstructions, BedrockTool tool) throws IOException {
+        if (images == null || images.length == 0) {
+            throw new IllegalArgumentException("At least one image is required");
+        }
+        if (labels == null || labels.length != images.length) {
+            throw new IllegalArgumentException("Exactly one label per image is required");
+        }
+        if (provider != BedrockModelProvider.ANTHROPIC) {
+            throw new UnsupportedOperationException("Labeled image requests are only supported for Claude models");
+        }
+
+        return render(images, (gen, img) -> writeAnthropicImageRequest(gen, img, images, labels, prompt,
+                maxTokens, temperature, cacheInstructions, tool));
+    }
+
     /**
      * Builds a request body using S3 URLs instead of base64 (Claude only).
      * This is more efficient for large images as it avoids encoding overhead.
      *
      * @param s3Urls Array of S3 URLs (s3://bucket/key format)
      */
-    public String buildImageRequestWithS3(String[] s3Urls, String prompt,
+    public byte[] buildImageRequestWithS3(String[] s3Urls, String prompt,
                                           int maxTokens, double temperature) throws IOException {
         if (s3Urls == null || s3Urls.length == 0) {
             throw new IllegalArgumentException("At least one S3 URL is required");
         }
 
         // Only Claude supports S3 URLs via document blocks
-        return buildAnthropicImageRequestWithS3(s3Urls, prompt, maxTokens, temperature);
+        return render(null, (gen, img) -> writeAnthropicImageRequestWithS3(gen, s3Urls, prompt, maxTokens, temperature));
     }
 
     /**
      * Builds a request body for a text-only prompt.
      */
-    public String buildTextRequest(BedrockModelProvider provider, String prompt,
-                                    int maxTokens, double temperature) throws IOException {
+    public byte[] buildTextRequest(BedrockModelProvider provider, String prompt,
+                                   int maxTokens, double temperature) throws IOException {
         return switch (provider) {
-            case ANTHROPIC -> buildAnthropicTextRequest(prompt, maxTokens, temperature);
-            case META -> buildMetaTextRequest(prompt, maxTokens, temperature);
-            case AMAZON -> buildAmazonTextRequest(prompt, maxTokens, temperature);
+            case ANTHROPIC -> render(null, (gen, img) -> writeAnthropicTextRequest(gen, prompt, maxTokens, temperature));
+            case META -> render(null, (gen, img) -> writeMetaTextRequest(gen, prompt, maxTokens, temperature));
+            case AMAZON -> render(null, (gen, img) -> writeAmazonTextRequest(gen, prompt, maxTokens, temperature));
             default -> throw new UnsupportedOperationException(
                     "Text requests not yet supported for provider: " + provider);
         };
@@ -79,148 +136,321 @@ public class BedrockRequestBuilder {
 
     // ==================== ANTHROPIC (Claude) ====================
 
-    private String buildAnthropicImageRequest(String[] base64Images, String prompt,
-                                               int maxTokens, double temperature) throws IOException {
-        var payload = objectMapper.createObjectNode();
-        payload.put("anthropic_version", "bedrock-2023-05-31");
-        payload.put("max_tokens", maxTokens);
-        payload.put("temperature", temperature);
-
-        var messages = payload.putArray("messages");
-        var message = messages.addObject();
-        message.put("role", "user");
+    /**
+     * With {@code cacheInstructions}, the prompt becomes a system block ending in a
+     * {@code cache_control} breakpoint, so the identical instructions form a cached prefix and only
+     * the images that follow it differ between requests. Otherwise the prompt follows the images.
+     * With a {@code tool}, the model is forced to call it, so its answer is the tool input: JSON
+     * that conforms to the tool's schema, with no surrounding prose.
+     */
+    private void writeAnthropicImageRequest(JsonGenerator gen, ImageWriter img, EncodedImage[] images, String[] labels,
+                                            String prompt, int maxTokens, double temperature,
+                                            boolean cacheInstructions, BedrockTool tool) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("anthropic_version", "bedrock-2023-05-31");
+        gen.writeNumberField("max_tokens", maxTokens);
+        gen.writeNumberField("temperature", temperature);
+
+        if (tool != null) {
+            gen.writeArrayFieldStart("tools");
+            gen.writeStartObject();
+            gen.writeStringField("name", tool.name());
+            gen.writeStringField("description", tool.description());
+            gen.writeFieldName("input_schema");
+            gen.writeRawValue(tool.inputSchema());
+            gen.writeEndObject();
+            gen.writeEndArray();
+
+            gen.writeObjectFieldStart("tool_choice");
+            gen.writeStringField("type", "tool");
+            gen.writeStringField("name", tool.name());
+            gen.writeEndObject();
+        }
 
-        var content = message.putArray("content");
+        if (cacheInstructions) {
+            gen.writeArrayFieldStart("system");
+            gen.writeStartObject();
+            gen.writeStringField("type", "text");
+            gen.writeStringField("text", prompt);
+            gen.writeObjectFieldStart("cache_control");
+            gen.writeStringField("type", "ephemeral");
+            gen.writeEndObject();
+            gen.writeEndObject();
+            gen.writeEndArray();
+        }
 
-        // Add all images first
-        for (String base64Image : base64Images) {
-            var imageContent = content.addObject();
-            imageContent.put("type", "image");
-            var source = imageContent.putObject("source");
-            source.put("type", "base64");
-            source.put("media_type", "image/jpeg");
-            source.put("data", base64Image);
+        gen.writeArrayFieldStart("messages");
+        gen.writeStartObject();
+        gen.writeStringField("role", "user");
+
+        gen.writeArrayFieldStart("content");
+
+        // Add all images first, each after its label if there are labels
+        for (int i = 0; i < images.length; i++) {
+            EncodedImage image = images[i];
+            if (labels != null) {
+                writeAnthropicText(gen, labels[i]);
+            }
+            gen.writeStartObject();
+            gen.writeStringField("type", "image");
+            gen.writeObjectFieldStart("source");
+            gen.writeStringField("type", "base64");
+            gen.writeStringField("media_type", image.mediaType());
+            gen.writeFieldName("data");
+            img.write(image);
+            gen.writeEndObject();
+            gen.writeEndObject();
         }
 
-        // Add text prompt after images
-        var textContent = content.addObject();
-        textContent.put("type", "text");
-        textContent.put("text", prompt);
+        // Add text prompt after images, unless it is already the cached system prefix
+        if (!cacheInstructions) {
+            writeAnthropicText(gen, prompt);
+        }
 
-        return objectMapper.writeValueAsString(payload);
+        gen.writeEndArray();
+        gen.writeEndObject();
+        gen.writeEndArray();
+        gen.writeEndObject();
     }
 
-    private String buildAnthropicImageRequestWithS3(String[] s3Urls, String prompt,
-                                                     int maxTokens, double temperature) throws IOException {
-        var payload = objectMapper.createObjectNode();
-        payload.put("anthropic_version", "bedrock-2023-05-31");
-        payload.put("max_tokens", maxTokens);
-        payload.put("temperature", temperature);
+    private void writeAnthropicImageRequestWithS3(JsonGenerator gen, String[] s3Urls, String prompt,
+                                                  int maxTokens, double temperature) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("anthropic_version", "bedrock-2023-05-31");
+        gen.writeNumberField("max_tokens", maxTokens);
+        gen.writeNumberField("temperature", temperature);
 
-        var messages = payload.putArray("messages");
-        var message = messages.addObject();
-        message.put("role", "user");
+        gen.writeArrayFieldStart("messages");
+        gen.writeStartObject();
+        gen.writeStringField("role", "user");
 
-        var content = message.putArray("content");
+        gen.writeArrayFieldStart("content");
 
         // Add all S3 document references
         for (String s3Url : s3Urls) {
-            var documentContent = content.addObject();
-            documentContent.put("type", "document");
-            var source = documentContent.putObject("source");
-            source.put("type", "s3");
-            source.put("s3_location", s3Url);
+            gen.writeStartObject();
+            gen.writeStringField("type", "document");
+            gen.writeObjectFieldStart("source");
+            gen.writeStringField("type", "s3");
+            gen.writeStringField("s3_location", s3Url);
+            gen.writeEndObject();
+            gen.writeEndObject();
         }
 
         // Add text prompt after documents
-        var textContent = content.addObject();
-        textContent.put("type", "text");
-        textContent.put("text", prompt);
+        writeAnthropicText(gen, prompt);
 
-        return objectMapper.writeValueAsString(payload);
+        gen.writeEndArray();
+        gen.writeEndObject();
+        gen.writeEndArray();
+        gen.writeEndObject();
     }
 
-    private String buildAnthropicTextRequest(String prompt, int maxTokens, double temperature) throws IOException {
-        var payload = objectMapper.createObjectNode();
-        payload.put("anthropic_version", "bedrock-2023-05-31");
-        payload.put("max_tokens", maxTokens);
-        payload.put("temperature", temperature);
+    private void writeAnthropicTextRequest(JsonGenerator gen, String prompt, int maxTokens, double temperature) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("anthropic_version", "bedrock-2023-05-31");
+        gen.writeNumberField("max_tokens", maxTokens);
+        gen.writeNumberField("temperature", temperature);
+
+        gen.writeArrayFieldStart("messages");
+        gen.writeStartObject();
+        gen.writeStringField("role", "user");
 
-        var messages = payload.putArray("messages");
-        var message = messages.addObject();
-        message.put("role", "user");
+        gen.writeArrayFieldStart("content");
+        writeAnthropicText(gen, prompt);
+        gen.writeEndArray();
 
-        var content = message.putArray("content");
-        var textContent = content.addObject();
-        textContent.put("type", "text");
-        textContent.put("text", prompt);
+        gen.writeEndObject();
+        gen.writeEndArray();
+        gen.writeEndObject();
+    }
 
-        return objectMapper.writeValueAsString(payload);
+    private void writeAnthropicText(JsonGenerator gen, String prompt) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("type", "text");
+        gen.writeStringField("text", prompt);
+        gen.writeEndObject();
     }
 
     // ==================== META (Llama) ====================
 
-    private String buildMetaImageRequest(String[] base64Images, String prompt,
-                                          int maxTokens, double temperature) throws IOException {
+    private void writeMetaImageRequest(JsonGenerator gen, ImageWriter img, EncodedImage[] images, String prompt,
+                                       int maxTokens, double temperature) throws IOException {
         // Meta Llama 3.2 Vision format
-        var payload = objectMapper.createObjectNode();
-        payload.put("prompt", prompt);
-        payload.put("max_gen_len", maxTokens);
-        payload.put("temperature", temperature);
+        gen.writeStartObject();
+        gen.writeStringField("prompt", prompt);
+        gen.writeNumberField("max_gen_len", maxTokens);
+        gen.writeNumberField("temperature", temperature);
 
         // Add all images to payload
-        var images = payload.putArray("images");
-        for (String base64Image : base64Images) {
-            images.add(base64Image);
+        gen.writeArrayFieldStart("images");
+        for (EncodedImage image : images) {
+            img.write(image);
         }
-
-        return objectMapper.writeValueAsString(payload);
+        gen.writeEndArray();
+        gen.writeEndObject();
     }
 
-    private String buildMetaTextRequest(String prompt, int maxTokens, double temperature) throws IOException {
+    private void writeMetaTextRequest(JsonGenerator gen, String prompt, int maxTokens, double temperature) throws IOException {
         // Meta Llama format
-        var payload = objectMapper.createObjectNode();
-        payload.put("prompt", prompt);
-        payload.put("max_gen_len", maxTokens);
-        payload.put("temperature", temperature);
-
-        return objectMapper.writeValueAsString(payload);
+        gen.writeStartObject();
+        gen.writeStringField("prompt", prompt);
+        gen.writeNumberField("max_gen_len", maxTokens);
+        gen.writeNumberField("temperature", temperature);
+        gen.writeEndObject();
     }
 
     // ==================== AMAZON (Titan) ====================
 
-    private String buildAmazonImageRequest(String[] base64Images, String prompt,
-                                            int maxTokens, double temperature) throws IOException {
+    private void writeAmazonImageRequest(JsonGenerator gen, ImageWriter img, EncodedImage[] images, String prompt,
+                                         int maxTokens, double temperature) throws IOException {
         // Amazon Titan Multimodal format
         // Note: Titan may have limitations on multiple images - check model docs
-        var payload = objectMapper.createObjectNode();
+        gen.writeStartObject();
 
-        var textGenerationConfig = payload.putObject("textGenerationConfig");
-        textGenerationConfig.put("maxTokenCount", maxTokens);
-        textGenerationConfig.put("temperature", temperature);
+        gen.writeObjectFieldStart("textGenerationConfig");
+        gen.writeNumberField("maxTokenCount", maxTokens);
+        gen.writeNumberField("temperature", temperature);
+        gen.writeEndObject();
 
-        payload.put("inputText", prompt);
+        gen.writeStringField("inputText", prompt);
 
         // Titan typically expects a single image, but we'll add the first one
         // For multiple images, consider using Claude instead
-        if (base64Images.length > 1) {
+        if (images.length > 1 && img.isFinalPass()) {
             log.warn("Amazon Titan may not support multiple images. Only the first image will be used.");
         }
-        payload.put("inputImage", base64Images[0]);
+        gen.writeFieldName("inputImage");
+        img.write(images[0]);
 
-        return objectMapper.writeValueAsString(payload);
+        gen.writeEndObject();
     }
 
-    private String buildAmazonTextRequest(String prompt, int maxTokens, double temperature) throws IOException {
+    private void writeAmazonTextRequest(JsonGenerator gen, String prompt, int maxTokens, double temperature) throws IOException {
         // Amazon Titan Text format
-        var payload = objectMapper.createObjectNode();
+        gen.writeStartObject();
+
+        gen.writeStringField("inputText", prompt);
 
-        payload.put("inputText", prompt);
+        gen.writeObjectFieldStart("textGenerationConfig");
+        gen.writeNumberField("maxTokenCount", maxTokens);
+        gen.writeNumberField("temperature", temperature);
+        gen.writeEndObject();
 
-        var textGenerationConfig = payload.putObject("textGenerationConfig");
-        textGenerationConfig.put("maxTokenCount", maxTokens);
-        textGenerationConfig.put("temperature", temperature);
+        gen.writeEndObject();
+    }
 
-        return objectMapper.writeValueAsString(payload);
+    // ==================== RENDERING ====================
+
+    /**
+     * Writes the body twice: first into a counting sink with images stubbed as empty strings to
+     * learn the exact size, then into an array of that size with images base64-encoded in place.
+     * Base64 output length is a pure function of input length, so the two passes always agree.
+     */
+    private byte[] render(EncodedImage[] images, BodyWriter writer) throws IOException {
+        CountingOutputStream counter = new CountingOutputStream();
+        try (JsonGenerator gen = jsonFactory.createGenerator(counter)) {
+            writer.write(gen, new ImageWriter(gen, false));
+        }
+
+        long size = counter.count;
+        if (images != null) {
+            for (EncodedImage image : images) {
+                size += base64Length(image.sizeBytes());
+            }
+        }
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Bedrock request body too large: " + size + " bytes");
+        }
+
+        byte[] body = new byte[(int) size];
+        FixedArrayOutputStream out = new FixedArrayOutputStream(body);
+        try (JsonGenerator gen = jsonFactory.createGenerator(out)) {
+            writer.write(gen, new ImageWriter(gen, true));
+        }
+        if (out.position != body.length) {
+            throw new IllegalStateException("Request body size mismatch: expected " + body.length
+                    + " bytes, wrote " + out.position);
+        }
+        return body;
+    }
+
+    private static long base64Length(int length) {
+        return 4L * ((length + 2) / 3);
+    }
+
+    @FunctionalInterface
+    private interface BodyWriter {
+        void write(JsonGenerator gen, ImageWriter img) throws IOException;
+    }
+
+    /**
+     * Writes an image as a base64 JSON string, or as an empty string placeholder while sizing.
+     */
+    private static final class ImageWriter {
+
+        private final JsonGenerator gen;
+        private final boolean finalPass;
+
+        ImageWriter(JsonGenerator gen, boolean finalPass) {
+            this.gen = gen;
+            this.finalPass = finalPass;
+        }
+
+        void write(EncodedImage image) throws IOException {
+            if (finalPass) {
+                gen.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, image.data(), 0, image.sizeBytes());
+            } else {
+                gen.writeString("");
+            }
+        }
+
+        boolean isFinalPass() {
+            return finalPass;
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    private static final class FixedArrayOutputStream extends OutputStream {
+
+        private final byte[] buffer;
+        private int position;
+
+        FixedArrayOutputStream(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureCapacity(1);
+            buffer[position++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ensureCapacity(len);
+            System.arraycopy(b, off, buffer, position, len);
+            position += len;
+        }
+
+        private void ensureCapacity(int len) throws IOException {
+            if (position + len > buffer.length) {
+                throw new IOException("Request body exceeds its computed size of " + buffer.length + " bytes");
+            }
+        }
     }
 }
@@ -1,5 +1,7 @@
 package com.repackio.backbreaker.aws.bedrock;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
@@ -47,6 +49,171 @@ public class BedrockResponseParser {
         return objectMapper.readValue(jsonStr, responseType);
     }
 
+    /**
+     * Binds the input of the tool call in a Claude response (see {@link BedrockTool}) straight
+     * from the response body to the given type, without extracting text or building a tree.
+     *
+     * @throws IOException if the response has no tool call, or its input does not fit the type
+     */
+    public <T> T parseToolInput(String responseBody, Class<T> responseType) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(responseBody)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Invalid Anthropic response: not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (!"content".equals(field) || value != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                // Only tool_use blocks have an input
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String blockField = parser.currentName();
+                        parser.nextToken();
+                        if ("input".equals(blockField)) {
+                            return objectMapper.readValue(parser, responseType);
+                        }
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+        throw new IOException("Invalid Anthropic response: no tool call");
+    }
+
+    /**
+     * Extracts the token usage from a Bedrock response, including prompt cache reads and writes
+     * for Claude. Providers or responses without usage information give {@link BedrockUsage#NONE}.
+     * The body is scanned once without building a tree; every other field is skipped.
+     */
+    public BedrockUsage parseUsage(BedrockModelProvider provider, String responseBody) {
+        if (provider != BedrockModelProvider.ANTHROPIC && provider != BedrockModelProvider.META
+                && provider != BedrockModelProvider.AMAZON) {
+            return BedrockUsage.NONE;
+        }
+        // Input, output, cache read and cache write tokens
+        long[] tokens = new long[4];
+        try (JsonParser parser = objectMapper.getFactory().createParser(responseBody)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return BedrockUsage.NONE;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (provider) {
+                    case ANTHROPIC -> {
+                        if ("usage".equals(field) && value == JsonToken.START_OBJECT) {
+                            readAnthropicUsage(parser, tokens);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    case META -> {
+                        if ("prompt_token_count".equals(field)) {
+                            tokens[0] = parser.getValueAsLong();
+                        } else if ("generation_token_count".equals(field)) {
+                            tokens[1] = parser.getValueAsLong();
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                    default -> {
+                        if ("inputTextTokenCount".equals(field)) {
+                            tokens[0] = parser.getValueAsLong();
+                        } else if ("results".equals(field) && value == JsonToken.START_ARRAY) {
+                            tokens[1] = readFirstResultTokenCount(parser);
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.debug("No usage in Bedrock response: {}", e.getMessage());
+            return BedrockUsage.NONE;
+        }
+        return new BedrockUsage(tokens[0], tokens[1], tokens[2], tokens[3]);
+    }
+
+    private static void readAnthropicUsage(JsonParser parser, long[] tokens) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            switch (field) {
+                case "input_tokens" -> tokens[0] = parser.getValueAsLong();
+                case "output_tokens" -> tokens[1] = parser.getValueAsLong();
+                case "cache_read_input_tokens" -> tokens[2] = parser.getValueAsLong();
+                case "cache_creation_input_tokens" -> tokens[3] = parser.getValueAsLong();
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Reads {@code tokenCount} of the first Titan result and skips the rest of the array.
+     */
+    private static long readFirstResultTokenCount(JsonParser parser) throws IOException {
+        long tokenCount = 0;
+        JsonToken element = parser.nextToken();
+        if (element == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("tokenCount".equals(field)) {
+                    tokenCount = parser.getValueAsLong();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            element = parser.nextToken();
+        }
+        while (element != JsonToken.END_ARRAY && element != null) {
+            parser.skipChildren();
+            element = parser.nextToken();
+        }
+        return tokenCount;
+    }
+
+    /**
+     * Extracts the generated text carried by one event of a streamed response, or an empty
+     * string for events without text (message start and stop, metrics...).
+     */
+    public String extractStreamText(BedrockModelProvider provider, JsonNode event) {
+        return switch (provider) {
+            // Text deltas, or the tool input's JSON as it is generated when a tool is forced
+            case ANTHROPIC -> "content_block_delta".equals(event.path("type").asText())
+                    ? event.path("delta").path("input_json_delta".equals(event.path("delta").path("type").asText())
+                            ? "partial_json" : "text").asText("")
+                    : "";
+            case META -> event.path("generation").asText("");
+            case AMAZON -> event.path("outputText").asText("");
+            default -> throw new UnsupportedOperationException(
+                    "Stream parsing not yet supported for provider: " + provider);
+        };
+    }
+
+    /**
+     * Extracts the token counts reported by one event of a streamed response. Claude reports input
+     * and cache tokens when the message starts and output tokens as it goes; every provider's last
+     * event carries Bedrock's invocation metrics. Combine events with {@link BedrockUsage#max}.
+     */
+    public BedrockUsage parseStreamUsage(BedrockModelProvider provider, JsonNode event) {
+        JsonNode metrics = event.path("amazon-bedrock-invocationMetrics");
+        BedrockUsage usage = new BedrockUsage(
+                metrics.path("inputTokenCount").asLong(), metrics.path("outputTokenCount").asLong(), 0, 0);
+        if (provider == BedrockModelProvider.ANTHROPIC) {
+            JsonNode reported = event.has("message") ? event.path("message").path("usage") : event.path("usage");
+            usage = usage.max(new BedrockUsage(
+                    reported.path("input_tokens").asLong(),
+                    reported.path("output_tokens").asLong(),
+                    reported.path("cache_read_input_tokens").asLong(),
+                    reported.path("cache_creation_input_tokens").asLong()));
+        }
+        return usage;
+    }
+
     // ==================== ANTHROPIC (Claude) ====================
 
     private String extractAnthropicText(String responseBody) throws IOException {
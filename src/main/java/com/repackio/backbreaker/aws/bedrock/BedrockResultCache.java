@@ -0,0 +1,370 @@
+package com.repackio.backbreaker.aws.bedrock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Content-addressed cache for parsed Bedrock results.
+ * <p>
+ * Keys are built by the caller from the hash of the exact image bytes sent to the model plus the
+ * model ID, prompt file and prompt content, so a hit is always a result for an identical request.
+ * Results live in an in-memory LRU tier and, when {@code bedrock.cache.disk-path} is set, in a
+ * JSON-file tier that survives restarts. Concurrent requests for the same key share one model
+ * call, which is cancelled once every asynchronous caller waiting for it has cancelled. Lookups are counted in {@code bedrock.cache.requests} (tagged by result) and the overall
+ * hit ratio is exported as {@code bedrock.cache.hit_ratio}.
+ */
+@Slf4j
+@Component
+public class BedrockResultCache {
+
+    /**
+     * Loads a value on a cache miss.
+     */
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws IOException;
+    }
+
+    private final BedrockModelConfig.Cache settings;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Object> memory;
+    private final Map<String, SharedLoad> inFlight = new ConcurrentHashMap<>();
+    private final Path diskPath;
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter coalesced;
+    private final Counter misses;
+
+    public BedrockResultCache(BedrockModelConfig modelConfig, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.settings = modelConfig.getCache();
+        this.objectMapper = objectMapper;
+        int maxEntries = Math.max(1, settings.getMaxEntries());
+        this.memory = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.diskPath = StringUtils.hasText(settings.getDiskPath()) ? Path.of(settings.getDiskPath()) : null;
+
+        this.memoryHits = meterRegistry.counter("bedrock.cache.requests", "result", "memory_hit");
+        this.diskHits = meterRegistry.counter("bedrock.cache.requests", "result", "disk_hit");
+        this.coalesced = meterRegistry.counter("bedrock.cache.requests", "result", "coalesced");
+        this.misses = meterRegistry.counter("bedrock.cache.requests", "result", "miss");
+        Gauge.builder("bedrock.cache.hit_ratio", this, BedrockResultCache::hitRatio)
+                .description("Share of Bedrock analysis requests served without a model call")
+                .register(meterRegistry);
+        Gauge.builder("bedrock.cache.size", this, BedrockResultCache::memorySize)
+                .description("Entries in the in-memory Bedrock result cache")
+                .register(meterRegistry);
+
+        log.info("Bedrock result cache: enabled={}, max entries={}, disk tier={}",
+                settings.isEnabled(), maxEntries, diskPath == null ? "off" : diskPath);
+    }
+
+    /**
+     * Returns the cached value for the key, or loads it on the calling thread.
+     * If another caller is already loading the same key, waits for that result instead.
+     */
+    public <T> T get(String key, Class<T> type, Loader<T> loader) throws IOException {
+        if (!settings.isEnabled()) {
+            return loader.load();
+        }
+        T cached = lookup(key, type);
+        if (cached != null) {
+            return cached;
+        }
+
+        SharedLoad mine = new SharedLoad(key);
+        SharedLoad existing;
+        while ((existing = inFlight.putIfAbsent(key, mine)) != null) {
+            CompletableFuture<Object> shared = existing.joinBlocking();
+            if (shared != null) {
+                coalesced.increment();
+                return type.cast(await(shared));
+            }
+            inFlight.remove(key, existing);
+        }
+
+        // The loading thread cannot be cancelled, so it holds the load open for async waiters too
+        mine.joinBlocking();
+        misses.increment();
+        try {
+            T value = loader.load();
+            store(key, value);
+            mine.result.complete(value);
+            return value;
+        } catch (IOException | RuntimeException e) {
+            mine.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #get}. The returned future is a per-caller view of the shared
+     * load: cancelling it does not abort the load for other callers, but once every caller waiting
+     * for the load has cancelled, the loader's future is cancelled too.
+     */
+    public <T> CompletableFuture<T> getAsync(String key, Class<T> type, Supplier<CompletableFuture<T>> loader) {
+        if (!settings.isEnabled()) {
+            return loader.get();
+        }
+        T cached;
+        try {
+            cached = lookup(key, type);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        SharedLoad mine = new SharedLoad(key);
+        SharedLoad existing;
+        while ((existing = inFlight.putIfAbsent(key, mine)) != null) {
+            CompletableFuture<T> view = existing.join(type);
+            if (view != null) {
+                coalesced.increment();
+                return view;
+            }
+            inFlight.remove(key, existing);
+        }
+
+        misses.increment();
+        CompletableFuture<T> view = mine.join(type);
+        CompletableFuture<T> source;
+        try {
+            source = loader.get();
+        } catch (RuntimeException e) {
+            mine.result.completeExceptionally(e);
+            inFlight.remove(key, mine);
+            return view;
+        }
+        mine.started(source);
+        source.whenComplete((value, error) -> {
+            if (error == null) {
+                store(key, value);
+                mine.result.complete(value);
+            } else {
+                mine.result.completeExceptionally(error);
+            }
+            inFlight.remove(key, mine);
+        });
+        return view;
+    }
+
+    /**
+     * Builds a cache key from its parts (model ID, prompt name, prompt version, image hashes...).
+     */
+    public static String key(String... parts) {
+        MessageDigest digest = sha256();
+        for (String part : parts) {
+            digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * SHA-256 of content such as image bytes or prompt text, as lower-case hex.
+     */
+    public static String hash(byte[] content) {
+        return HexFormat.of().formatHex(sha256().digest(content));
+    }
+
+    private <T> T lookup(String key, Class<T> type) throws IOException {
+        Object value;
+        synchronized (memory) {
+            value = memory.get(key);
+        }
+        if (value != null) {
+            memoryHits.increment();
+            return type.cast(value);
+        }
+
+        if (diskPath != null) {
+            Path file = diskPath.resolve(key + ".json");
+            if (Files.exists(file)) {
+                try {
+                    T loaded = objectMapper.readValue(file.toFile(), type);
+                    synchronized (memory) {
+                        memory.put(key, loaded);
+                    }
+                    diskHits.increment();
+                    return loaded;
+                } catch (IOException e) {
+                    log.warn("Ignoring unreadable Bedrock cache entry {}: {}", file, e.getMessage());
+                }
+            }
+        }
+        return null;
+    }
+
+    private void store(String key, Object value) {
+        if (value == null) {
+            return;
+        }
+        synchronized (memory) {
+            memory.put(key, value);
+        }
+        if (diskPath != null) {
+            try {
+                Files.createDirectories(diskPath);
+                Path tmp = Files.createTempFile(diskPath, key, ".tmp");
+                objectMapper.writeValue(tmp.toFile(), value);
+                Files.move(tmp, diskPath.resolve(key + ".json"),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.warn("Failed to persist Bedrock cache entry {}: {}", key, e.getMessage());
+            }
+        }
+    }
+
+    private double hitRatio() {
+        double hits = memoryHits.count() + diskHits.count() + coalesced.count();
+        double total = hits + misses.count();
+        return total == 0 ? 0.0 : hits / total;
+    }
+
+    private int memorySize() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a shared Bedrock call", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IOException("Shared Bedrock call failed", cause);
+        }
+    }
+
+    /**
+     * One load shared by every caller asking for its key while it runs. Asynchronous callers each
+     * get their own view of the result; when the last of them cancels, the load is abandoned:
+     * its source future is cancelled and later callers start a new load.
+     */
+    private final class SharedLoad {
+
+        private final String key;
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private CompletableFuture<?> source;
+        private int waiters;
+        private boolean abandoned;
+
+        SharedLoad(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Adds an asynchronous waiter.
+         *
+         * @return The caller's view of the result, or null if the load was abandoned
+         */
+        <T> CompletableFuture<T> join(Class<T> type) {
+            synchronized (this) {
+                if (abandoned) {
+                    return null;
+                }
+                waiters++;
+            }
+            CompletableFuture<T> view = new CompletableFuture<>();
+            result.whenComplete((value, error) -> {
+                if (error == null) {
+                    view.complete(type.cast(value));
+                } else {
+                    view.completeExceptionally(error);
+                }
+            });
+            view.whenComplete((value, error) -> {
+                if (view.isCancelled()) {
+                    leave();
+                }
+            });
+            return view;
+        }
+
+        /**
+         * Adds a blocking waiter, which never leaves and so keeps the load from being abandoned.
+         *
+         * @return The shared result, or null if the load was abandoned
+         */
+        synchronized CompletableFuture<Object> joinBlocking() {
+            if (abandoned) {
+                return null;
+            }
+            waiters++;
+            return result;
+        }
+
+        void started(CompletableFuture<?> source) {
+            boolean cancel;
+            synchronized (this) {
+                this.source = source;
+                cancel = abandoned;
+            }
+            if (cancel) {
+                source.cancel(true);
+            }
+        }
+
+        private void leave() {
+            CompletableFuture<?> toCancel;
+            synchronized (this) {
+                if (--waiters > 0 || result.isDone() || abandoned) {
+                    return;
+                }
+                abandoned = true;
+                toCancel = source;
+            }
+            inFlight.remove(key, this);
+            log.debug("All callers waiting for Bedrock cache key {} cancelled, cancelling the load", key);
+            if (toCancel != null) {
+                toCancel.cancel(true);
+            }
+            result.cancel(false);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.repackio.backbreaker.aws.bedrock;
+
+/**
+ * Thrown when Bedrock keeps throttling a call after all retries, or no concurrency slot
+ * became available in time. Callers should fail the work item rather than degrade its result.
+ */
+public class BedrockThrottledException extends RuntimeException {
+
+    public BedrockThrottledException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,12 @@
+package com.repackio.backbreaker.aws.bedrock;
+
+/**
+ * A tool the model is forced to call (Claude only), used to receive a response as JSON that
+ * conforms to a schema instead of as free text.
+ *
+ * @param name        Tool name, e.g. {@code report_card_analysis}
+ * @param description What the tool input means, shown to the model
+ * @param inputSchema JSON Schema of the tool input, as JSON text
+ */
+public record BedrockTool(String name, String description, String inputSchema) {
+}
@@ -0,0 +1,12 @@
+package com.repackio.backbreaker.aws.bedrock;
+
+/**
+ * Thrown without calling Bedrock while the circuit breaker for the model is open. Callers should
+ * fall back to a degraded result right away instead of waiting for Bedrock to recover.
+ */
+public class BedrockUnavailableException extends RuntimeException {
+
+    public BedrockUnavailableException(String message) {
+        super(message);
+    }
+}
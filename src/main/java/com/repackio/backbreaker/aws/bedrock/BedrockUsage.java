@@ -0,0 +1,35 @@
+package com.repackio.backbreaker.aws.bedrock;
+
+/**
+ * Token counts reported in a model response.
+ *
+ * @param inputTokens           Input tokens processed without the prompt cache
+ * @param outputTokens          Generated tokens
+ * @param cacheReadInputTokens  Input tokens served from the prompt cache
+ * @param cacheWriteInputTokens Input tokens written to the prompt cache
+ */
+public record BedrockUsage(long inputTokens, long outputTokens, long cacheReadInputTokens, long cacheWriteInputTokens) {
+
+    public static final BedrockUsage NONE = new BedrockUsage(0, 0, 0, 0);
+
+    /**
+     * Combines counts reported in different events of a streamed response, keeping the larger of each.
+     */
+    public BedrockUsage max(BedrockUsage other) {
+        return new BedrockUsage(
+                Math.max(inputTokens, other.inputTokens),
+                Math.max(outputTokens, other.outputTokens),
+                Math.max(cacheReadInputTokens, other.cacheReadInputTokens),
+                Math.max(cacheWriteInputTokens, other.cacheWriteInputTokens));
+    }
+
+    /**
+     * How the prompt cache served this request: {@code read}, {@code write} or {@code none}.
+     */
+    public String cacheOutcome() {
+        if (cacheReadInputTokens > 0) {
+            return "read";
+        }
+        return cacheWriteInputTokens > 0 ? "write" : "none";
+    }
+}
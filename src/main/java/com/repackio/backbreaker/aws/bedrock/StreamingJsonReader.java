@@ -0,0 +1,138 @@
+package com.repackio.backbreaker.aws.bedrock;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Builds a JSON tree from a model's text output as it streams in, so callers can act on the part
+ * received so far.
+ * <p>
+ * Text before the first opening brace (such as a markdown fence) is skipped, and so is anything
+ * after the document closes. Values appear in the tree only once they are complete: a string once
+ * its closing quote arrives, a number once the character after it does. Use {@link #isClosed} to
+ * tell whether an object or array has been received in full.
+ */
+public final class StreamingJsonReader {
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final Deque<JsonNode> open = new ArrayDeque<>();
+    private JsonNode root;
+    private String fieldName;
+    private boolean started;
+    private boolean done;
+
+    public StreamingJsonReader(JsonFactory jsonFactory) {
+        try {
+            this.parser = jsonFactory.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("Non-blocking JSON parsing not available", e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Adds the next fragment of model output.
+     *
+     * @return true once the whole document has been read
+     * @throws IOException if the output is not valid JSON
+     */
+    public boolean feed(String text) throws IOException {
+        if (done) {
+            return true;
+        }
+        if (!started) {
+            int brace = text.indexOf('{');
+            if (brace < 0) {
+                return false;
+            }
+            text = text.substring(brace);
+            started = true;
+        }
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        feeder.feedInput(bytes, 0, bytes.length);
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            switch (token) {
+                case START_OBJECT -> push(JsonNodeFactory.instance.objectNode());
+                case START_ARRAY -> push(JsonNodeFactory.instance.arrayNode());
+                case END_OBJECT, END_ARRAY -> {
+                    open.pop();
+                    if (open.isEmpty()) {
+                        done = true;
+                        feeder.endOfInput();
+                        return true;
+                    }
+                }
+                case FIELD_NAME -> fieldName = parser.currentName();
+                case VALUE_STRING -> add(JsonNodeFactory.instance.textNode(parser.getText()));
+                case VALUE_NUMBER_INT -> add(JsonNodeFactory.instance.numberNode(parser.getLongValue()));
+                case VALUE_NUMBER_FLOAT -> add(JsonNodeFactory.instance.numberNode(parser.getDoubleValue()));
+                case VALUE_TRUE -> add(JsonNodeFactory.instance.booleanNode(true));
+                case VALUE_FALSE -> add(JsonNodeFactory.instance.booleanNode(false));
+                case VALUE_NULL -> add(JsonNodeFactory.instance.nullNode());
+                default -> {
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The document received so far, or null before its opening brace.
+     */
+    public JsonNode root() {
+        return root;
+    }
+
+    /**
+     * Whether the whole document has been read.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Whether {@code node}, an object or array of this document, has been received in full.
+     * False for null, so {@code isClosed(root().get("field"))} is safe before the field arrives.
+     */
+    public boolean isClosed(JsonNode node) {
+        if (node == null) {
+            return false;
+        }
+        for (JsonNode container : open) {
+            if (container == node) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void push(JsonNode container) {
+        add(container);
+        open.push(container);
+    }
+
+    private void add(JsonNode value) {
+        JsonNode parent = open.peek();
+        if (parent == null) {
+            root = value;
+        } else if (parent instanceof ObjectNode object) {
+            object.set(fieldName, value);
+        } else {
+            ((ArrayNode) parent).add(value);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.repackio.backbreaker.aws.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * Response from Bedrock vision model analyzing the front and back of a card in one request.
+ */
+@Data
+public class CardPairAnalysisResult {
+    @JsonProperty("front")
+    private CardAnalysisResult front;
+
+    @JsonProperty("back")
+    private CardAnalysisResult back;
+}
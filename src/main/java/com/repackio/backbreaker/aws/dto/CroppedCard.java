@@ -0,0 +1,12 @@
+package com.repackio.backbreaker.aws.dto;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Cropped and oriented image of one side of a card.
+ *
+ * @param degraded Whether a detection stage was skipped because Bedrock was unavailable, so the
+ *                 crop may be worse than usual and is worth redoing later
+ */
+public record CroppedCard(BufferedImage image, boolean degraded) {
+}
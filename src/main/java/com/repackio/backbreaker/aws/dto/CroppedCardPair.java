@@ -0,0 +1,15 @@
+package com.repackio.backbreaker.aws.dto;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Cropped and oriented front and back images of a card.
+ *
+ * @param degraded Whether either side was cropped without Bedrock because it was unavailable
+ */
+public record CroppedCardPair(BufferedImage front, BufferedImage back, boolean degraded) {
+
+    public CroppedCardPair(BufferedImage front, BufferedImage back) {
+        this(front, back, false);
+    }
+}
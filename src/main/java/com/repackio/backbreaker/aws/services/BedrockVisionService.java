@@ -1,11 +1,24 @@
 package com.repackio.backbreaker.aws.services;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.repackio.backbreaker.aws.bedrock.BedrockHedger;
+import com.repackio.backbreaker.aws.bedrock.BedrockImagePreparer;
+import com.repackio.backbreaker.aws.bedrock.BedrockInvoker;
 import com.repackio.backbreaker.aws.bedrock.BedrockModelConfig;
 import com.repackio.backbreaker.aws.bedrock.BedrockModelProvider;
 import com.repackio.backbreaker.aws.bedrock.BedrockRequestBuilder;
 import com.repackio.backbreaker.aws.bedrock.BedrockResponseParser;
+import com.repackio.backbreaker.aws.bedrock.BedrockResultCache;
+import com.repackio.backbreaker.aws.bedrock.BedrockTool;
+import com.repackio.backbreaker.aws.bedrock.BedrockUsage;
+import com.repackio.backbreaker.aws.bedrock.StreamingJsonReader;
 import com.repackio.backbreaker.aws.dto.CardAnalysisResult;
+import com.repackio.backbreaker.aws.dto.CardPairAnalysisResult;
+import com.repackio.backbreaker.image.EncodedImage;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
@@ -13,30 +26,55 @@ import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StreamUtils;
 import software.amazon.awssdk.core.SdkBytes;
-import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
 import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelRequest;
 import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelResponse;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelWithResponseStreamRequest;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class BedrockVisionService {
 
-    private final BedrockRuntimeClient bedrockClient;
+    private final BedrockInvoker bedrockInvoker;
     private final ObjectMapper objectMapper;
     private final ResourceLoader resourceLoader;
     private final BedrockModelConfig modelConfig;
     private final BedrockRequestBuilder requestBuilder;
     private final BedrockResponseParser responseParser;
+    private final BedrockResultCache resultCache;
+    private final BedrockImagePreparer imagePreparer;
+    private final MeterRegistry meterRegistry;
+    private final BedrockHedger hedger;
+
+    private static final String CARD_ANALYSIS_USE_CASE = "card-analysis";
+    private static final String CARD_ANALYSIS_PROMPT = "card_analysis_v3.txt";
+    private static final String CARD_PAIR_ANALYSIS_PROMPT = "card_pair_analysis.txt";
+    private static final String CARD_BATCH_ANALYSIS_PROMPT = "card_batch_analysis.txt";
+    private static final String CARD_BATCH_ANALYSIS_SCHEMA = "card_batch_analysis.schema.json";
+    /** JSON Schemas of the card analysis answers, for the tool a model answers through in tool-use mode */
+    private static final Map<Class<?>, String> RESPONSE_SCHEMAS = Map.of(
+            CardAnalysisResult.class, "card_analysis.schema.json",
+            CardPairAnalysisResult.class, "card_pair_analysis.schema.json");
+    private static final String OMIT_REASONING_INSTRUCTION =
+            "\n\nLeave out the \"reasoning\" field entirely: output only the other fields.\n";
 
     // Cache for loaded prompts
     private final Map<String, String> promptCache = new ConcurrentHashMap<>();
@@ -44,12 +82,140 @@ public class BedrockVisionService {
     /**
      * Analyzes a card image using Bedrock vision model.
      * Returns bounding box coordinates and rotation information.
-     * Uses the "card-analysis" use case configuration.
+     * Uses the "card-analysis" use case configuration: the first model of its escalation chain
+     * answers, and stronger models are only asked when that answer is unsure or unparseable.
+     * Results are cached by image content, model and prompt, so identical images are analyzed once.
      */
     public CardAnalysisResult analyzeCardImage(BufferedImage image) throws IOException {
+        return analyzeCardImage(image, null);
+    }
+
+    /**
+     * Analyzes a card image, sending the uploaded bytes as-is when the model accepts them
+     * instead of re-encoding the decoded image.
+     *
+     * @param image The decoded image
+     * @param source The encoded original of {@code image}, or null to encode {@code image}
+     */
+    public CardAnalysisResult analyzeCardImage(BufferedImage image, EncodedImage source) throws IOException {
         log.info("Analyzing card image with Bedrock ({}x{})", image.getWidth(), image.getHeight());
-        String prompt = loadPrompt("card_analysis_v3.txt");
-        return invokeWithImage("card-analysis", image, prompt, CardAnalysisResult.class);
+        String prompt = cardPrompt(CARD_ANALYSIS_PROMPT);
+        EncodedImage[] payload = {imagePreparer.prepare(image, source)};
+        return resultCache.get(cacheKey(CARD_ANALYSIS_PROMPT, prompt, payload), CardAnalysisResult.class,
+                () -> invokeEscalating(CARD_ANALYSIS_USE_CASE, payload, prompt, CardAnalysisResult.class,
+                        BedrockVisionService::confidence));
+    }
+
+    /**
+     * Analyzes the front and back of a card in a single Bedrock request.
+     * Returns bounding box coordinates and rotation information for each side.
+     * Uses the "card-analysis" use case configuration.
+     */
+    public CardPairAnalysisResult analyzeCardPair(BufferedImage front, BufferedImage back) throws IOException {
+        return analyzeCardPair(front, null, back, null);
+    }
+
+    /**
+     * Variant of {@link #analyzeCardPair(BufferedImage, BufferedImage)} that sends the uploaded
+     * bytes of each side as-is when the model accepts them. Either source may be null.
+     */
+    public CardPairAnalysisResult analyzeCardPair(BufferedImage front, EncodedImage frontSource,
+                                                  BufferedImage back, EncodedImage backSource) throws IOException {
+        log.info("Analyzing card pair with Bedrock (front {}x{}, back {}x{})",
+                front.getWidth(), front.getHeight(), back.getWidth(), back.getHeight());
+        String prompt = cardPrompt(CARD_PAIR_ANALYSIS_PROMPT);
+        EncodedImage[] payload = {imagePreparer.prepare(front, frontSource), imagePreparer.prepare(back, backSource)};
+        return resultCache.get(cacheKey(CARD_PAIR_ANALYSIS_PROMPT, prompt, payload), CardPairAnalysisResult.class,
+                () -> invokeEscalating(CARD_ANALYSIS_USE_CASE, payload, prompt, CardPairAnalysisResult.class,
+                        BedrockVisionService::confidence));
+    }
+
+    /**
+     * Non-blocking variant of {@link #analyzeCardImage(BufferedImage)}.
+     */
+    public CompletableFuture<CardAnalysisResult> analyzeCardImageAsync(BufferedImage image) {
+        return analyzeCardImageAsync(image, null);
+    }
+
+    /**
+     * Non-blocking variant of {@link #analyzeCardImage(BufferedImage, EncodedImage)}.
+     */
+    public CompletableFuture<CardAnalysisResult> analyzeCardImageAsync(BufferedImage image, EncodedImage source) {
+        log.info("Analyzing card image with Bedrock async ({}x{})", image.getWidth(), image.getHeight());
+        try {
+            return analyzeEncodedCardAsync(imagePreparer.prepare(image, source));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Analyzes several unrelated card images (any mix of fronts and backs) in as few requests as
+     * {@code bedrock.batch.max-images} and {@code bedrock.batch.max-bytes} allow, so the
+     * instructions are sent once per request rather than once per card. Images are labeled in the
+     * request and the model's answers are matched back by label. An image whose entry is missing
+     * or malformed is analyzed again on its own; an entry below the escalation confidence
+     * escalates on its own to the next model of the chain. Results are cached per image.
+     *
+     * @return One result per image, in order
+     */
+    public CompletableFuture<CardAnalysisResult[]> analyzeCardBatchAsync(BufferedImage[] images, EncodedImage[] sources) {
+        log.info("Analyzing batch of {} card images with Bedrock async", images.length);
+        try {
+            String prompt = cardPrompt(CARD_BATCH_ANALYSIS_PROMPT);
+            EncodedImage[] payload = new EncodedImage[images.length];
+            for (int i = 0; i < images.length; i++) {
+                payload[i] = imagePreparer.prepare(images[i], sources[i]);
+            }
+
+            // Images already cached or being analyzed elsewhere stay out of the request
+            @SuppressWarnings("unchecked")
+            CompletableFuture<CardAnalysisResult>[] results = new CompletableFuture[images.length];
+            Map<Integer, CompletableFuture<CardAnalysisResult>> misses = new TreeMap<>();
+            for (int i = 0; i < images.length; i++) {
+                int index = i;
+                results[i] = resultCache.getAsync(cacheKey(CARD_BATCH_ANALYSIS_PROMPT, prompt, new EncodedImage[]{payload[i]}),
+                        CardAnalysisResult.class, () -> misses.computeIfAbsent(index, k -> new CompletableFuture<>()));
+            }
+            for (List<Integer> request : batchRequests(misses.keySet(), payload)) {
+                sendBatch(request, payload, misses, prompt);
+            }
+
+            return CompletableFuture.allOf(results).thenApply(ignored -> {
+                CardAnalysisResult[] analyses = new CardAnalysisResult[results.length];
+                for (int i = 0; i < results.length; i++) {
+                    analyses[i] = results[i].join();
+                }
+                return analyses;
+            });
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #analyzeCardPair(BufferedImage, BufferedImage)}.
+     */
+    public CompletableFuture<CardPairAnalysisResult> analyzeCardPairAsync(BufferedImage front, BufferedImage back) {
+        return analyzeCardPairAsync(front, null, back, null);
+    }
+
+    /**
+     * Non-blocking variant of {@link #analyzeCardPair(BufferedImage, EncodedImage, BufferedImage, EncodedImage)}.
+     */
+    public CompletableFuture<CardPairAnalysisResult> analyzeCardPairAsync(BufferedImage front, EncodedImage frontSource,
+                                                                          BufferedImage back, EncodedImage backSource) {
+        log.info("Analyzing card pair with Bedrock async (front {}x{}, back {}x{})",
+                front.getWidth(), front.getHeight(), back.getWidth(), back.getHeight());
+        try {
+            String prompt = cardPrompt(CARD_PAIR_ANALYSIS_PROMPT);
+            EncodedImage[] payload = {imagePreparer.prepare(front, frontSource), imagePreparer.prepare(back, backSource)};
+            return resultCache.getAsync(cacheKey(CARD_PAIR_ANALYSIS_PROMPT, prompt, payload), CardPairAnalysisResult.class,
+                    () -> invokeEscalatingAsync(CARD_ANALYSIS_USE_CASE, payload, prompt, CardPairAnalysisResult.class,
+                            BedrockVisionService::confidence));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
     /**
@@ -101,37 +267,22 @@ public class BedrockVisionService {
      * @return Parsed response of type T
      */
     public <T> T invokeWithImages(String useCase, BufferedImage[] images, String prompt, Class<T> responseType) throws IOException {
-        if (images == null || images.length == 0) {
-            throw new IllegalArgumentException("At least one image is required");
-        }
-
-        BedrockModelConfig.ModelSettings settings = modelConfig.getSettingsForUseCase(useCase);
-        String modelId = settings.getModelId();
-        BedrockModelProvider provider = BedrockModelProvider.fromModelId(modelId);
+        return invoke(prepareImageInvocation(useCase, images, prompt), responseType);
+    }
 
-        // Encode all images to base64
-        String[] base64Images = new String[images.length];
-        for (int i = 0; i < images.length; i++) {
-            base64Images[i] = encodeImageToBase64(images[i]);
+    /**
+     * Non-blocking variant of {@link #invokeWithImages(String, BufferedImage[], String, Class)}.
+     * Images are encoded on the calling thread; the model call itself does not hold a thread while in flight.
+     *
+     * @return Future completed with the parsed response, or exceptionally with the invocation or parse error
+     */
+    public <T> CompletableFuture<T> invokeWithImagesAsync(String useCase, BufferedImage[] images, String prompt,
+                                                          Class<T> responseType) {
+        try {
+            return invokeAsync(prepareImageInvocation(useCase, images, prompt), responseType);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
         }
-
-        String requestBody = requestBuilder.buildImageRequest(
-                provider, base64Images, prompt,
-                settings.getMaxTokens(), settings.getTemperature());
-
-        log.info("Invoking Bedrock model: {} (provider: {}, use case: {}, image count: {})",
-                modelId, provider, useCase, images.length);
-
-        InvokeModelRequest request = InvokeModelRequest.builder()
-                .modelId(modelId)
-                .body(SdkBytes.fromUtf8String(requestBody))
-                .build();
-
-        InvokeModelResponse response = bedrockClient.invokeModel(request);
-        String responseBody = response.body().asUtf8String();
-        log.debug("Bedrock response: {}", responseBody);
-
-        return responseParser.parseTypedResponse(provider, responseBody, responseType);
     }
 
     /**
@@ -145,35 +296,19 @@ public class BedrockVisionService {
      * @return Parsed response of type T
      */
     public <T> T invokeWithS3Images(String useCase, String[] s3Urls, String prompt, Class<T> responseType) throws IOException {
-        if (s3Urls == null || s3Urls.length == 0) {
-            throw new IllegalArgumentException("At least one S3 URL is required");
-        }
-
-        BedrockModelConfig.ModelSettings settings = modelConfig.getSettingsForUseCase(useCase);
-        String modelId = settings.getModelId();
-        BedrockModelProvider provider = BedrockModelProvider.fromModelId(modelId);
+        return invoke(prepareS3ImageInvocation(useCase, s3Urls, prompt), responseType);
+    }
 
-        if (provider != BedrockModelProvider.ANTHROPIC) {
-            throw new UnsupportedOperationException("S3 URLs are only supported for Claude models");
+    /**
+     * Non-blocking variant of {@link #invokeWithS3Images(String, String[], String, Class)}.
+     */
+    public <T> CompletableFuture<T> invokeWithS3ImagesAsync(String useCase, String[] s3Urls, String prompt,
+                                                            Class<T> responseType) {
+        try {
+            return invokeAsync(prepareS3ImageInvocation(useCase, s3Urls, prompt), responseType);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
         }
-
-        String requestBody = requestBuilder.buildImageRequestWithS3(
-                s3Urls, prompt,
-                settings.getMaxTokens(), settings.getTemperature());
-
-        log.info("Invoking Bedrock model: {} with S3 images (use case: {}, image count: {})",
-                modelId, useCase, s3Urls.length);
-
-        InvokeModelRequest request = InvokeModelRequest.builder()
-                .modelId(modelId)
-                .body(SdkBytes.fromUtf8String(requestBody))
-                .build();
-
-        InvokeModelResponse response = bedrockClient.invokeModel(request);
-        String responseBody = response.body().asUtf8String();
-        log.debug("Bedrock response: {}", responseBody);
-
-        return responseParser.parseTypedResponse(provider, responseBody, responseType);
     }
 
     /**
@@ -197,26 +332,18 @@ public class BedrockVisionService {
      * @return Parsed response of type T
      */
     public <T> T invokeWithText(String useCase, String prompt, Class<T> responseType) throws IOException {
-        BedrockModelConfig.ModelSettings settings = modelConfig.getSettingsForUseCase(useCase);
-        String modelId = settings.getModelId();
-        BedrockModelProvider provider = BedrockModelProvider.fromModelId(modelId);
-
-        String requestBody = requestBuilder.buildTextRequest(
-                provider, prompt,
-                settings.getMaxTokens(), settings.getTemperature());
-
-        log.info("Invoking Bedrock model: {} (provider: {}, use case: {})", modelId, provider, useCase);
-
-        InvokeModelRequest request = InvokeModelRequest.builder()
-                .modelId(modelId)
-                .body(SdkBytes.fromUtf8String(requestBody))
-                .build();
-
-        InvokeModelResponse response = bedrockClient.invokeModel(request);
-        String responseBody = response.body().asUtf8String();
-        log.debug("Bedrock response: {}", responseBody);
+        return invoke(prepareTextInvocation(useCase, prompt), responseType);
+    }
 
-        return responseParser.parseTypedResponse(provider, responseBody, responseType);
+    /**
+     * Non-blocking variant of {@link #invokeWithText(String, String, Class)}.
+     */
+    public <T> CompletableFuture<T> invokeWithTextAsync(String useCase, String prompt, Class<T> responseType) {
+        try {
+            return invokeAsync(prepareTextInvocation(useCase, prompt), responseType);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
     /**
@@ -245,10 +372,603 @@ public class BedrockVisionService {
         });
     }
 
-    private String encodeImageToBase64(BufferedImage image) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(image, "jpg", baos);
-        byte[] imageBytes = baos.toByteArray();
-        return Base64.getEncoder().encodeToString(imageBytes);
+    /**
+     * A card analysis prompt, with an instruction to leave out the reasoning when the use case is
+     * configured to omit it. The instruction is part of the prompt text, so it is part of cache keys.
+     */
+    private String cardPrompt(String promptFileName) throws IOException {
+        String prompt = loadPrompt(promptFileName);
+        if (modelConfig.getSettingsForUseCase(CARD_ANALYSIS_USE_CASE).isOmitReasoning()) {
+            return prompt + OMIT_REASONING_INSTRUCTION;
+        }
+        return prompt;
+    }
+
+    private Invocation prepareImageInvocation(String useCase, BufferedImage[] images, String prompt) throws IOException {
+        if (images == null || images.length == 0) {
+            throw new IllegalArgumentException("At least one image is required");
+        }
+
+        EncodedImage[] encoded = new EncodedImage[images.length];
+        for (int i = 0; i < images.length; i++) {
+            encoded[i] = imagePreparer.prepare(images[i], null);
+        }
+        return prepareEncodedImageInvocation(useCase, encoded, prompt);
+    }
+
+    private Invocation prepareEncodedImageInvocation(String useCase, EncodedImage[] images, String prompt) throws IOException {
+        return prepareEncodedImageInvocation(useCase, modelConfig.getSettingsForUseCase(useCase).getModelId(),
+                images, prompt, null);
+    }
+
+    /**
+     * @param tool The tool the model must answer through, or null for a text answer
+     */
+    private Invocation prepareEncodedImageInvocation(String useCase, String modelId, EncodedImage[] images,
+                                                     String prompt, BedrockTool tool) throws IOException {
+        BedrockModelConfig.ModelSettings settings = modelConfig.getSettingsForUseCase(useCase);
+        BedrockModelProvider provider = BedrockModelProvider.fromModelId(modelId);
+
+        // Images are base64-encoded while the body is written, straight into the final buffer
+        byte[] requestBody = requestBuilder.buildImageRequest(
+                provider, images, prompt,
+                settings.getMaxTokens(), settings.getTemperature(), settings.isPromptCaching(), tool);
+
+        log.info("Invoking Bedrock model: {} (provider: {}, use case: {}, image count: {})",
+                modelId, provider, useCase, images.length);
+
+        return new Invocation(useCase, provider, InvokeModelRequest.builder()
+                .modelId(modelId)
+                .body(SdkBytes.fromByteArrayUnsafe(requestBody))
+                .build(), tool != null);
+    }
+
+    /**
+     * The tool that a card analysis answering in the given schema is forced through, when the use
+     * case enables tool use and the model is Claude; otherwise null, for a text answer.
+     *
+     * @param schemaFileName JSON Schema of the answer, in the prompts directory, or null
+     */
+    private BedrockTool responseTool(String useCase, String modelId, String schemaFileName) throws IOException {
+        if (schemaFileName == null
+                || !modelConfig.getSettingsForUseCase(useCase).isToolUse()
+                || BedrockModelProvider.fromModelId(modelId) != BedrockModelProvider.ANTHROPIC) {
+            return null;
+        }
+        String name = "report_" + schemaFileName.substring(0, schemaFileName.indexOf('.'));
+        return new BedrockTool(name, "Reports the result of the analysis described in the instructions.",
+                loadPrompt(schemaFileName));
+    }
+
+    private Invocation prepareS3ImageInvocation(String useCase, String[] s3Urls, String prompt) throws IOException {
+        if (s3Urls == null || s3Urls.length == 0) {
+            throw new IllegalArgumentException("At least one S3 URL is required");
+        }
+
+        BedrockModelConfig.ModelSettings settings = modelConfig.getSettingsForUseCase(useCase);
+        String modelId = settings.getModelId();
+        BedrockModelProvider provider = BedrockModelProvider.fromModelId(modelId);
+
+        if (provider != BedrockModelProvider.ANTHROPIC) {
+            throw new UnsupportedOperationException("S3 URLs are only supported for Claude models");
+        }
+
+        byte[] requestBody = requestBuilder.buildImageRequestWithS3(
+                s3Urls, prompt,
+                settings.getMaxTokens(), settings.getTemperature());
+
+        log.info("Invoking Bedrock model: {} with S3 images (use case: {}, image count: {})",
+                modelId, useCase, s3Urls.length);
+
+        return new Invocation(useCase, provider, InvokeModelRequest.builder()
+                .modelId(modelId)
+                .body(SdkBytes.fromByteArrayUnsafe(requestBody))
+                .build());
+    }
+
+    private Invocation prepareTextInvocation(String useCase, String prompt) throws IOException {
+        BedrockModelConfig.ModelSettings settings = modelConfig.getSettingsForUseCase(useCase);
+        String modelId = settings.getModelId();
+        BedrockModelProvider provider = BedrockModelProvider.fromModelId(modelId);
+
+        byte[] requestBody = requestBuilder.buildTextRequest(
+                provider, prompt,
+                settings.getMaxTokens(), settings.getTemperature());
+
+        log.info("Invoking Bedrock model: {} (provider: {}, use case: {})", modelId, provider, useCase);
+
+        return new Invocation(useCase, provider, InvokeModelRequest.builder()
+                .modelId(modelId)
+                .body(SdkBytes.fromByteArrayUnsafe(requestBody))
+                .build());
+    }
+
+    /**
+     * Blocking variant of a hedged {@link #sendAsync}.
+     */
+    private <T> T invokeHedged(String useCase, String modelId, EncodedImage[] images, String prompt,
+                               Class<T> responseType) throws IOException {
+        try {
+            return hedger.hedge(useCase, modelId, target -> sendAsync(useCase, target, images, prompt, responseType))
+                    .join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    private <T> T invoke(Invocation invocation, Class<T> responseType) throws IOException {
+        long start = System.nanoTime();
+        InvokeModelResponse response = bedrockInvoker.invoke(invocation.useCase(), invocation.request());
+        String responseBody = response.body().asUtf8String();
+        log.debug("Bedrock response: {}", responseBody);
+        recordUsage(invocation, responseParser.parseUsage(invocation.provider(), responseBody), start);
+
+        if (invocation.toolUse()) {
+            return responseParser.parseToolInput(responseBody, responseType);
+        }
+        return responseParser.parseTypedResponse(invocation.provider(), responseBody, responseType);
+    }
+
+    /**
+     * Single-card analysis of an image already prepared for the model.
+     */
+    private CompletableFuture<CardAnalysisResult> analyzeEncodedCardAsync(EncodedImage image) throws IOException {
+        String prompt = cardPrompt(CARD_ANALYSIS_PROMPT);
+        EncodedImage[] payload = {image};
+        return resultCache.getAsync(cacheKey(CARD_ANALYSIS_PROMPT, prompt, payload), CardAnalysisResult.class,
+                () -> invokeEscalatingAsync(CARD_ANALYSIS_USE_CASE, payload, prompt, CardAnalysisResult.class,
+                        BedrockVisionService::confidence));
+    }
+
+    /**
+     * Splits images into requests of at most {@code bedrock.batch.max-images} images and
+     * {@code bedrock.batch.max-bytes} encoded bytes, keeping their order.
+     */
+    private List<List<Integer>> batchRequests(Collection<Integer> indexes, EncodedImage[] payload) {
+        BedrockModelConfig.Batch limits = modelConfig.getBatch();
+        List<List<Integer>> requests = new ArrayList<>();
+        List<Integer> current = new ArrayList<>();
+        long bytes = 0;
+        for (int index : indexes) {
+            int size = payload[index].sizeBytes();
+            if (!current.isEmpty() && (current.size() >= limits.getMaxImages() || bytes + size > limits.getMaxBytes())) {
+                requests.add(current);
+                current = new ArrayList<>();
+                bytes = 0;
+            }
+            current.add(index);
+            bytes += size;
+        }
+        if (!current.isEmpty()) {
+            requests.add(current);
+        }
+        return requests;
+    }
+
+    /**
+     * Sends one batch request to the first model of the card analysis chain and completes each
+     * image's future with its entry, or with a single-card analysis when the entry is unusable.
+     */
+    private void sendBatch(List<Integer> request, EncodedImage[] payload,
+                           Map<Integer, CompletableFuture<CardAnalysisResult>> results, String prompt) {
+        List<String> models = modelConfig.getModelChainForUseCase(CARD_ANALYSIS_USE_CASE);
+        String modelId = models.get(0);
+        EncodedImage[] images = new EncodedImage[request.size()];
+        String[] labels = new String[request.size()];
+        for (int i = 0; i < images.length; i++) {
+            images[i] = payload[request.get(i)];
+            labels[i] = "Image " + (i + 1);
+        }
+
+        CompletableFuture<JsonNode> response;
+        if (images.length == 1 || BedrockModelProvider.fromModelId(modelId) != BedrockModelProvider.ANTHROPIC) {
+            // Nothing to share, or a model that cannot take labeled images: every card on its own
+            response = CompletableFuture.completedFuture(null);
+        } else {
+            meterRegistry.summary("bedrock.batch.images", "model", modelId).record(images.length);
+            try {
+                response = invokeAsync(prepareBatchInvocation(modelId, images, labels, prompt), JsonNode.class);
+            } catch (Exception e) {
+                response = CompletableFuture.failedFuture(e);
+            }
+        }
+
+        double threshold = modelConfig.getSettingsForUseCase(CARD_ANALYSIS_USE_CASE).getEscalationConfidence();
+        response.whenComplete((answer, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause != null && !(cause instanceof IOException)) {
+                request.forEach(index -> results.get(index).completeExceptionally(cause));
+                return;
+            }
+            if (cause != null) {
+                log.warn("Unparseable batch response from {}, analyzing {} cards one by one: {}",
+                        modelId, images.length, cause.getMessage());
+            }
+            CardAnalysisResult[] entries = batchEntries(answer, images.length);
+            for (int i = 0; i < entries.length; i++) {
+                CompletableFuture<CardAnalysisResult> result = results.get(request.get(i));
+                CompletableFuture<CardAnalysisResult> retry;
+                try {
+                    if (entries[i] == null) {
+                        if (images.length > 1) {
+                            meterRegistry.counter("bedrock.batch.fallbacks", "model", modelId).increment();
+                        }
+                        retry = analyzeEncodedCardAsync(images[i]);
+                    } else if (models.size() > 1 && confidence(entries[i]) < threshold) {
+                        escalate(CARD_ANALYSIS_USE_CASE, modelId, "low_confidence",
+                                "confidence " + confidence(entries[i]) + "% in batch");
+                        retry = invokeEscalatingAsync(CARD_ANALYSIS_USE_CASE, models.subList(1, models.size()),
+                                new EncodedImage[]{images[i]}, cardPrompt(CARD_ANALYSIS_PROMPT),
+                                CardAnalysisResult.class, BedrockVisionService::confidence);
+                    } else {
+                        result.complete(answered(CARD_ANALYSIS_USE_CASE, modelId, entries[i]));
+                        continue;
+                    }
+                } catch (Exception e) {
+                    retry = CompletableFuture.failedFuture(e);
+                }
+                retry.whenComplete((value, retryError) -> {
+                    if (retryError != null) {
+                        result.completeExceptionally(retryError);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Matches the entries of a batch response to the images by their label number. Entries that
+     * are missing, duplicated, unlabeled or without a bounding box leave their image's slot null.
+     */
+    private CardAnalysisResult[] batchEntries(JsonNode response, int count) {
+        CardAnalysisResult[] entries = new CardAnalysisResult[count];
+        JsonNode cards = response == null ? null : response.get("cards");
+        if (cards == null || !cards.isArray()) {
+            return entries;
+        }
+        for (JsonNode card : cards) {
+            int image = card.path("image").asInt(0);
+            if (!card.isObject() || image < 1 || image > count || entries[image - 1] != null) {
+                continue;
+            }
+            ObjectNode fields = ((ObjectNode) card).deepCopy();
+            fields.remove("image");
+            try {
+                CardAnalysisResult entry = objectMapper.treeToValue(fields, CardAnalysisResult.class);
+                if (entry.getBoundingBox() != null) {
+                    entries[image - 1] = entry;
+                }
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                log.debug("Ignoring malformed batch entry for image {}: {}", image, e.getMessage());
+            }
+        }
+        return entries;
+    }
+
+    private Invocation prepareBatchInvocation(String modelId, EncodedImage[] images, String[] labels,
+                                              String prompt) throws IOException {
+        BedrockModelConfig.ModelSettings settings = modelConfig.getSettingsForUseCase(CARD_ANALYSIS_USE_CASE);
+        BedrockModelProvider provider = BedrockModelProvider.fromModelId(modelId);
+        int maxTokens = Math.max(settings.getMaxTokens(), modelConfig.getBatch().getMaxTokensPerImage() * images.length);
+
+        BedrockTool tool = responseTool(CARD_ANALYSIS_USE_CASE, modelId, CARD_BATCH_ANALYSIS_SCHEMA);
+
+        byte[] requestBody = requestBuilder.buildLabeledImageRequest(
+                provider, images, labels, prompt, maxTokens, settings.getTemperature(), settings.isPromptCaching(), tool);
+
+        log.info("Invoking Bedrock model: {} (provider: {}, use case: {}, batch of {} images)",
+                modelId, provider, CARD_ANALYSIS_USE_CASE, images.length);
+
+        return new Invocation(CARD_ANALYSIS_USE_CASE, provider, InvokeModelRequest.builder()
+                .modelId(modelId)
+                .body(SdkBytes.fromByteArrayUnsafe(requestBody))
+                .build(), tool != null);
+    }
+
+    /**
+     * Asks the models of the use case's escalation chain in order until one gives an answer that
+     * parses and reaches the escalation confidence; the last model's answer is returned as-is.
+     * Invocation failures, throttling included, are not escalated but rethrown.
+     */
+    private <T> T invokeEscalating(String useCase, EncodedImage[] images, String prompt, Class<T> responseType,
+                                   ToDoubleFunction<T> confidence) throws IOException {
+        List<String> models = modelConfig.getModelChainForUseCase(useCase);
+        double threshold = modelConfig.getSettingsForUseCase(useCase).getEscalationConfidence();
+        for (int i = 0; ; i++) {
+            String modelId = models.get(i);
+            boolean last = i == models.size() - 1;
+            T answer;
+            try {
+                answer = hedger.isEnabled()
+                        ? invokeHedged(useCase, modelId, images, prompt, responseType)
+                        : invoke(prepareEncodedImageInvocation(useCase, modelId, images, prompt,
+                                responseTool(useCase, modelId, RESPONSE_SCHEMAS.get(responseType))), responseType);
+            } catch (IOException e) {
+                if (last) {
+                    throw e;
+                }
+                escalate(useCase, modelId, "unparseable", e.getMessage());
+                continue;
+            }
+            if (last || confidence.applyAsDouble(answer) >= threshold) {
+                return answered(useCase, modelId, answer);
+            }
+            escalate(useCase, modelId, "low_confidence", "confidence " + confidence.applyAsDouble(answer) + "%");
+        }
+    }
+
+    /**
+     * Non-blocking variant of {@link #invokeEscalating}. Cancelling the returned future cancels
+     * the request in flight.
+     */
+    private <T> CompletableFuture<T> invokeEscalatingAsync(String useCase, EncodedImage[] images, String prompt,
+                                                           Class<T> responseType, ToDoubleFunction<T> confidence) {
+        return invokeEscalatingAsync(useCase, modelConfig.getModelChainForUseCase(useCase), images, prompt,
+                responseType, confidence);
+    }
+
+    private <T> CompletableFuture<T> invokeEscalatingAsync(String useCase, List<String> models, EncodedImage[] images,
+                                                           String prompt, Class<T> responseType,
+                                                           ToDoubleFunction<T> confidence) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        double threshold = modelConfig.getSettingsForUseCase(useCase).getEscalationConfidence();
+        escalateAsync(useCase, models, 0, threshold, images, prompt, responseType, confidence, result);
+        return result;
+    }
+
+    /**
+     * Sends one card analysis request to {@code modelId}. A request that cannot be prepared fails
+     * with an {@link UncheckedIOException}, so it is not mistaken for an unparseable answer.
+     */
+    private <T> CompletableFuture<T> sendAsync(String useCase, String modelId, EncodedImage[] images, String prompt,
+                                               Class<T> responseType) {
+        Invocation invocation;
+        try {
+            invocation = prepareEncodedImageInvocation(useCase, modelId, images, prompt,
+                    responseTool(useCase, modelId, RESPONSE_SCHEMAS.get(responseType)));
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new UncheckedIOException(e));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return modelConfig.getSettingsForUseCase(useCase).isStreaming()
+                ? invokeStreamingAsync(invocation, responseType, earlyCompletion(responseType))
+                : invokeAsync(invocation, responseType);
+    }
+
+    private <T> void escalateAsync(String useCase, List<String> models, int index, double threshold,
+                                   EncodedImage[] images, String prompt, Class<T> responseType,
+                                   ToDoubleFunction<T> confidence, CompletableFuture<T> result) {
+        if (result.isDone()) {
+            return;
+        }
+        String modelId = models.get(index);
+        boolean last = index == models.size() - 1;
+        CompletableFuture<T> call = hedger.hedge(useCase, modelId,
+                target -> sendAsync(useCase, target, images, prompt, responseType));
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                call.cancel(true);
+            }
+        });
+        call.whenComplete((answer, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause != null && (last || !(cause instanceof IOException))) {
+                result.completeExceptionally(cause);
+            } else if (cause != null) {
+                escalate(useCase, modelId, "unparseable", cause.getMessage());
+                escalateAsync(useCase, models, index + 1, threshold, images, prompt, responseType, confidence, result);
+            } else if (last || confidence.applyAsDouble(answer) >= threshold) {
+                result.complete(answered(useCase, modelId, answer));
+            } else {
+                escalate(useCase, modelId, "low_confidence", "confidence " + confidence.applyAsDouble(answer) + "%");
+                escalateAsync(useCase, models, index + 1, threshold, images, prompt, responseType, confidence, result);
+            }
+        });
+    }
+
+    private void escalate(String useCase, String modelId, String reason, String detail) {
+        meterRegistry.counter("bedrock.escalations", "model", modelId, "use_case", useCase, "reason", reason).increment();
+        log.info("Escalating {} from {} ({}: {})", useCase, modelId, reason, detail);
+    }
+
+    private <T> T answered(String useCase, String modelId, T answer) {
+        meterRegistry.counter("bedrock.answers", "model", modelId, "use_case", useCase).increment();
+        return answer;
+    }
+
+    /**
+     * Confidence of a card analysis for escalation; an answer without a bounding box counts as zero.
+     */
+    private static double confidence(CardAnalysisResult result) {
+        return result == null || result.getBoundingBox() == null ? 0 : result.getConfidence();
+    }
+
+    /**
+     * A pair is only as confident as its less certain side.
+     */
+    private static double confidence(CardPairAnalysisResult result) {
+        return result == null ? 0 : Math.min(confidence(result.getFront()), confidence(result.getBack()));
+    }
+
+    private <T> CompletableFuture<T> invokeAsync(Invocation invocation, Class<T> responseType) {
+        long start = System.nanoTime();
+        CompletableFuture<InvokeModelResponse> call = bedrockInvoker.invokeAsync(invocation.useCase(), invocation.request());
+        return cancellable(call, call.thenApply(response -> {
+                    String responseBody = response.body().asUtf8String();
+                    log.debug("Bedrock response: {}", responseBody);
+                    recordUsage(invocation, responseParser.parseUsage(invocation.provider(), responseBody), start);
+                    try {
+                        if (invocation.toolUse()) {
+                            return responseParser.parseToolInput(responseBody, responseType);
+                        }
+                        return responseParser.parseTypedResponse(invocation.provider(), responseBody, responseType);
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                }));
+    }
+
+    /**
+     * Returns {@code result}, a stage derived from {@code call}, made to cancel {@code call} when
+     * it is cancelled itself (derived stages do not pass cancellation upstream).
+     */
+    private static <T> CompletableFuture<T> cancellable(CompletableFuture<?> call, CompletableFuture<T> result) {
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                call.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Streamed variant of {@link #invokeAsync}: the model's text is parsed as it arrives and the
+     * stream is stopped as soon as {@code complete} accepts what has been received, so the model
+     * does not spend time generating fields nobody waits for (such as the reasoning). A response
+     * that ends before the JSON closes fails with an {@link IOException}, like an unparseable one.
+     * Time to the first generated text is recorded in {@code bedrock.invocation.first_token}.
+     */
+    private <T> CompletableFuture<T> invokeStreamingAsync(Invocation invocation, Class<T> responseType,
+                                                          Predicate<StreamingJsonReader> complete) {
+        long start = System.nanoTime();
+        StreamingJsonReader json = new StreamingJsonReader(objectMapper.getFactory());
+        AtomicReference<BedrockUsage> usage = new AtomicReference<>(BedrockUsage.NONE);
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        AtomicBoolean early = new AtomicBoolean();
+        AtomicBoolean firstText = new AtomicBoolean();
+        InvokeModelWithResponseStreamRequest request = InvokeModelWithResponseStreamRequest.builder()
+                .modelId(invocation.request().modelId())
+                .body(invocation.request().body())
+                .build();
+
+        CompletableFuture<Void> call = bedrockInvoker.invokeStreamAsync(invocation.useCase(), request, chunk -> {
+            try {
+                JsonNode event = objectMapper.readTree(chunk);
+                usage.accumulateAndGet(responseParser.parseStreamUsage(invocation.provider(), event), BedrockUsage::max);
+                String text = responseParser.extractStreamText(invocation.provider(), event);
+                if (text.isEmpty()) {
+                    return true;
+                }
+                if (firstText.compareAndSet(false, true)) {
+                    meterRegistry.timer("bedrock.invocation.first_token", "model", request.modelId(),
+                                    "use_case", invocation.useCase() == null ? "default" : invocation.useCase())
+                            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+                if (json.feed(text)) {
+                    return false;
+                }
+                if (complete.test(json)) {
+                    early.set(true);
+                    return false;
+                }
+                return true;
+            } catch (IOException e) {
+                failure.set(e);
+                return false;
+            }
+        });
+        return cancellable(call, call.thenApply(ignored -> {
+            recordUsage(invocation, usage.get(), start);
+            try {
+                if (failure.get() != null) {
+                    throw failure.get();
+                }
+                if (!json.isDone() && !early.get()) {
+                    throw new IOException("Streamed response ended before its JSON was complete");
+                }
+                log.debug("Bedrock streamed response ({}): {}", early.get() ? "stopped early" : "complete", json.root());
+                return objectMapper.treeToValue(json.root(), responseType);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }));
+    }
+
+    /**
+     * When a streamed response of this type has everything the caller uses: the geometry and
+     * confidence of each card analysis in it. Other types are read to the end.
+     */
+    private static Predicate<StreamingJsonReader> earlyCompletion(Class<?> responseType) {
+        if (responseType == CardAnalysisResult.class) {
+            return json -> hasCardGeometry(json, json.root());
+        }
+        if (responseType == CardPairAnalysisResult.class) {
+            return json -> json.root() != null
+                    && hasCardGeometry(json, json.root().get("front"))
+                    && hasCardGeometry(json, json.root().get("back"));
+        }
+        return json -> false;
+    }
+
+    private static boolean hasCardGeometry(StreamingJsonReader json, JsonNode card) {
+        return card != null
+                && json.isClosed(card.get("bounding_box"))
+                && card.has("rotation_degrees")
+                && card.has("confidence");
+    }
+
+    /**
+     * Records the response's token usage in {@code bedrock.tokens} (tag {@code type}: input, output,
+     * cache_read, cache_write) and the call's duration in {@code bedrock.invocation.duration}, tagged
+     * with how the prompt cache served it, so cached and uncached prefixes can be compared.
+     */
+    private void recordUsage(Invocation invocation, BedrockUsage usage, long start) {
+        String modelId = invocation.request().modelId();
+        String useCase = invocation.useCase() == null ? "default" : invocation.useCase();
+        meterRegistry.counter("bedrock.tokens", "model", modelId, "use_case", useCase, "type", "input")
+                .increment(usage.inputTokens());
+        meterRegistry.counter("bedrock.tokens", "model", modelId, "use_case", useCase, "type", "output")
+                .increment(usage.outputTokens());
+        meterRegistry.counter("bedrock.tokens", "model", modelId, "use_case", useCase, "type", "cache_read")
+                .increment(usage.cacheReadInputTokens());
+        meterRegistry.counter("bedrock.tokens", "model", modelId, "use_case", useCase, "type", "cache_write")
+                .increment(usage.cacheWriteInputTokens());
+        meterRegistry.timer("bedrock.invocation.duration", "model", modelId, "use_case", useCase,
+                        "prompt_cache", usage.cacheOutcome())
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.debug("Bedrock usage for {}: {}", modelId, usage);
+    }
+
+    /**
+     * Cache key for a card analysis: the models serving the use case (and the confidence at which
+     * they escalate), the prompt file and its content (so editing a prompt invalidates old results),
+     * and the hash of every image sent.
+     */
+    private String cacheKey(String promptFileName, String prompt, EncodedImage[] images) {
+        List<String> models = modelConfig.getModelChainForUseCase(CARD_ANALYSIS_USE_CASE);
+        String[] parts = new String[images.length + 3];
+        parts[0] = models.size() == 1 ? models.get(0) : String.join(">", models)
+                + "@" + modelConfig.getSettingsForUseCase(CARD_ANALYSIS_USE_CASE).getEscalationConfidence();
+        parts[1] = promptFileName;
+        parts[2] = BedrockResultCache.hash(prompt.getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < images.length; i++) {
+            parts[i + 3] = BedrockResultCache.hash(images[i].data());
+        }
+        return BedrockResultCache.key(parts);
+    }
+
+    /**
+     * A prepared model request together with what is needed to parse its response.
+     *
+     * @param toolUse Whether the answer comes as the input of a forced tool call rather than as text
+     */
+    private record Invocation(String useCase, BedrockModelProvider provider, InvokeModelRequest request,
+                              boolean toolUse) {
+
+        Invocation(String useCase, BedrockModelProvider provider, InvokeModelRequest request) {
+            this(useCase, provider, request, false);
+        }
     }
 }
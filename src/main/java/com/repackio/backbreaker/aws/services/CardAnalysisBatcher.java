@@ -0,0 +1,119 @@
+package com.repackio.backbreaker.aws.services;
+
+import com.repackio.backbreaker.aws.bedrock.BedrockModelConfig;
+import com.repackio.backbreaker.aws.dto.CardAnalysisResult;
+import com.repackio.backbreaker.image.EncodedImage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathers the card analyses that workers request at about the same time into shared batch
+ * requests (see {@link BedrockVisionService#analyzeCardBatchAsync}).
+ * <p>
+ * The first card of a batch waits at most {@code bedrock.batch.max-wait} for others to join it;
+ * a batch that reaches {@code bedrock.batch.max-images} is sent right away. Cancelling a card's
+ * future before its batch is sent takes it out of the batch; once sent, the request is shared and
+ * runs to completion.
+ */
+@Slf4j
+@Service
+public class CardAnalysisBatcher {
+
+    private final BedrockVisionService bedrockVisionService;
+    private final BedrockModelConfig.Batch settings;
+
+    private final Object lock = new Object();
+    private List<PendingCard> pending = new ArrayList<>();
+    /** Incremented whenever a batch is taken, so a stale flush timer does nothing. */
+    private long generation;
+
+    public CardAnalysisBatcher(BedrockVisionService bedrockVisionService, BedrockModelConfig modelConfig) {
+        this.bedrockVisionService = bedrockVisionService;
+        this.settings = modelConfig.getBatch();
+        log.info("Card analysis batching: enabled={}, max images={}, max wait={}",
+                settings.isEnabled(), settings.getMaxImages(), settings.getMaxWait());
+    }
+
+    public boolean isEnabled() {
+        return settings.isEnabled();
+    }
+
+    /**
+     * Queues a card image for the next batch.
+     *
+     * @param image  The decoded image
+     * @param source The encoded original of {@code image}, or null
+     */
+    public CompletableFuture<CardAnalysisResult> submit(BufferedImage image, EncodedImage source) {
+        PendingCard card = new PendingCard(image, source, new CompletableFuture<>());
+        List<PendingCard> full = null;
+        long batch;
+        boolean first;
+        synchronized (lock) {
+            pending.add(card);
+            batch = generation;
+            first = pending.size() == 1;
+            if (pending.size() >= Math.max(1, settings.getMaxImages())) {
+                full = take();
+            }
+        }
+
+        if (full != null) {
+            send(full);
+        } else if (first) {
+            CompletableFuture.delayedExecutor(settings.getMaxWait().toMillis(), TimeUnit.MILLISECONDS)
+                    .execute(() -> flush(batch));
+        }
+        return card.result();
+    }
+
+    private void flush(long batch) {
+        List<PendingCard> cards;
+        synchronized (lock) {
+            if (generation != batch || pending.isEmpty()) {
+                return;
+            }
+            cards = take();
+        }
+        send(cards);
+    }
+
+    private List<PendingCard> take() {
+        List<PendingCard> cards = pending;
+        pending = new ArrayList<>();
+        generation++;
+        return cards;
+    }
+
+    private void send(List<PendingCard> cards) {
+        cards.removeIf(card -> card.result().isDone());
+        if (cards.isEmpty()) {
+            return;
+        }
+        BufferedImage[] images = new BufferedImage[cards.size()];
+        EncodedImage[] sources = new EncodedImage[cards.size()];
+        for (int i = 0; i < images.length; i++) {
+            images[i] = cards.get(i).image();
+            sources[i] = cards.get(i).source();
+        }
+
+        bedrockVisionService.analyzeCardBatchAsync(images, sources).whenComplete((results, error) -> {
+            for (int i = 0; i < images.length; i++) {
+                if (error != null) {
+                    cards.get(i).result().completeExceptionally(error);
+                } else {
+                    cards.get(i).result().complete(results[i]);
+                }
+            }
+        });
+    }
+
+    private record PendingCard(BufferedImage image, EncodedImage source, CompletableFuture<CardAnalysisResult> result) {
+    }
+}
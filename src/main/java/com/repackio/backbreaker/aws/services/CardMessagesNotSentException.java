@@ -0,0 +1,21 @@
+package com.repackio.backbreaker.aws.services;
+
+import java.util.List;
+
+/**
+ * Thrown when some card messages could not be enqueued. Lists the cards left without a message,
+ * so the caller can take them out of the queued state.
+ */
+public class CardMessagesNotSentException extends RuntimeException {
+
+    private final List<Long> cardIds;
+
+    public CardMessagesNotSentException(String message, List<Long> cardIds, Throwable cause) {
+        super(message, cause);
+        this.cardIds = List.copyOf(cardIds);
+    }
+
+    public List<Long> getCardIds() {
+        return cardIds;
+    }
+}
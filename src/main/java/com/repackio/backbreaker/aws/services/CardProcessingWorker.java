@@ -1,120 +1,423 @@
 package com.repackio.backbreaker.aws.services;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.repackio.backbreaker.aws.SqsConsumerProperties;
 import com.repackio.backbreaker.aws.dto.CardProcessingMessage;
 import com.repackio.backbreaker.models.CardProcessingStatus;
+import com.repackio.backbreaker.models.ProductSeries;
+import com.repackio.backbreaker.models.SeriesCard;
+import com.repackio.backbreaker.processing.CardDeadline;
+import com.repackio.backbreaker.processing.CardPipeline;
+import com.repackio.backbreaker.processing.CardProcessingContext;
+import com.repackio.backbreaker.processing.CardProcessingProperties;
+import com.repackio.backbreaker.processing.SeriesCompletionService;
 import com.repackio.backbreaker.repositories.CardProcessingStatusRepository;
+import com.repackio.backbreaker.repositories.ProductSeriesRepository;
 import com.repackio.backbreaker.repositories.SeriesCardRepository;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.services.sqs.SqsClient;
-import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
 import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
 import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
-import software.amazon.awssdk.services.sqs.model.ReceiveMessageResponse;
 
-import java.awt.image.BufferedImage;
-import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Consumes the card processing queue, running each card through the same {@link CardPipeline} as
+ * local series processing.
+ * <p>
+ * Pollers long-poll for as many messages as there are idle workers (up to 10 per receive), so an
+ * instance never holds more messages than it can work on and the rest of the fleet can take them.
+ * The cards of a receive and their series are loaded with one query each. While a card is processed, a heartbeat keeps
+ * renewing its message's visibility timeout. Processed messages are deleted in batches of up to 10;
+ * failed ones are left to become visible again, so they are retried. On its last delivery
+ * ({@code aws.sqs.consumer.max-receive-count}) a failing card is marked as failed and its message
+ * dropped, so its series can still complete. The worker that finishes the last card of a series
+ * logs the series as complete (see {@link SeriesCompletionService}).
+ * <p>
+ * Outcomes are counted in {@code card.queue.messages} (tag {@code outcome}: processed, retried,
+ * failed, missing_card, unreadable) and completed series in {@code card.queue.series.completed}.
+ * Unreadable messages are deleted right away, since no delivery will ever process them.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 @ConditionalOnProperty(value = "aws.sqs.enabled", havingValue = "true", matchIfMissing = true)
 public class CardProcessingWorker {
 
+    /** Most messages SQS returns per receive, and most entries per batch request. */
+    private static final int SQS_BATCH_SIZE = 10;
+    private static final long RECEIVE_ERROR_BACKOFF_MILLIS = 1000;
+
     private final SqsClient sqsClient;
-    private final S3ImageService s3ImageService;
-    private final ImageCropService imageCropService;
+    private final CardPipeline pipeline;
+    private final SeriesCompletionService completionService;
     private final SeriesCardRepository seriesCardRepository;
+    private final ProductSeriesRepository productSeriesRepository;
     private final ObjectMapper objectMapper;
     private final CardProcessingStatusRepository statusRepo;
-
-    @Value("${aws.s3.uploadsBucket}")
-    private String uploadsBucket;
-
-    @Value("${aws.s3.processedBucket}")
-    private String processedBucket;
+    private final SqsConsumerProperties properties;
+    private final CardProcessingProperties processingProperties;
+    private final MeterRegistry meterRegistry;
 
     @Value("${aws.sqs.queueUrl}")
     private String queueUrl;
 
-    //@Scheduled(fixedDelay = 2000)
-    public void pollQueue() {
-        ReceiveMessageResponse response = sqsClient.receiveMessage(
-                ReceiveMessageRequest.builder()
-                        .queueUrl(queueUrl)
-                        .maxNumberOfMessages(5)
-                        .build());
+    /** Idle workers; a poller takes one permit per message it asks for. */
+    private Semaphore capacity;
+    private ExecutorService workers;
+    private ScheduledExecutorService scheduler;
+    private final List<Thread> pollers = new ArrayList<>();
+    private volatile boolean running;
+
+    /** Receipt handles of the messages being processed, by message ID, for the heartbeat. */
+    private final Map<String, String> inFlight = new ConcurrentHashMap<>();
+
+    private final Object ackLock = new Object();
+    private List<DeleteMessageBatchRequestEntry> pendingAcks = new ArrayList<>();
+    /** Incremented whenever the pending acks are taken, so a stale flush timer does nothing. */
+    private long ackGeneration;
+
+    public CardProcessingWorker(SqsClient sqsClient,
+                                CardPipeline pipeline,
+                                SeriesCompletionService completionService,
+                                SeriesCardRepository seriesCardRepository,
+                                ProductSeriesRepository productSeriesRepository,
+                                ObjectMapper objectMapper,
+                                CardProcessingStatusRepository statusRepo,
+                                SqsConsumerProperties properties,
+                                CardProcessingProperties processingProperties,
+                                MeterRegistry meterRegistry) {
+        this.sqsClient = sqsClient;
+        this.pipeline = pipeline;
+        this.completionService = completionService;
+        this.seriesCardRepository = seriesCardRepository;
+        this.productSeriesRepository = productSeriesRepository;
+        this.objectMapper = objectMapper;
+        this.statusRepo = statusRepo;
+        this.properties = properties;
+        this.processingProperties = processingProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            log.info("Card queue consumer disabled (aws.sqs.consumer.enabled=false)");
+            return;
+        }
+        int workerCount = Math.max(1, properties.getWorkers());
+        capacity = new Semaphore(workerCount);
+        workers = Executors.newFixedThreadPool(workerCount, namedThreadFactory("sqs-worker-"));
+        scheduler = Executors.newSingleThreadScheduledExecutor(namedThreadFactory("sqs-heartbeat-"));
+        long heartbeat = properties.getHeartbeatInterval().toMillis();
+        scheduler.scheduleAtFixedRate(this::heartbeat, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+
+        running = true;
+        ThreadFactory pollerThreads = namedThreadFactory("sqs-poller-");
+        for (int i = 0; i < Math.max(1, properties.getPollers()); i++) {
+            Thread poller = pollerThreads.newThread(this::pollLoop);
+            pollers.add(poller);
+            poller.start();
+        }
+        log.info("Card queue consumer started: {} pollers, {} workers, visibility timeout {}, queue {}",
+                pollers.size(), workerCount, properties.getVisibilityTimeout(), queueUrl);
+    }
 
-        for (Message message : response.messages()) {
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        pollers.forEach(Thread::interrupt);
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Card queue workers did not terminate in time, interrupting");
+            workers.shutdownNow();
+        }
+        scheduler.shutdownNow();
+        flushAcks(takeAcks());
+    }
+
+    private void pollLoop() {
+        while (running) {
+            int permits = 0;
             try {
-                process(message);
-
-                sqsClient.deleteMessage(
-                        DeleteMessageRequest.builder()
-                                .queueUrl(queueUrl)
-                                .receiptHandle(message.receiptHandle())
-                                .build());
-            } catch (Exception ex) {
-                log.error("Error processing SQS message", ex);
+                // Wait for an idle worker, then ask for as many messages as there are idle workers
+                capacity.acquire();
+                permits = 1 + capacity.drainPermits();
+                if (permits > SQS_BATCH_SIZE) {
+                    capacity.release(permits - SQS_BATCH_SIZE);
+                    permits = SQS_BATCH_SIZE;
+                }
+                List<Message> messages = receive(permits);
+                capacity.release(permits - messages.size());
+                // From here on dispatch owns the permits of the received messages
+                permits = 0;
+                if (!messages.isEmpty()) {
+                    dispatch(messages);
+                }
+            } catch (InterruptedException e) {
+                capacity.release(permits);
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                capacity.release(permits);
+                if (!running) {
+                    return;
+                }
+                log.error("Polling card queue failed: {}", e.getMessage(), e);
+                try {
+                    Thread.sleep(RECEIVE_ERROR_BACKOFF_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
             }
         }
     }
 
-    private void process(Message message) throws Exception {
-        CardProcessingMessage msg =
-                objectMapper.readValue(message.body(), CardProcessingMessage.class);
+    private List<Message> receive(int maxMessages) {
+        return sqsClient.receiveMessage(ReceiveMessageRequest.builder()
+                        .queueUrl(queueUrl)
+                        .maxNumberOfMessages(maxMessages)
+                        .waitTimeSeconds((int) Math.min(20, properties.getWaitTime().toSeconds()))
+                        .visibilityTimeout((int) properties.getVisibilityTimeout().toSeconds())
+                        .messageSystemAttributeNames(MessageSystemAttributeName.APPROXIMATE_RECEIVE_COUNT)
+                        .build())
+                .messages();
+    }
 
-        var card = seriesCardRepository.findById(msg.getCardId()).orElseThrow();
+    /**
+     * Loads the cards and series of a receive in two queries and hands each message to a worker. Every
+     * message holds one capacity permit until its worker is done with it; the permits of messages
+     * not handed to a worker (unreadable ones, or all remaining ones if loading or submitting
+     * fails) are released here, and those messages become visible again after their timeout.
+     */
+    private void dispatch(List<Message> messages) {
+        Set<Message> handedOff = new HashSet<>();
+        try {
+            Map<Message, CardProcessingMessage> parsed = new HashMap<>();
+            Set<Long> cardIds = new LinkedHashSet<>();
+            for (Message message : messages) {
+                try {
+                    CardProcessingMessage msg = objectMapper.readValue(message.body(), CardProcessingMessage.class);
+                    parsed.put(message, msg);
+                    cardIds.add(msg.getCardId());
+                } catch (Exception e) {
+                    log.error("Unreadable card queue message {}, dropping it: {}", message.messageId(), e.getMessage());
+                    count("unreadable");
+                    ack(message);
+                }
+            }
 
-        // Update DB status
-        CardProcessingStatus processingStatus = statusRepo.findByCode("processing").orElseThrow();
-        card.setProcessingStatus(processingStatus); // processing
-        seriesCardRepository.save(card);
+            Map<Long, SeriesCard> cards = new HashMap<>();
+            Map<Long, ProductSeries> series = new HashMap<>();
+            if (!cardIds.isEmpty()) {
+                seriesCardRepository.findAllById(cardIds).forEach(card -> cards.put(card.getId(), card));
+                Set<Integer> seriesIds = new LinkedHashSet<>();
+                cards.values().forEach(card -> seriesIds.add(card.getSeriesId().intValue()));
+                productSeriesRepository.findAllById(seriesIds).forEach(s -> series.put(s.getId().longValue(), s));
+            }
 
-        // Download originals
-        BufferedImage front = s3ImageService.downloadImage(uploadsBucket, msg.getFrontKey());
-        BufferedImage back  = s3ImageService.downloadImage(uploadsBucket, msg.getBackKey());
+            for (Message message : messages) {
+                CardProcessingMessage msg = parsed.get(message);
+                if (msg == null) {
+                    continue;
+                }
+                inFlight.put(message.messageId(), message.receiptHandle());
+                workers.execute(() -> {
+                    try {
+                        SeriesCard card = cards.get(msg.getCardId());
+                        handle(message, msg, card, card == null ? null : series.get(card.getSeriesId()));
+                    } finally {
+                        inFlight.remove(message.messageId());
+                        capacity.release();
+                    }
+                });
+                handedOff.add(message);
+            }
+        } finally {
+            for (Message message : messages) {
+                if (!handedOff.contains(message)) {
+                    inFlight.remove(message.messageId());
+                    capacity.release();
+                }
+            }
+        }
+    }
 
-        // Process images (Rekognition handles both cropping and orientation)
-        BufferedImage frontCropped = imageCropService.cropCard(front);
-        BufferedImage backCropped  = imageCropService.cropCard(back);
+    private void handle(Message message, CardProcessingMessage msg, SeriesCard card, ProductSeries series) {
+        if (card == null || series == null) {
+            // Nothing will ever process this message: acknowledge it rather than let it cycle
+            log.warn("Card {} of queue message {} not found, dropping message", msg.getCardId(), message.messageId());
+            count("missing_card");
+            ack(message);
+            return;
+        }
+        CardProcessingContext context = new CardProcessingContext(series, card,
+                CardDeadline.after(processingProperties.getCardDeadline()));
+        boolean failed = false;
+        try {
+            pipeline.process(context);
+            count("processed");
+        } catch (Exception ex) {
+            int receiveCount = receiveCount(message);
+            if (receiveCount < properties.getMaxReceiveCount()) {
+                count("retried");
+                log.warn("Card {} of series {} failed on delivery {} of {}, will be retried: {}",
+                        card.getId(), series.getId(), receiveCount, properties.getMaxReceiveCount(), ex.getMessage(), ex);
+                return;
+            }
+            count("failed");
+            log.error("Card {} of series {} failed on its last delivery, marking it as failed",
+                    card.getId(), series.getId(), ex);
+            failed = true;
+        }
 
-        // Build processed S3 keys
-        String frontProcessedKey = "processed/series/" + msg.getSeriesId() + "/cards/" + msg.getCardId() + "/front_cropped.jpg";
-        String backProcessedKey  = "processed/series/" + msg.getSeriesId() + "/cards/" + msg.getCardId() + "/back_cropped.jpg";
+        try {
+            if (failed) {
+                card.setProcessingStatus(statusRepo.findOrCreateByCode("error"));
+            }
+            if (completionService.saveFinishedCard(card)) {
+                meterRegistry.counter("card.queue.series.completed").increment();
+                log.info("Completed processing series {}: last card {} finished", series.getId(), card.getId());
+            }
+            ack(message);
+        } catch (Exception ex) {
+            log.error("Saving card {} of series {} failed, will be retried", card.getId(), series.getId(), ex);
+        }
+    }
 
-        // Upload results
-        s3ImageService.uploadImage(processedBucket, frontProcessedKey, frontCropped);
-        s3ImageService.uploadImage(processedBucket, backProcessedKey, backCropped);
+    private static int receiveCount(Message message) {
+        String count = message.attributes().get(MessageSystemAttributeName.APPROXIMATE_RECEIVE_COUNT);
+        try {
+            return count == null ? 1 : Integer.parseInt(count);
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
 
-        // URLs
-        String frontProcessedUrl = "s3://" + processedBucket + "/" + frontProcessedKey;
-        String backProcessedUrl  = "s3://" + processedBucket + "/" + backProcessedKey;
+    /**
+     * Queues a processed message for deletion. A full batch is deleted right away; otherwise the
+     * first message of a batch waits at most {@code ack-max-wait} for others to join it.
+     */
+    private void ack(Message message) {
+        List<DeleteMessageBatchRequestEntry> full = null;
+        boolean first;
+        long generation;
+        synchronized (ackLock) {
+            pendingAcks.add(DeleteMessageBatchRequestEntry.builder()
+                    .id(message.messageId())
+                    .receiptHandle(message.receiptHandle())
+                    .build());
+            first = pendingAcks.size() == 1;
+            generation = ackGeneration;
+            if (pendingAcks.size() >= SQS_BATCH_SIZE) {
+                full = takeAcks();
+            }
+        }
+        if (full != null) {
+            flushAcks(full);
+        } else if (first) {
+            scheduler.schedule(() -> flushAcks(generation), properties.getAckMaxWait().toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
 
-        // Build scan JSON
-        String frontScanJson = objectMapper.createObjectNode()
-                .put("processed_image_url", frontProcessedUrl)
-                .toString();
+    private void flushAcks(long generation) {
+        List<DeleteMessageBatchRequestEntry> entries;
+        synchronized (ackLock) {
+            if (generation != ackGeneration) {
+                return;
+            }
+            entries = takeAcks();
+        }
+        flushAcks(entries);
+    }
 
-        String backScanJson = objectMapper.createObjectNode()
-                .put("processed_image_url", backProcessedUrl)
-                .toString();
+    private List<DeleteMessageBatchRequestEntry> takeAcks() {
+        synchronized (ackLock) {
+            List<DeleteMessageBatchRequestEntry> entries = pendingAcks;
+            pendingAcks = new ArrayList<>();
+            ackGeneration++;
+            return entries;
+        }
+    }
 
-        CardProcessingStatus doneStatus = statusRepo.findByCode("done").orElseThrow();
+    private void flushAcks(List<DeleteMessageBatchRequestEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            DeleteMessageBatchResponse response = sqsClient.deleteMessageBatch(b -> b.queueUrl(queueUrl).entries(entries));
+            for (BatchResultErrorEntry failed : response.failed()) {
+                // The message becomes visible again and its card is processed once more
+                log.warn("Deleting card queue message {} failed: {} {}", failed.id(), failed.code(), failed.message());
+            }
+        } catch (Exception e) {
+            log.error("Deleting {} card queue messages failed: {}", entries.size(), e.getMessage(), e);
+        }
+    }
 
-        // Update DB
-        card.setProcessedFrontImgUrl(frontProcessedUrl);
-        card.setProcessedBackImgUrl(backProcessedUrl);
-        card.setFrontScanResults(frontScanJson);
-        card.setBackScanResults(backScanJson);
-        card.setProcessedAt(Instant.now());
-        card.setProcessingStatus(doneStatus); // done
+    /**
+     * Renews the visibility timeout of every message still being processed, 10 per request.
+     */
+    private void heartbeat() {
+        List<ChangeMessageVisibilityBatchRequestEntry> entries = new ArrayList<>();
+        int timeout = (int) properties.getVisibilityTimeout().toSeconds();
+        inFlight.forEach((messageId, receiptHandle) -> entries.add(ChangeMessageVisibilityBatchRequestEntry.builder()
+                .id(messageId)
+                .receiptHandle(receiptHandle)
+                .visibilityTimeout(timeout)
+                .build()));
+        for (int from = 0; from < entries.size(); from += SQS_BATCH_SIZE) {
+            List<ChangeMessageVisibilityBatchRequestEntry> batch =
+                    entries.subList(from, Math.min(entries.size(), from + SQS_BATCH_SIZE));
+            try {
+                sqsClient.changeMessageVisibilityBatch(b -> b.queueUrl(queueUrl).entries(batch))
+                        .failed()
+                        .forEach(failed -> log.warn("Renewing visibility of card queue message {} failed: {} {}",
+                                failed.id(), failed.code(), failed.message()));
+            } catch (Exception e) {
+                log.error("Renewing visibility of {} card queue messages failed: {}", batch.size(), e.getMessage(), e);
+            }
+        }
+    }
 
-        seriesCardRepository.save(card);
+    private void count(String outcome) {
+        meterRegistry.counter("card.queue.messages", "outcome", outcome).increment();
     }
 
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
 }
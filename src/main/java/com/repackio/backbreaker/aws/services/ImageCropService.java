@@ -1,301 +1,439 @@
 package com.repackio.backbreaker.aws.services;
 
+import com.repackio.backbreaker.aws.bedrock.BedrockInvoker;
 import com.repackio.backbreaker.aws.dto.CardAnalysisResult;
+import com.repackio.backbreaker.aws.dto.CroppedCard;
+import com.repackio.backbreaker.aws.dto.CroppedCardPair;
+import com.repackio.backbreaker.detection.CardDetection;
+import com.repackio.backbreaker.detection.CardDetectionChain;
+import com.repackio.backbreaker.detection.LocalCardDetector;
+import com.repackio.backbreaker.image.CanvasRotation;
+import com.repackio.backbreaker.image.EncodedImage;
+import com.repackio.backbreaker.image.ImageCodec;
+import com.repackio.backbreaker.image.QuarterTurnRotator;
+import com.repackio.backbreaker.image.Resampler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class ImageCropService {
 
-    private final BedrockVisionService bedrockVisionService;
-
-    @Value("${bedrock.confidence.threshold:70.0}")
-    private double confidenceThreshold;
+    private final CardDetectionChain cardDetectionChain;
+    private final LocalCardDetector localCardDetector;
 
     @Value("${bedrock.crop.padding:10}")
     private int cropPaddingPercent;
 
+    @Value("${detection.local.fallback-threshold:60.0}")
+    private double localFallbackThreshold;
+
+    @Value("${bedrock.crop.resample-filter:AREA}")
+    private Resampler.Filter resampleFilter;
+
+    @Value("${bedrock.crop.parallel-resample:false}")
+    private boolean parallelResample;
+
+    @Value("${bedrock.crop.resample-above-reduction:4.0}")
+    private double resampleAboveReduction;
+
     private static final double CARD_ASPECT_RATIO = 3.5 / 2.5; // Standard trading card aspect ratio
     private static final int OUTPUT_WIDTH = 500;
     private static final int OUTPUT_HEIGHT = (int) (OUTPUT_WIDTH * CARD_ASPECT_RATIO);
 
     /**
      * Main method to crop and process a card image.
-     * Uses AWS Bedrock's Claude Sonnet vision model to detect the card and determine orientation.
+     * The card is found by the detection cascade (see {@link CardDetectionChain}): cheap local
+     * detection first, AWS Bedrock's vision model only when the cheaper stages are not sure.
      *
      * @param original The original BufferedImage
      * @return The cropped and oriented BufferedImage
      */
     public BufferedImage cropCard(BufferedImage original) throws IOException {
-        log.info("Processing image with Bedrock: {}x{}", original.getWidth(), original.getHeight());
-
-        try {
-            // Use Bedrock to analyze the card
-            CardAnalysisResult analysis = bedrockVisionService.analyzeCardImage(original);
-
-            // Check confidence threshold
-            if (analysis.getConfidence() < confidenceThreshold) {
-                log.warn("Bedrock confidence {}% below threshold {}%, applying fallback crop",
-                        analysis.getConfidence(), confidenceThreshold);
-                return processFallback(original);
-            }
-
-            log.info("Bedrock analysis successful: confidence={}%, rotation={} degrees",
-                    analysis.getConfidence(), analysis.getRotationDegrees());
-            log.info("Reasoning: {}", analysis.getReasoning());
-
-            // First, rotate the image to correct orientation
-            BufferedImage rotated = rotateImage(original, analysis.getRotationDegrees());
-
-            // Then crop based on the bounding box
-            BufferedImage cropped = cropWithBoundingBox(rotated, analysis.getBoundingBox());
-
-            // Resize to standard dimensions
-            return resizeToStandard(cropped);
-
-        } catch (Exception e) {
-            log.error("Bedrock analysis failed: {}", e.getMessage(), e);
-            log.warn("Falling back to simple crop");
-            return processFallback(original);
-        }
+        return cropCard(original, null);
     }
 
     /**
-     * Fallback processing when Bedrock fails or confidence is low.
+     * Variant of {@link #cropCard(BufferedImage)} that lets Bedrock analyze the uploaded bytes
+     * directly instead of a re-encoded copy of {@code original}.
+     *
+     * @param original The decoded original image, or a subsampled preview of {@code source}
+     * @param source The encoded original as uploaded, or null. When {@code original} is a preview,
+     *               the crop is decoded from this at full resolution (only the card's region).
      */
-    private BufferedImage processFallback(BufferedImage original) {
-        BufferedImage cropped = applyCenterCrop(original);
-        BufferedImage rotated = rotateIfNeeded(cropped);
-        return resizeToStandard(rotated);
+    public BufferedImage cropCard(BufferedImage original, EncodedImage source) throws IOException {
+        log.info("Processing card image: {}x{}", original.getWidth(), original.getHeight());
+        // Throws only if Bedrock is still throttled after backoff: the card fails so it can be retried
+        CardDetection detection = cardDetectionChain.detect(original, source);
+        return applyDetection(original, source, detection, "card");
     }
 
     /**
-     * Crops the image based on the bounding box from Bedrock analysis.
-     * Bounding box coordinates are relative (0-1), so we convert to pixels.
+     * Crops and orients both sides of a card. Each side goes through the detection cascade on its
+     * own, but sides that reach Bedrock are analyzed in a single request for the pair.
+     *
+     * @param front The original front image
+     * @param back The original back image
+     * @return The cropped and oriented front and back images
      */
-    private BufferedImage cropWithBoundingBox(BufferedImage image, CardAnalysisResult.BoundingBoxDto box) {
-        int imgWidth = image.getWidth();
-        int imgHeight = image.getHeight();
-
-        // Convert relative coordinates to pixel coordinates
-        int x = (int) (box.getLeft() * imgWidth);
-        int y = (int) (box.getTop() * imgHeight);
-        int width = (int) (box.getWidth() * imgWidth);
-        int height = (int) (box.getHeight() * imgHeight);
-
-        // Add padding around the detected object to avoid over-cropping
-        int hPadding = (int) (width * cropPaddingPercent / 100.0);
-        int vPadding = (int) (height * cropPaddingPercent / 100.0);
+    public CroppedCardPair cropCardPair(BufferedImage front, BufferedImage back) throws IOException {
+        return cropCardPair(front, null, back, null);
+    }
 
-        x = Math.max(0, x - hPadding);
-        y = Math.max(0, y - vPadding);
-        width = Math.min(imgWidth - x, width + 2 * hPadding);
-        height = Math.min(imgHeight - y, height + 2 * vPadding);
+    /**
+     * Variant of {@link #cropCardPair(BufferedImage, BufferedImage)} that lets Bedrock analyze the
+     * uploaded bytes of each side directly. Either source may be null.
+     */
+    public CroppedCardPair cropCardPair(BufferedImage front, EncodedImage frontSource,
+                                        BufferedImage back, EncodedImage backSource) throws IOException {
+        log.info("Processing card pair: front {}x{}, back {}x{}",
+                front.getWidth(), front.getHeight(), back.getWidth(), back.getHeight());
+        CardDetection[] detections = cardDetectionChain.detectAll(
+                new BufferedImage[]{front, back}, new EncodedImage[]{frontSource, backSource});
+        return new CroppedCardPair(
+                applyDetection(front, frontSource, detections[0], "front"),
+                applyDetection(back, backSource, detections[1], "back"),
+                detections[0].degraded() || detections[1].degraded());
+    }
 
-        log.info("Cropping to: x={}, y={}, width={}, height={} (with {}% padding)",
-                x, y, width, height, cropPaddingPercent);
+    /**
+     * Non-blocking variant of {@link #cropCard(BufferedImage)}.
+     * Bedrock calls run on the async client; once the detection completes, cropping (or the
+     * fallback crop) runs on {@code cropExecutor}, so it stays within the caller's worker limits
+     * rather than on the common pool or an SDK I/O thread.
+     * Cancelling the returned future also cancels the in-flight Bedrock request. The result tells
+     * whether the crop was made without Bedrock because its circuit breaker was open.
+     */
+    public CompletableFuture<CroppedCard> cropCardAsync(BufferedImage original, Executor cropExecutor) {
+        return cropCardAsync(original, null, cropExecutor);
+    }
 
-        return image.getSubimage(x, y, width, height);
+    /**
+     * Non-blocking variant of {@link #cropCard(BufferedImage, EncodedImage)}.
+     */
+    public CompletableFuture<CroppedCard> cropCardAsync(BufferedImage original, EncodedImage source,
+                                                       Executor cropExecutor) {
+        log.info("Processing card image async: {}x{}", original.getWidth(), original.getHeight());
+
+        CompletableFuture<CardDetection> detection = cardDetectionChain.detectAsync(original, source);
+        CompletableFuture<CroppedCard> result = detection
+                .thenApplyAsync(d -> new CroppedCard(applyDetection(original, source, d, "card"), d.degraded()),
+                        cropExecutor)
+                .exceptionallyAsync(e -> {
+                    rethrowIfThrottled(e);
+                    log.error("Card detection failed: {}", e.getMessage(), e);
+                    return new CroppedCard(processFallback(original, source), BedrockInvoker.isUnavailable(e));
+                }, cropExecutor);
+        return cancelling(result, detection);
     }
 
     /**
-     * Applies a simple center crop when Bedrock analysis fails.
+     * Non-blocking variant of {@link #cropCardPair(BufferedImage, BufferedImage)}; cropping runs on
+     * {@code cropExecutor} as in {@link #cropCardAsync(BufferedImage, Executor)}.
+     * Cancelling the returned future also cancels the in-flight Bedrock request.
      */
-    private BufferedImage applyCenterCrop(BufferedImage img) {
-        int width = img.getWidth();
-        int height = img.getHeight();
+    public CompletableFuture<CroppedCardPair> cropCardPairAsync(BufferedImage front, BufferedImage back,
+                                                                Executor cropExecutor) {
+        return cropCardPairAsync(front, null, back, null, cropExecutor);
+    }
 
-        // Crop 5% from each edge (very conservative)
-        int cropPercent = 5;
-        int cropX = (int) (width * cropPercent / 100.0);
-        int cropY = (int) (height * cropPercent / 100.0);
-        int cropWidth = width - 2 * cropX;
-        int cropHeight = height - 2 * cropY;
+    /**
+     * Non-blocking variant of {@link #cropCardPair(BufferedImage, EncodedImage, BufferedImage, EncodedImage)}.
+     */
+    public CompletableFuture<CroppedCardPair> cropCardPairAsync(BufferedImage front, EncodedImage frontSource,
+                                                                BufferedImage back, EncodedImage backSource,
+                                                                Executor cropExecutor) {
+        log.info("Processing card pair async: front {}x{}, back {}x{}",
+                front.getWidth(), front.getHeight(), back.getWidth(), back.getHeight());
+
+        CompletableFuture<CardDetection[]> detections = cardDetectionChain.detectAllAsync(
+                new BufferedImage[]{front, back}, new EncodedImage[]{frontSource, backSource});
+        CompletableFuture<CroppedCardPair> result = detections
+                .thenApplyAsync(d -> new CroppedCardPair(
+                        applyDetection(front, frontSource, d[0], "front"),
+                        applyDetection(back, backSource, d[1], "back"),
+                        d[0].degraded() || d[1].degraded()), cropExecutor)
+                .exceptionallyAsync(e -> {
+                    rethrowIfThrottled(e);
+                    log.error("Card pair detection failed: {}", e.getMessage(), e);
+                    return new CroppedCardPair(processFallback(front, frontSource), processFallback(back, backSource),
+                            BedrockInvoker.isUnavailable(e));
+                }, cropExecutor);
+        return cancelling(result, detections);
+    }
 
-        if (cropWidth > 0 && cropHeight > 0) {
-            log.info("Applying fallback center crop: {}x{} ({}% from edges)", cropWidth, cropHeight, cropPercent);
-            return img.getSubimage(cropX, cropY, cropWidth, cropHeight);
+    private static void rethrowIfThrottled(Throwable error) {
+        if (BedrockInvoker.isThrottled(error)) {
+            throw error instanceof CompletionException completion ? completion : new CompletionException(error);
         }
+    }
 
-        return img;
+    private static <T> CompletableFuture<T> cancelling(CompletableFuture<T> result, CompletableFuture<?> upstream) {
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                upstream.cancel(true);
+            }
+        });
+        return result;
     }
 
     /**
-     * Simple rotation check based on aspect ratio (fallback only).
-     * Rotates landscape images to portrait since most cards are portrait.
+     * Rotates, crops and resizes the image according to the accepted detection, or applies the
+     * fallback crop when no stage of the cascade was confident enough.
      */
-    private BufferedImage rotateIfNeeded(BufferedImage img) {
-        if (img.getWidth() > img.getHeight()) {
-            log.info("Fallback: Rotating landscape image to portrait (width={} > height={})",
-                    img.getWidth(), img.getHeight());
-            return rotateImage(img, 90);
+    private BufferedImage applyDetection(BufferedImage original, EncodedImage source, CardDetection detection, String side) {
+        if (!detection.isDecided()) {
+            log.warn("No detector was confident about the {}, applying fallback crop", side);
+            return processFallback(original, source);
+        }
+        CardAnalysisResult analysis = detection.analysis();
+        log.info("Card {} detected by {}: confidence={}%, rotation={} degrees",
+                side, detection.stage(), analysis.getConfidence(), analysis.getRotationDegrees());
+        log.info("Reasoning: {}", analysis.getReasoning());
+        try {
+            return cropToAnalysis(original, source, analysis);
+        } catch (Exception e) {
+            log.error("Applying {} detection to the {} failed: {}", detection.stage(), side, e.getMessage(), e);
+            return processFallback(original, source);
         }
-        return img;
     }
 
     /**
-     * Rotates an image by the specified degrees (any angle 0-360).
-     * For angles close to 90-degree multiples, uses optimized rotation.
-     * For arbitrary angles, uses general affine transform with proper bounds calculation.
+     * Crops to an analysis' bounding box on the rotated canvas.
+     * Only the part of the image inside the crop is rotated and resized (see {@link #renderCrop}).
      */
-    private BufferedImage rotateImage(BufferedImage image, double degrees) {
-        if (Math.abs(degrees) < 0.1 || Math.abs(degrees - 360) < 0.1) {
-            log.info("No rotation needed ({}°)", degrees);
-            return image;
+    private BufferedImage cropToAnalysis(BufferedImage original, EncodedImage source, CardAnalysisResult analysis) {
+        if (isPreviewOf(original, source)) {
+            // Bounding boxes are relative, so the preview's analysis applies to the original as-is
+            return cropFromSource(source, analysis);
         }
 
-        // Normalize degrees to 0-360 range
-        degrees = degrees % 360;
-        if (degrees < 0) {
-            degrees += 360;
+        // Rotate to the correct orientation, then crop the bounding box out of the rotated image
+        CanvasRotation rotation = CanvasRotation.plan(original.getWidth(), original.getHeight(), analysis.getRotationDegrees());
+        Rectangle crop = paddedBoundingBox(rotation.width(), rotation.height(), analysis.getBoundingBox());
+        return renderCrop(original, 0, 0, rotation, crop);
+    }
+
+    /**
+     * Fallback processing when no detector is confident: the card found by the local detector if
+     * it at least clears the lower fallback threshold, or otherwise a conservative center crop turned to portrait if it
+     * is landscape (most cards are portrait), and resized.
+     */
+    private BufferedImage processFallback(BufferedImage original, EncodedImage source) {
+        CardAnalysisResult detected = localCardDetector.detect(original);
+        if (detected != null && detected.getConfidence() >= localFallbackThreshold) {
+            log.info("Fallback: using locally detected card: {}", detected.getReasoning());
+            return cropToAnalysis(original, source, detected);
+        }
+        if (detected != null) {
+            log.info("Local detection confidence {}% below threshold {}%, applying center crop",
+                    detected.getConfidence(), localFallbackThreshold);
         }
 
-        int width = image.getWidth();
-        int height = image.getHeight();
+        boolean preview = isPreviewOf(original, source);
+        Rectangle crop = preview
+                ? centerCropRegion(source.width(), source.height())
+                : centerCropRegion(original.getWidth(), original.getHeight());
+        BufferedImage pixels = preview ? decodeRegion(source, crop) : original;
 
-        // Check if it's close to a 90-degree multiple for optimized rotation
-        if (isCloseToAngle(degrees, 90)) {
-            return rotateBy90Degrees(image, 90);
-        } else if (isCloseToAngle(degrees, 180)) {
-            return rotateBy90Degrees(image, 180);
-        } else if (isCloseToAngle(degrees, 270)) {
-            return rotateBy90Degrees(image, 270);
+        double degrees = 0;
+        if (crop.width > crop.height) {
+            log.info("Fallback: Rotating landscape image to portrait (width={} > height={})", crop.width, crop.height);
+            degrees = 90;
         }
+        CanvasRotation rotation = CanvasRotation.plan(crop.width, crop.height, degrees);
+
+        // The rotation is planned in the crop's own frame; a region decode already starts at its corner
+        return renderCrop(pixels, preview ? 0 : -crop.x, preview ? 0 : -crop.y,
+                rotation, new Rectangle(0, 0, rotation.width(), rotation.height()));
+    }
 
-        // General rotation for arbitrary angles
-        log.info("Rotating image by {} degrees (arbitrary angle)", degrees);
-        return rotateByArbitraryAngle(image, degrees);
+    /**
+     * True when {@code image} is a reduced-resolution decode of {@code source} (two-phase decode).
+     */
+    private static boolean isPreviewOf(BufferedImage image, EncodedImage source) {
+        return source != null && (image.getWidth() < source.width() || image.getHeight() < source.height());
     }
 
     /**
-     * Checks if an angle is within 1 degree of a target angle.
+     * Produces the rotated, bounding-box crop of the full-resolution original while decoding only
+     * the part of it that ends up in the crop. The crop rectangle is mapped back through the
+     * rotation into source coordinates and only that region is decoded.
      */
-    private boolean isCloseToAngle(double angle, double target) {
-        return Math.abs(angle - target) < 1.0;
+    private BufferedImage cropFromSource(EncodedImage source, CardAnalysisResult analysis) {
+        CanvasRotation rotation = CanvasRotation.plan(source.width(), source.height(), analysis.getRotationDegrees());
+        Rectangle crop = paddedBoundingBox(rotation.width(), rotation.height(), analysis.getBoundingBox());
+
+        Rectangle region = sourceRegion(rotation, crop)
+                .intersection(new Rectangle(0, 0, source.width(), source.height()));
+
+        log.info("Decoding {}x{} region of {}x{} original for the crop",
+                region.width, region.height, source.width(), source.height());
+        BufferedImage pixels = decodeRegion(source, region);
+        return renderCrop(pixels, region.x, region.y, rotation, crop);
     }
 
     /**
-     * Optimized rotation for exact 90-degree multiples.
+     * Renders the {@code crop} of the rotated canvas at standard size.
+     * <p>
+     * Up to {@code bedrock.crop.resample-above-reduction} a single bilinear draw straight into the
+     * output is all it takes. Beyond it bilinear sampling skips most source pixels and visibly
+     * aliases, so the crop is resampled with the configured filter instead: unrotated and
+     * quarter-turn crops straight from the source region (the exact quarter turn is applied to the
+     * small result), other angles from a bilinear draw at twice the output size.
+     * Java2D has no fast loops for {@code TYPE_CUSTOM} images (e.g. most RGB PNGs), so those are
+     * normalized to packed RGB before any draw.
+     *
+     * @param pixels  Source pixels
+     * @param originX X of {@code pixels}' top-left corner in the coordinates the rotation was planned for
+     * @param originY Y of {@code pixels}' top-left corner in the same coordinates
      */
-    private BufferedImage rotateBy90Degrees(BufferedImage image, int degrees) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-
-        BufferedImage rotated;
-        AffineTransform transform;
-
-        if (degrees == 90) {
-            rotated = new BufferedImage(height, width, image.getType());
-            transform = new AffineTransform();
-            transform.translate(height / 2.0, width / 2.0);
-            transform.rotate(Math.toRadians(90));
-            transform.translate(-width / 2.0, -height / 2.0);
-        } else if (degrees == 180) {
-            rotated = new BufferedImage(width, height, image.getType());
-            transform = new AffineTransform();
-            transform.translate(width / 2.0, height / 2.0);
-            transform.rotate(Math.toRadians(180));
-            transform.translate(-width / 2.0, -height / 2.0);
-        } else if (degrees == 270) {
-            rotated = new BufferedImage(height, width, image.getType());
-            transform = new AffineTransform();
-            transform.translate(height / 2.0, width / 2.0);
-            transform.rotate(Math.toRadians(270));
-            transform.translate(-width / 2.0, -height / 2.0);
-        } else {
-            log.warn("Invalid 90-degree multiple: {}. Returning original image.", degrees);
-            return image;
+    private BufferedImage renderCrop(BufferedImage pixels, int originX, int originY, CanvasRotation rotation, Rectangle crop) {
+        Rectangle region = sourceRegion(rotation, crop);
+        region.translate(-originX, -originY);
+        region = region.intersection(new Rectangle(0, 0, pixels.getWidth(), pixels.getHeight()));
+
+        Dimension target = standardSize(crop.width, crop.height);
+        double reduction = Math.max((double) crop.width / target.width, (double) crop.height / target.height);
+        log.info("Resizing image to standard dimensions: {}x{}", target.width, target.height);
+
+        if (reduction > resampleAboveReduction && (rotation.isQuarterTurn() || rotation.degrees() == 0)) {
+            int turns = (int) (rotation.degrees() / 90);
+            boolean swap = turns % 2 == 1;
+            BufferedImage resized = Resampler.resize(pixels, region, swap ? target.height : target.width,
+                    swap ? target.width : target.height, resampleFilter, parallelResample);
+            return turns == 0 ? resized : QuarterTurnRotator.rotate(resized, turns);
+        }
+        if (pixels.getType() == BufferedImage.TYPE_CUSTOM) {
+            BufferedImage packed = QuarterTurnRotator.rotate(pixels, region, 0);
+            return renderCrop(packed, originX + region.x, originY + region.y, rotation, crop);
         }
+        if (reduction <= resampleAboveReduction) {
+            return draw(pixels, originX, originY, rotation, crop, target.width, target.height);
+        }
+        BufferedImage rotated = draw(pixels, originX, originY, rotation, crop,
+                Math.min(crop.width, 2 * target.width), Math.min(crop.height, 2 * target.height));
+        return Resampler.resize(rotated, target.width, target.height, resampleFilter, parallelResample);
+    }
 
-        Graphics2D g2d = rotated.createGraphics();
+    /**
+     * Draws the {@code crop} of the rotated canvas into a {@code width}x{@code height} image in one
+     * bilinear pass.
+     */
+    private static BufferedImage draw(BufferedImage pixels, int originX, int originY, CanvasRotation rotation,
+                                      Rectangle crop, int width, int height) {
+        AffineTransform toCrop = AffineTransform.getScaleInstance((double) width / crop.width, (double) height / crop.height);
+        toCrop.translate(-crop.x, -crop.y);
+        toCrop.concatenate(rotation.transform());
+        toCrop.translate(originX, originY);
+
+        BufferedImage rendered = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = rendered.createGraphics();
         g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
         g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g2d.setTransform(transform);
-        g2d.drawImage(image, 0, 0, null);
+        g2d.drawImage(pixels, toCrop, null);
         g2d.dispose();
-
-        log.info("Rotated image {} degrees (optimized)", degrees);
-        return rotated;
+        return rendered;
     }
 
     /**
-     * Rotates an image by an arbitrary angle.
-     * Calculates new bounds to fit the rotated image without cropping.
+     * The source rectangle that a crop of the rotated canvas comes from. Quarter turns map pixel
+     * edges onto pixel edges, so that rectangle is exact; for other angles it is the bounding box
+     * grown by a pixel, so bilinear sampling at the edges sees real neighbours.
      */
-    private BufferedImage rotateByArbitraryAngle(BufferedImage image, double degrees) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        double radians = Math.toRadians(degrees);
+    private static Rectangle sourceRegion(CanvasRotation rotation, Rectangle crop) {
+        Rectangle2D bounds;
+        try {
+            bounds = rotation.transform().createInverse().createTransformedShape(crop).getBounds2D();
+        } catch (NoninvertibleTransformException e) {
+            throw new IllegalStateException("Rotation is not invertible", e);
+        }
+        if (rotation.isQuarterTurn() || rotation.degrees() == 0) {
+            return new Rectangle((int) Math.round(bounds.getX()), (int) Math.round(bounds.getY()),
+                    (int) Math.round(bounds.getWidth()), (int) Math.round(bounds.getHeight()));
+        }
+        Rectangle region = bounds.getBounds();
+        region.grow(1, 1);
+        return region;
+    }
 
-        // Calculate new bounds after rotation
-        double sin = Math.abs(Math.sin(radians));
-        double cos = Math.abs(Math.cos(radians));
-        int newWidth = (int) Math.ceil(width * cos + height * sin);
-        int newHeight = (int) Math.ceil(height * cos + width * sin);
+    private static BufferedImage decodeRegion(EncodedImage source, Rectangle region) {
+        try {
+            return ImageCodec.decodeRegion(source, region);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to decode region " + region + " of " + source, e);
+        }
+    }
 
-        BufferedImage rotated = new BufferedImage(newWidth, newHeight, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2d = rotated.createGraphics();
+    /**
+     * Converts a relative bounding box to pixels for an image of the given size,
+     * adding the configured padding and clamping to the image.
+     */
+    private Rectangle paddedBoundingBox(int imgWidth, int imgHeight, CardAnalysisResult.BoundingBoxDto box) {
+        // Convert relative coordinates to pixel coordinates
+        int x = (int) (box.getLeft() * imgWidth);
+        int y = (int) (box.getTop() * imgHeight);
+        int width = (int) (box.getWidth() * imgWidth);
+        int height = (int) (box.getHeight() * imgHeight);
 
-        // Set high-quality rendering
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        // Add padding around the detected object to avoid over-cropping
+        int hPadding = (int) (width * cropPaddingPercent / 100.0);
+        int vPadding = (int) (height * cropPaddingPercent / 100.0);
 
-        // Create transform: translate to center, rotate, translate back
-        AffineTransform transform = new AffineTransform();
-        transform.translate(newWidth / 2.0, newHeight / 2.0);
-        transform.rotate(radians);
-        transform.translate(-width / 2.0, -height / 2.0);
+        x = Math.max(0, x - hPadding);
+        y = Math.max(0, y - vPadding);
+        width = Math.min(imgWidth - x, width + 2 * hPadding);
+        height = Math.min(imgHeight - y, height + 2 * vPadding);
 
-        g2d.setTransform(transform);
-        g2d.drawImage(image, 0, 0, null);
-        g2d.dispose();
+        log.info("Cropping to: x={}, y={}, width={}, height={} (with {}% padding)",
+                x, y, width, height, cropPaddingPercent);
 
-        log.info("Rotated image by {} degrees", degrees);
-        return rotated;
+        return new Rectangle(x, y, width, height);
     }
 
     /**
-     * Resizes the image to standard card dimensions.
+     * Region kept by the fallback center crop, or the whole image if it is too small to crop.
      */
-    private BufferedImage resizeToStandard(BufferedImage image) {
-        // Determine if the card should be portrait or landscape
-        boolean shouldBePortrait = image.getHeight() >= image.getWidth();
-
-        int targetWidth, targetHeight;
-        if (shouldBePortrait) {
-            targetWidth = OUTPUT_WIDTH;
-            targetHeight = OUTPUT_HEIGHT;
-        } else {
-            // Landscape card
-            targetWidth = OUTPUT_HEIGHT;
-            targetHeight = OUTPUT_WIDTH;
-        }
-
-        log.info("Resizing image to standard dimensions: {}x{}", targetWidth, targetHeight);
-
-        BufferedImage resized = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2d = resized.createGraphics();
+    private static Rectangle centerCropRegion(int width, int height) {
+        // Crop 5% from each edge (very conservative)
+        int cropPercent = 5;
+        int cropX = (int) (width * cropPercent / 100.0);
+        int cropY = (int) (height * cropPercent / 100.0);
+        int cropWidth = width - 2 * cropX;
+        int cropHeight = height - 2 * cropY;
 
-        // Use high-quality rendering
-        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        if (cropWidth > 0 && cropHeight > 0) {
+            log.info("Applying fallback center crop: {}x{} ({}% from edges)", cropWidth, cropHeight, cropPercent);
+            return new Rectangle(cropX, cropY, cropWidth, cropHeight);
+        }
 
-        g2d.drawImage(image, 0, 0, targetWidth, targetHeight, null);
-        g2d.dispose();
+        return new Rectangle(0, 0, width, height);
+    }
 
-        return resized;
+    /**
+     * The standard card size in the orientation (portrait or landscape) of the given size.
+     */
+    private static Dimension standardSize(int width, int height) {
+        // Determine if the card should be portrait or landscape
+        return height >= width
+                ? new Dimension(OUTPUT_WIDTH, OUTPUT_HEIGHT)
+                : new Dimension(OUTPUT_HEIGHT, OUTPUT_WIDTH); // Landscape card
     }
 }
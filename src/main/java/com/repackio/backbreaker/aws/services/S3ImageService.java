@@ -1,7 +1,10 @@
 package com.repackio.backbreaker.aws.services;
 
+import com.repackio.backbreaker.image.EncodedImage;
+import com.repackio.backbreaker.image.ImageCodec;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
 import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
@@ -9,8 +12,8 @@ import software.amazon.awssdk.services.s3.model.*;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.time.Duration;
 
 @Service
 @RequiredArgsConstructor
@@ -19,16 +22,46 @@ public class S3ImageService {
     private final S3Client s3Client;
 
     public BufferedImage downloadImage(String bucket, String key) throws Exception {
+        return ImageCodec.decode(downloadEncodedImage(bucket, key));
+    }
+
+    /**
+     * Downloads an image without decoding it. The format and dimensions are read from the header.
+     */
+    public EncodedImage downloadEncodedImage(String bucket, String key) throws Exception {
+        return downloadEncodedImage(bucket, key, null, null);
+    }
+
+    /**
+     * Variant of {@link #downloadEncodedImage(String, String)} with timeouts for this request.
+     *
+     * @param attemptTimeout Longest single attempt, or null for the client's default
+     * @param totalTimeout   Longest time for all attempts together, or null for the client's default
+     */
+    public EncodedImage downloadEncodedImage(String bucket, String key,
+                                             Duration attemptTimeout, Duration totalTimeout) throws Exception {
         GetObjectRequest req = GetObjectRequest.builder()
                 .bucket(bucket)
                 .key(key)
+                .overrideConfiguration(o -> timeouts(o, attemptTimeout, totalTimeout))
                 .build();
 
         ResponseBytes<GetObjectResponse> obj = s3Client.getObjectAsBytes(req);
-        return ImageIO.read(new ByteArrayInputStream(obj.asByteArray()));
+        return ImageCodec.probe(obj.asByteArrayUnsafe());
     }
 
     public void uploadImage(String bucket, String key, BufferedImage img) throws Exception {
+        uploadImage(bucket, key, img, null, null);
+    }
+
+    /**
+     * Variant of {@link #uploadImage(String, String, BufferedImage)} with timeouts for this request.
+     *
+     * @param attemptTimeout Longest single attempt, or null for the client's default
+     * @param totalTimeout   Longest time for all attempts together, or null for the client's default
+     */
+    public void uploadImage(String bucket, String key, BufferedImage img,
+                            Duration attemptTimeout, Duration totalTimeout) throws Exception {
         ByteArrayOutputStream os = new ByteArrayOutputStream();
         ImageIO.write(img, "jpg", os);
         os.flush();
@@ -38,8 +71,19 @@ public class S3ImageService {
                         .bucket(bucket)
                         .key(key)
                         .contentType("image/jpeg")
+                        .overrideConfiguration(o -> timeouts(o, attemptTimeout, totalTimeout))
                         .build(),
                 RequestBody.fromBytes(os.toByteArray())
         );
     }
+
+    private static void timeouts(AwsRequestOverrideConfiguration.Builder override,
+                                 Duration attemptTimeout, Duration totalTimeout) {
+        if (attemptTimeout != null) {
+            override.apiCallAttemptTimeout(attemptTimeout);
+        }
+        if (totalTimeout != null) {
+            override.apiCallTimeout(totalTimeout);
+        }
+    }
 }
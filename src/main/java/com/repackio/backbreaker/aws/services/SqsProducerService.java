@@ -3,16 +3,33 @@ package com.repackio.backbreaker.aws.services;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.repackio.backbreaker.aws.dto.CardProcessingMessage;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
 import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
 import software.amazon.awssdk.services.sqs.model.SendMessageRequest;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class SqsProducerService {
 
+    /** Most entries SQS accepts per SendMessageBatch request. */
+    private static final int SQS_BATCH_SIZE = 10;
+    private static final int MAX_SEND_ATTEMPTS = 3;
+    private static final long RETRY_BACKOFF_MILLIS = 200;
+
     private final SqsClient sqsClient;
+    private final SqsAsyncClient sqsAsyncClient;
     private final ObjectMapper objectMapper;
 
     @Value("${aws.sqs.queueUrl}")
@@ -32,4 +49,100 @@ public class SqsProducerService {
             throw new RuntimeException("Failed to send SQS card message", ex);
         }
     }
+
+    /**
+     * Sends many card messages with SendMessageBatch, 10 per request and all requests at once.
+     * Entries that fail for a transient reason (including whole failed requests) are sent again,
+     * up to {@value #MAX_SEND_ATTEMPTS} attempts in all; entries SQS rejects as invalid are not.
+     *
+     * @throws CardMessagesNotSentException listing the cards that could not be sent
+     */
+    public void sendCardMessages(List<CardProcessingMessage> messages) {
+        // Entry IDs only need to be unique within a request; the list index also finds the message again
+        Map<String, SendMessageBatchRequestEntry> pending = new HashMap<>();
+        try {
+            for (int i = 0; i < messages.size(); i++) {
+                String id = Integer.toString(i);
+                pending.put(id, SendMessageBatchRequestEntry.builder()
+                        .id(id)
+                        .messageBody(objectMapper.writeValueAsString(messages.get(i)))
+                        .build());
+            }
+        } catch (Exception ex) {
+            throw new CardMessagesNotSentException("Failed to serialize SQS card messages",
+                    messages.stream().map(CardProcessingMessage::getCardId).toList(), ex);
+        }
+
+        List<String> rejected = new ArrayList<>();
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            Map<String, String> failed = sendBatches(new ArrayList<>(pending.values()), rejected);
+            pending.keySet().retainAll(failed.keySet());
+            if (pending.isEmpty()) {
+                break;
+            }
+            if (attempt >= MAX_SEND_ATTEMPTS) {
+                failed.forEach((id, reason) -> rejected.add(id));
+                log.error("Giving up on {} SQS card messages after {} attempts, e.g. {}",
+                        failed.size(), attempt, failed.values().iterator().next());
+                break;
+            }
+            log.warn("Retrying {} of {} SQS card messages (attempt {} of {})",
+                    pending.size(), messages.size(), attempt + 1, MAX_SEND_ATTEMPTS);
+            try {
+                Thread.sleep(RETRY_BACKOFF_MILLIS << (attempt - 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected.addAll(pending.keySet());
+                throw new CardMessagesNotSentException("Interrupted while sending SQS card messages",
+                        cardIds(messages, rejected), e);
+            }
+        }
+
+        if (!rejected.isEmpty()) {
+            List<Long> cardIds = cardIds(messages, rejected);
+            throw new CardMessagesNotSentException("Failed to send SQS card messages for " + cardIds.size()
+                    + " of " + messages.size() + " cards: " + cardIds, cardIds, null);
+        }
+    }
+
+    private static List<Long> cardIds(List<CardProcessingMessage> messages, List<String> entryIds) {
+        return entryIds.stream()
+                .map(id -> messages.get(Integer.parseInt(id)).getCardId())
+                .sorted()
+                .toList();
+    }
+
+    /**
+     * Sends the entries in parallel batches and waits for all of them.
+     *
+     * @param rejected Receives the IDs of entries that must not be retried
+     * @return The reason for every entry worth retrying, by entry ID
+     */
+    private Map<String, String> sendBatches(List<SendMessageBatchRequestEntry> entries, List<String> rejected) {
+        Map<String, String> failed = new HashMap<>();
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        for (int from = 0; from < entries.size(); from += SQS_BATCH_SIZE) {
+            List<SendMessageBatchRequestEntry> batch = entries.subList(from, Math.min(entries.size(), from + SQS_BATCH_SIZE));
+            batches.add(sqsAsyncClient.sendMessageBatch(b -> b.queueUrl(queueUrl).entries(batch))
+                    .handle((response, error) -> {
+                        synchronized (failed) {
+                            if (error != null) {
+                                batch.forEach(entry -> failed.put(entry.id(), error.getMessage()));
+                                return null;
+                            }
+                            for (BatchResultErrorEntry entry : response.failed()) {
+                                if (Boolean.TRUE.equals(entry.senderFault())) {
+                                    log.error("SQS rejected card message {}: {} {}", entry.id(), entry.code(), entry.message());
+                                    rejected.add(entry.id());
+                                } else {
+                                    failed.put(entry.id(), entry.code() + " " + entry.message());
+                                }
+                            }
+                        }
+                        return null;
+                    }));
+        }
+        CompletableFuture.allOf(batches.toArray(CompletableFuture[]::new)).join();
+        return failed;
+    }
 }
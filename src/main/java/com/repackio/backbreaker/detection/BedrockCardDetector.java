@@ -0,0 +1,84 @@
+package com.repackio.backbreaker.detection;
+
+import com.repackio.backbreaker.aws.dto.CardAnalysisResult;
+import com.repackio.backbreaker.aws.dto.CardPairAnalysisResult;
+import com.repackio.backbreaker.aws.services.BedrockVisionService;
+import com.repackio.backbreaker.aws.services.CardAnalysisBatcher;
+import com.repackio.backbreaker.image.EncodedImage;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The most capable and most expensive stage: the Bedrock vision model. It is the only stage that
+ * can tell whether a card is upside down. Both sides of a card go to the model in one request,
+ * unless batching is enabled: then each image joins a batch shared with other cards (see
+ * {@link CardAnalysisBatcher}). Blocking calls are never batched.
+ */
+@Component
+@Order(30)
+@RequiredArgsConstructor
+public class BedrockCardDetector implements CardDetector {
+
+    private final BedrockVisionService bedrockVisionService;
+    private final CardAnalysisBatcher cardAnalysisBatcher;
+
+    @Value("${bedrock.confidence.threshold:70.0}")
+    private double confidenceThreshold;
+
+    @Override
+    public String name() {
+        return "bedrock";
+    }
+
+    @Override
+    public double confidenceThreshold() {
+        return confidenceThreshold;
+    }
+
+    @Override
+    public CardAnalysisResult detect(BufferedImage image, EncodedImage source) throws IOException {
+        return bedrockVisionService.analyzeCardImage(image, source);
+    }
+
+    @Override
+    public CompletableFuture<CardAnalysisResult> detectAsync(BufferedImage image, EncodedImage source) {
+        if (cardAnalysisBatcher.isEnabled()) {
+            return cardAnalysisBatcher.submit(image, source);
+        }
+        return bedrockVisionService.analyzeCardImageAsync(image, source);
+    }
+
+    @Override
+    public CardAnalysisResult[] detectAll(BufferedImage[] images, EncodedImage[] sources) throws Exception {
+        if (images.length != 2) {
+            return CardDetector.super.detectAll(images, sources);
+        }
+        return sides(bedrockVisionService.analyzeCardPair(images[0], sources[0], images[1], sources[1]));
+    }
+
+    @Override
+    public CompletableFuture<CardAnalysisResult[]> detectAllAsync(BufferedImage[] images, EncodedImage[] sources) {
+        if (images.length != 2 || cardAnalysisBatcher.isEnabled()) {
+            return CardDetector.super.detectAllAsync(images, sources);
+        }
+        CompletableFuture<CardPairAnalysisResult> analysis =
+                bedrockVisionService.analyzeCardPairAsync(images[0], sources[0], images[1], sources[1]);
+        CompletableFuture<CardAnalysisResult[]> result = analysis.thenApply(BedrockCardDetector::sides);
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                analysis.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private static CardAnalysisResult[] sides(CardPairAnalysisResult pair) {
+        return new CardAnalysisResult[]{pair.getFront(), pair.getBack()};
+    }
+}
@@ -0,0 +1,30 @@
+package com.repackio.backbreaker.detection;
+
+import com.repackio.backbreaker.aws.dto.CardAnalysisResult;
+
+/**
+ * Outcome of the detection cascade for one image: the accepted analysis and the stage that
+ * produced it, or no analysis if every stage missed its threshold or failed.
+ *
+ * @param degraded Whether a stage was skipped because Bedrock was unavailable (circuit open)
+ */
+public record CardDetection(CardAnalysisResult analysis, String stage, boolean degraded) {
+
+    public static final String UNDECIDED = "none";
+
+    public CardDetection(CardAnalysisResult analysis, String stage) {
+        this(analysis, stage, false);
+    }
+
+    public static CardDetection undecided() {
+        return new CardDetection(null, UNDECIDED);
+    }
+
+    public boolean isDecided() {
+        return analysis != null;
+    }
+
+    public CardDetection degrade() {
+        return degraded ? this : new CardDetection(analysis, stage, true);
+    }
+}
@@ -0,0 +1,203 @@
+package com.repackio.backbreaker.detection;
+
+import com.repackio.backbreaker.aws.bedrock.BedrockInvoker;
+import com.repackio.backbreaker.aws.dto.CardAnalysisResult;
+import com.repackio.backbreaker.image.EncodedImage;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Runs the {@link CardDetector} beans in order of cost and stops, per image, at the first result
+ * at or above that detector's confidence threshold. A detector that fails is skipped, except when
+ * Bedrock is still throttled after its retries: that fails the card so it can be retried later.
+ * Images a stage was skipped for because Bedrock's circuit breaker is open are marked
+ * {@linkplain CardDetection#degraded() degraded}.
+ * <p>
+ * Which stage decided each image is recorded for tuning thresholds against latency and cost:
+ * <ul>
+ *   <li>{@code card.detection.decisions} (tag {@code stage}, {@code none} when no stage was sure)</li>
+ *   <li>{@code card.detection.stage.duration} (tags {@code stage}, {@code outcome}:
+ *       accepted, rejected, not_found, failed or unavailable)</li>
+ *   <li>{@code card.detection.confidence} (tag {@code stage}), every result's confidence</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class CardDetectionChain {
+
+    private final List<CardDetector> detectors;
+    private final MeterRegistry meterRegistry;
+
+    public CardDetectionChain(List<CardDetector> detectors, MeterRegistry meterRegistry) {
+        this.detectors = List.copyOf(detectors);
+        this.meterRegistry = meterRegistry;
+        log.info("Card detection cascade: {}", this.detectors.stream()
+                .map(d -> d.name() + " (>= " + d.confidenceThreshold() + "%)")
+                .collect(Collectors.joining(" -> ")));
+    }
+
+    public CardDetection detect(BufferedImage image, EncodedImage source) {
+        return detectAll(new BufferedImage[]{image}, new EncodedImage[]{source})[0];
+    }
+
+    /**
+     * Detects the card in each image. Later stages only see the images earlier ones did not
+     * decide, so a detector that analyzes several images in one request still gets them together.
+     */
+    public CardDetection[] detectAll(BufferedImage[] images, EncodedImage[] sources) {
+        CardDetection[] decided = new CardDetection[images.length];
+        boolean[] degraded = new boolean[images.length];
+        for (CardDetector detector : detectors) {
+            int[] pending = pending(decided);
+            if (pending.length == 0) {
+                break;
+            }
+            long start = System.nanoTime();
+            try {
+                CardAnalysisResult[] results = detector.detectAll(select(images, pending), select(sources, pending));
+                record(detector, results, pending, decided, start);
+            } catch (Exception e) {
+                recordFailure(detector, e, pending, degraded, start);
+            }
+        }
+        return finish(decided, degraded);
+    }
+
+    public CompletableFuture<CardDetection> detectAsync(BufferedImage image, EncodedImage source) {
+        CompletableFuture<CardDetection[]> all = detectAllAsync(new BufferedImage[]{image}, new EncodedImage[]{source});
+        CompletableFuture<CardDetection> result = all.thenApply(detections -> detections[0]);
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                all.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Non-blocking variant of {@link #detectAll}. Cancelling the returned future cancels the
+     * stage in flight.
+     */
+    public CompletableFuture<CardDetection[]> detectAllAsync(BufferedImage[] images, EncodedImage[] sources) {
+        AtomicReference<CompletableFuture<?>> inFlight = new AtomicReference<>();
+        CompletableFuture<CardDetection[]> result = runStage(0, images, sources,
+                new CardDetection[images.length], new boolean[images.length], inFlight);
+        result.whenComplete((value, error) -> {
+            CompletableFuture<?> stage = inFlight.get();
+            if (result.isCancelled() && stage != null) {
+                stage.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private CompletableFuture<CardDetection[]> runStage(int index, BufferedImage[] images, EncodedImage[] sources,
+                                                        CardDetection[] decided, boolean[] degraded,
+                                                        AtomicReference<CompletableFuture<?>> inFlight) {
+        int[] pending = pending(decided);
+        if (index == detectors.size() || pending.length == 0) {
+            return CompletableFuture.completedFuture(finish(decided, degraded));
+        }
+        CardDetector detector = detectors.get(index);
+        long start = System.nanoTime();
+        CompletableFuture<CardAnalysisResult[]> stage =
+                detector.detectAllAsync(select(images, pending), select(sources, pending));
+        inFlight.set(stage);
+        return stage
+                .handle((results, error) -> {
+                    if (error != null) {
+                        recordFailure(detector, error, pending, degraded, start);
+                    } else {
+                        record(detector, results, pending, decided, start);
+                    }
+                    return index + 1;
+                })
+                .thenCompose(next -> runStage(next, images, sources, decided, degraded, inFlight));
+    }
+
+    private void record(CardDetector detector, CardAnalysisResult[] results, int[] pending,
+                        CardDetection[] decided, long start) {
+        long elapsed = (System.nanoTime() - start) / pending.length;
+        for (int i = 0; i < pending.length; i++) {
+            CardAnalysisResult result = results[i];
+            String outcome;
+            if (result == null || result.getBoundingBox() == null) {
+                outcome = "not_found";
+            } else {
+                meterRegistry.summary("card.detection.confidence", "stage", detector.name())
+                        .record(result.getConfidence());
+                if (result.getConfidence() >= detector.confidenceThreshold()) {
+                    outcome = "accepted";
+                    decided[pending[i]] = new CardDetection(result, detector.name());
+                } else {
+                    outcome = "rejected";
+                    log.info("Detector {} confidence {}% below threshold {}%",
+                            detector.name(), result.getConfidence(), detector.confidenceThreshold());
+                }
+            }
+            meterRegistry.timer("card.detection.stage.duration", "stage", detector.name(), "outcome", outcome)
+                    .record(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void recordFailure(CardDetector detector, Throwable error, int[] pending, boolean[] degraded, long start) {
+        boolean unavailable = BedrockInvoker.isUnavailable(error);
+        meterRegistry.timer("card.detection.stage.duration", "stage", detector.name(),
+                        "outcome", unavailable ? "unavailable" : "failed")
+                .record((System.nanoTime() - start) / pending.length, TimeUnit.NANOSECONDS);
+        if (BedrockInvoker.isThrottled(error)) {
+            // Still throttled after backoff: fail the card so it can be retried, rather than degrade it
+            throw error instanceof RuntimeException runtime ? runtime : new CompletionException(error);
+        }
+        if (unavailable) {
+            log.warn("Detector {} skipped: {}", detector.name(), error.getMessage());
+            for (int index : pending) {
+                degraded[index] = true;
+            }
+            return;
+        }
+        log.error("Detector {} failed: {}", detector.name(), error.getMessage(), error);
+    }
+
+    private CardDetection[] finish(CardDetection[] decided, boolean[] degraded) {
+        for (int i = 0; i < decided.length; i++) {
+            if (decided[i] == null) {
+                decided[i] = CardDetection.undecided();
+            }
+            if (degraded[i]) {
+                decided[i] = decided[i].degrade();
+            }
+            meterRegistry.counter("card.detection.decisions", "stage", decided[i].stage()).increment();
+        }
+        return decided;
+    }
+
+    private static int[] pending(CardDetection[] decided) {
+        int count = 0;
+        int[] pending = new int[decided.length];
+        for (int i = 0; i < decided.length; i++) {
+            if (decided[i] == null) {
+                pending[count++] = i;
+            }
+        }
+        return Arrays.copyOf(pending, count);
+    }
+
+    private static <T> T[] select(T[] values, int[] indexes) {
+        T[] selected = Arrays.copyOf(values, indexes.length);
+        for (int i = 0; i < indexes.length; i++) {
+            selected[i] = values[indexes[i]];
+        }
+        return selected;
+    }
+}
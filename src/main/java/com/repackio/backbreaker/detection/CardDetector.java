@@ -0,0 +1,77 @@
+package com.repackio.backbreaker.detection;
+
+import com.repackio.backbreaker.aws.dto.CardAnalysisResult;
+import com.repackio.backbreaker.image.EncodedImage;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One stage of the card detection cascade (see {@link CardDetectionChain}).
+ * <p>
+ * Implementations are Spring beans ordered by cost with {@code @Order}, cheapest first. A result
+ * uses the Bedrock analysis shape: a rotation, and a bounding box relative to the rotated canvas.
+ */
+public interface CardDetector {
+
+    /**
+     * Stage name recorded when this detector decides an image, e.g. {@code local}.
+     */
+    String name();
+
+    /**
+     * Confidence (0-100) a result needs for the cascade to accept it and stop.
+     */
+    double confidenceThreshold();
+
+    /**
+     * @param image  The decoded image, or a subsampled preview of {@code source}
+     * @param source The encoded original, or null
+     * @return The detected card, or null if nothing card-like was found
+     */
+    CardAnalysisResult detect(BufferedImage image, EncodedImage source) throws Exception;
+
+    /**
+     * Non-blocking variant of {@link #detect}. By default this runs {@code detect} on the calling
+     * thread, which is right for detectors that only use the CPU.
+     */
+    default CompletableFuture<CardAnalysisResult> detectAsync(BufferedImage image, EncodedImage source) {
+        try {
+            return CompletableFuture.completedFuture(detect(image, source));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Detects the card in each of several images (the sides of one card). Detectors that can
+     * analyze them together in one request override this; by default each is detected on its own.
+     *
+     * @return One result per image, null where nothing was found
+     */
+    default CardAnalysisResult[] detectAll(BufferedImage[] images, EncodedImage[] sources) throws Exception {
+        CardAnalysisResult[] results = new CardAnalysisResult[images.length];
+        for (int i = 0; i < images.length; i++) {
+            results[i] = detect(images[i], sources[i]);
+        }
+        return results;
+    }
+
+    /**
+     * Non-blocking variant of {@link #detectAll}.
+     */
+    default CompletableFuture<CardAnalysisResult[]> detectAllAsync(BufferedImage[] images, EncodedImage[] sources) {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<CardAnalysisResult>[] futures = new CompletableFuture[images.length];
+        for (int i = 0; i < images.length; i++) {
+            futures[i] = detectAsync(images[i], sources[i]);
+        }
+        return CompletableFuture.allOf(futures).thenApply(ignored -> {
+            CardAnalysisResult[] results = new CardAnalysisResult[futures.length];
+            for (int i = 0; i < futures.length; i++) {
+                results[i] = futures[i].join();
+            }
+            return results;
+        });
+    }
+}
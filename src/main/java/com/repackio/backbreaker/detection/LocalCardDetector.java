@@ -0,0 +1,603 @@
+package com.repackio.backbreaker.detection;
+
+import com.repackio.backbreaker.aws.dto.CardAnalysisResult;
+import com.repackio.backbreaker.image.CanvasRotation;
+import com.repackio.backbreaker.image.EncodedImage;
+import com.repackio.backbreaker.image.Resampler;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Finds the card rectangle in a photo without calling Bedrock, in a few milliseconds.
+ * <p>
+ * The image is shrunk to {@code detection.local.max-dimension} and converted to grayscale. Then
+ * Canny edges are traced into connected outlines, and each outline gets the minimum-area rectangle
+ * around its convex hull. A rectangle's confidence reflects how much of its perimeter lies on
+ * edges, how close its aspect ratio is to a trading card's, and how much of the photo it fills.
+ * <p>
+ * The result has the same shape as a Bedrock analysis. The rotation straightens the card and turns
+ * it to portrait; unlike the model, this detector cannot tell whether the card is upside down.
+ * <p>
+ * It is the first stage of the {@link CardDetectionChain}, where only very confident results stop
+ * the cascade, and the crop fallback once every stage has been tried, with a lower threshold.
+ */
+@Slf4j
+@Component
+@Order(10)
+public class LocalCardDetector implements CardDetector {
+
+    private static final double CARD_ASPECT_RATIO = 3.5 / 2.5;
+    private static final double ASPECT_TOLERANCE = 0.4;
+    private static final double MIN_AREA_FRACTION = 0.05;
+    private static final double FULL_AREA_FRACTION = 0.15;
+    private static final double MAX_AREA_FRACTION = 0.97;
+    private static final double SNAP_DEGREES = 1.0;
+
+    @Value("${detection.local.max-dimension:400}")
+    private int maxDimension;
+
+    @Value("${detection.local.confidence-threshold:90.0}")
+    private double confidenceThreshold;
+
+    @Override
+    public String name() {
+        return "local";
+    }
+
+    @Override
+    public double confidenceThreshold() {
+        return confidenceThreshold;
+    }
+
+    @Override
+    public CardAnalysisResult detect(BufferedImage image, EncodedImage source) {
+        return detect(image);
+    }
+
+    /**
+     * Detects the most card-like rectangle in the image.
+     *
+     * @return The detected card, or null if nothing in the image looks like one
+     */
+    public CardAnalysisResult detect(BufferedImage image) {
+        long start = System.nanoTime();
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        if (width < 16 || height < 16) {
+            return null;
+        }
+
+        BufferedImage small = Resampler.resize(image, width, height, Resampler.Filter.AREA, false);
+        int[] gray = blur(luma(small), width, height);
+        boolean[] edges = canny(gray, width, height);
+        boolean[] near = dilate(edges, width, height);
+
+        Candidate best = null;
+        for (Candidate candidate : candidates(edges, near, width, height)) {
+            // Prefer the outer rectangle when a card's inner frame scores about as well
+            if (best == null || candidate.score > best.score * 1.1
+                    || candidate.score > best.score * 0.9 && candidate.area > best.area) {
+                best = candidate;
+            }
+        }
+        if (best == null) {
+            log.info("Local detector found no card-like rectangle ({} ms)", (System.nanoTime() - start) / 1_000_000);
+            return null;
+        }
+
+        CardAnalysisResult result = toAnalysis(best, image.getWidth(), image.getHeight(), (double) image.getWidth() / width,
+                (double) image.getHeight() / height);
+        log.info("Local detector: confidence={}%, rotation={} degrees ({} ms)",
+                result.getConfidence(), result.getRotationDegrees(), (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+
+    /**
+     * Expresses a detected rectangle as an analysis of the full-size image: the rotation that
+     * straightens it (and turns it to portrait), and its bounding box on the rotated canvas.
+     */
+    private static CardAnalysisResult toAnalysis(Candidate card, int imageWidth, int imageHeight, double scaleX, double scaleY) {
+        Point2D[] corners = new Point2D[4];
+        for (int i = 0; i < 4; i++) {
+            corners[i] = new Point2D.Double(card.corners[i * 2] * scaleX, card.corners[i * 2 + 1] * scaleY);
+        }
+
+        // The rectangle's first side runs at card.angle; turning the image by -angle levels it
+        double degrees = -Math.toDegrees(card.angle);
+        if (Math.abs(degrees) < SNAP_DEGREES) {
+            degrees = 0;
+        }
+        double side = corners[0].distance(corners[1]);
+        double other = corners[1].distance(corners[2]);
+        if (side > other) {
+            // Level but landscape: most cards are portrait
+            degrees += 90;
+        }
+        degrees = (degrees + 360) % 360;
+
+        CanvasRotation rotation = CanvasRotation.plan(imageWidth, imageHeight, degrees);
+        Rectangle2D bounds = null;
+        for (Point2D corner : corners) {
+            Point2D rotated = rotation.transform().transform(corner, null);
+            if (bounds == null) {
+                bounds = new Rectangle2D.Double(rotated.getX(), rotated.getY(), 0, 0);
+            } else {
+                bounds.add(rotated);
+            }
+        }
+        bounds = bounds.createIntersection(new Rectangle2D.Double(0, 0, rotation.width(), rotation.height()));
+
+        CardAnalysisResult.BoundingBoxDto box = new CardAnalysisResult.BoundingBoxDto();
+        box.setLeft(bounds.getX() / rotation.width());
+        box.setTop(bounds.getY() / rotation.height());
+        box.setWidth(bounds.getWidth() / rotation.width());
+        box.setHeight(bounds.getHeight() / rotation.height());
+
+        CardAnalysisResult result = new CardAnalysisResult();
+        result.setBoundingBox(box);
+        result.setRotationDegrees(rotation.degrees());
+        result.setConfidence(Math.round(card.score * 1000) / 10.0);
+        result.setReasoning(String.format("Local edge detection: %.0f%% of the outline on edges, aspect ratio %.2f, "
+                        + "%.0f%% of the image", card.coverage * 100, card.aspect, card.areaFraction * 100));
+        return result;
+    }
+
+    // --- Edge detection ---
+
+    private static int[] luma(BufferedImage image) {
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int[] gray = new int[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int p = pixels[i];
+            gray[i] = (77 * (p >> 16 & 0xFF) + 150 * (p >> 8 & 0xFF) + 29 * (p & 0xFF)) >> 8;
+        }
+        return gray;
+    }
+
+    /**
+     * 5x5 binomial blur (separable [1 4 6 4 1] / 16), clamping at the borders.
+     */
+    private static int[] blur(int[] src, int width, int height) {
+        int[] tmp = new int[src.length];
+        int[] dst = new int[src.length];
+        int[] kernel = {1, 4, 6, 4, 1};
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int sum = 0;
+                for (int k = -2; k <= 2; k++) {
+                    sum += kernel[k + 2] * src[y * width + Math.min(width - 1, Math.max(0, x + k))];
+                }
+                tmp[y * width + x] = sum;
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int sum = 0;
+                for (int k = -2; k <= 2; k++) {
+                    sum += kernel[k + 2] * tmp[Math.min(height - 1, Math.max(0, y + k)) * width + x];
+                }
+                dst[y * width + x] = sum >> 8;
+            }
+        }
+        return dst;
+    }
+
+    /**
+     * Canny edges: Sobel gradients, non-maximum suppression along the gradient, and hysteresis
+     * with the high threshold picked by Otsu's method on the gradient magnitudes.
+     */
+    private static boolean[] canny(int[] gray, int width, int height) {
+        int n = width * height;
+        int[] magnitude = new int[n];
+        int[] direction = new int[n];
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int i = y * width + x;
+                int gx = gray[i - width + 1] + 2 * gray[i + 1] + gray[i + width + 1]
+                        - gray[i - width - 1] - 2 * gray[i - 1] - gray[i + width - 1];
+                int gy = gray[i + width - 1] + 2 * gray[i + width] + gray[i + width + 1]
+                        - gray[i - width - 1] - 2 * gray[i - width] - gray[i - width + 1];
+                magnitude[i] = Math.abs(gx) + Math.abs(gy);
+                direction[i] = quantizeDirection(gx, gy);
+            }
+        }
+
+        int high = otsuThreshold(magnitude);
+        int low = high / 2;
+
+        // Keep local maxima across the edge; 1 = weak, 2 = strong
+        byte[] strength = new byte[n];
+        int[][] offsets = {{1, -1}, {width + 1, -width - 1}, {width, -width}, {width - 1, -width + 1}};
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int i = y * width + x;
+                int m = magnitude[i];
+                if (m <= low) {
+                    continue;
+                }
+                int[] across = offsets[direction[i]];
+                if (m >= magnitude[i + across[0]] && m > magnitude[i + across[1]]) {
+                    strength[i] = (byte) (m >= high ? 2 : 1);
+                }
+            }
+        }
+
+        // Hysteresis: weak edges survive only when connected to a strong one
+        boolean[] edges = new boolean[n];
+        int[] stack = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (strength[i] != 2 || edges[i]) {
+                continue;
+            }
+            int top = 0;
+            stack[top++] = i;
+            edges[i] = true;
+            while (top > 0) {
+                int p = stack[--top];
+                int px = p % width;
+                int py = p / width;
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int qx = px + dx;
+                        int qy = py + dy;
+                        if (qx < 0 || qy < 0 || qx >= width || qy >= height) {
+                            continue;
+                        }
+                        int q = qy * width + qx;
+                        if (strength[q] != 0 && !edges[q]) {
+                            edges[q] = true;
+                            stack[top++] = q;
+                        }
+                    }
+                }
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Gradient direction in 45-degree steps: 0 horizontal, 1 diagonal down, 2 vertical, 3 diagonal up.
+     */
+    private static int quantizeDirection(int gx, int gy) {
+        // tan(22.5) ~ 0.4142 ~ 53 / 128
+        int ax = Math.abs(gx);
+        int ay = Math.abs(gy);
+        if (ay * 128 <= ax * 53) {
+            return 0;
+        }
+        if (ax * 128 <= ay * 53) {
+            return 2;
+        }
+        return (gx > 0) == (gy > 0) ? 1 : 3;
+    }
+
+    private static int otsuThreshold(int[] magnitude) {
+        int max = 0;
+        for (int m : magnitude) {
+            max = Math.max(max, m);
+        }
+        if (max == 0) {
+            return 1;
+        }
+        int bins = 256;
+        long[] histogram = new long[bins];
+        for (int m : magnitude) {
+            histogram[(int) ((long) m * (bins - 1) / max)]++;
+        }
+        long total = magnitude.length;
+        double sum = 0;
+        for (int i = 0; i < bins; i++) {
+            sum += (double) i * histogram[i];
+        }
+        double sumBelow = 0;
+        long below = 0;
+        double bestVariance = -1;
+        int best = 0;
+        for (int t = 0; t < bins; t++) {
+            below += histogram[t];
+            if (below == 0) {
+                continue;
+            }
+            long above = total - below;
+            if (above == 0) {
+                break;
+            }
+            sumBelow += (double) t * histogram[t];
+            double meanBelow = sumBelow / below;
+            double meanAbove = (sum - sumBelow) / above;
+            double variance = (double) below * above * (meanBelow - meanAbove) * (meanBelow - meanAbove);
+            if (variance > bestVariance) {
+                bestVariance = variance;
+                best = t;
+            }
+        }
+        return Math.max(1, (int) ((long) (best + 1) * max / (bins - 1)));
+    }
+
+    private static boolean[] dilate(boolean[] edges, int width, int height) {
+        boolean[] dilated = new boolean[edges.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (!edges[y * width + x]) {
+                    continue;
+                }
+                for (int dy = Math.max(0, y - 1); dy <= Math.min(height - 1, y + 1); dy++) {
+                    for (int dx = Math.max(0, x - 1); dx <= Math.min(width - 1, x + 1); dx++) {
+                        dilated[dy * width + dx] = true;
+                    }
+                }
+            }
+        }
+        return dilated;
+    }
+
+    // --- Rectangle finding ---
+
+    /**
+     * Scores the minimum-area rectangle of every sizeable outline. Outlines are the connected
+     * components of the dilated edge map, so small gaps (rounded corners, glare) do not split them.
+     */
+    private static Candidate[] candidates(boolean[] edges, boolean[] near, int width, int height) {
+        int n = width * height;
+        int[] label = new int[n];
+        int[] queue = new int[n];
+        int[] rowMin = new int[height];
+        int[] rowMax = new int[height];
+        int minOutline = (int) (2 * Math.sqrt(MIN_AREA_FRACTION * n));
+        Candidate[] found = new Candidate[0];
+        int labels = 0;
+
+        for (int seed = 0; seed < n; seed++) {
+            if (!near[seed] || label[seed] != 0) {
+                continue;
+            }
+            labels++;
+            Arrays.fill(rowMin, Integer.MAX_VALUE);
+            Arrays.fill(rowMax, Integer.MIN_VALUE);
+            int head = 0;
+            int tail = 0;
+            int edgePixels = 0;
+            queue[tail++] = seed;
+            label[seed] = labels;
+            while (head < tail) {
+                int p = queue[head++];
+                int px = p % width;
+                int py = p / width;
+                if (edges[p]) {
+                    edgePixels++;
+                    rowMin[py] = Math.min(rowMin[py], px);
+                    rowMax[py] = Math.max(rowMax[py], px);
+                }
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int qx = px + dx;
+                        int qy = py + dy;
+                        if (qx < 0 || qy < 0 || qx >= width || qy >= height) {
+                            continue;
+                        }
+                        int q = qy * width + qx;
+                        if (near[q] && label[q] == 0) {
+                            label[q] = labels;
+                            queue[tail++] = q;
+                        }
+                    }
+                }
+            }
+            if (edgePixels < minOutline) {
+                continue;
+            }
+
+            Candidate candidate = Candidate.of(hull(rowMin, rowMax), near, width, height);
+            if (candidate != null) {
+                found = Arrays.copyOf(found, found.length + 1);
+                found[found.length - 1] = candidate;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Convex hull (Andrew's monotone chain) of the outline, from each row's leftmost and rightmost
+     * edge pixel, which are the only points that can be on it. Returns x, y pairs.
+     */
+    private static int[] hull(int[] rowMin, int[] rowMax) {
+        int[] points = new int[rowMin.length * 4];
+        int count = 0;
+        for (int y = 0; y < rowMin.length; y++) {
+            if (rowMin[y] == Integer.MAX_VALUE) {
+                continue;
+            }
+            points[count * 2] = rowMin[y];
+            points[count * 2 + 1] = y;
+            count++;
+            if (rowMax[y] != rowMin[y]) {
+                points[count * 2] = rowMax[y];
+                points[count * 2 + 1] = y;
+                count++;
+            }
+        }
+        // Points are ordered by y then x; the chain below sorts by x then y
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        int[] p = points;
+        Arrays.sort(order, (a, b) -> p[a * 2] != p[b * 2] ? Integer.compare(p[a * 2], p[b * 2])
+                : Integer.compare(p[a * 2 + 1], p[b * 2 + 1]));
+
+        int[] hull = new int[(count + 1) * 2];
+        int size = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            int floor = size;
+            for (int k = 0; k < count; k++) {
+                int i = order[pass == 0 ? k : count - 1 - k];
+                int x = p[i * 2];
+                int y = p[i * 2 + 1];
+                while (size >= floor + 2 && cross(hull, size, x, y) <= 0) {
+                    size--;
+                }
+                hull[size * 2] = x;
+                hull[size * 2 + 1] = y;
+                size++;
+            }
+            size--;
+        }
+        return Arrays.copyOf(hull, Math.max(0, size) * 2);
+    }
+
+    private static long cross(int[] hull, int size, int x, int y) {
+        long ax = hull[(size - 2) * 2];
+        long ay = hull[(size - 2) * 2 + 1];
+        long bx = hull[(size - 1) * 2];
+        long by = hull[(size - 1) * 2 + 1];
+        return (bx - ax) * (y - ay) - (by - ay) * (x - ax);
+    }
+
+    /**
+     * A scored rectangle, in detection-image pixels. Corners are x, y pairs in order around the
+     * rectangle, starting with the side that runs at {@code angle} radians.
+     */
+    private static final class Candidate {
+
+        double[] corners;
+        double angle;
+        double area;
+        double areaFraction;
+        double aspect;
+        double coverage;
+        double score;
+
+        /**
+         * The minimum-area rectangle around the hull (one of its sides lies on a hull edge), or
+         * null if it is not card-like at all.
+         */
+        static Candidate of(int[] hull, boolean[] near, int width, int height) {
+            int points = hull.length / 2;
+            if (points < 3) {
+                return null;
+            }
+            double bestArea = Double.MAX_VALUE;
+            Candidate best = null;
+            for (int i = 0; i < points; i++) {
+                int j = (i + 1) % points;
+                double ex = hull[j * 2] - hull[i * 2];
+                double ey = hull[j * 2 + 1] - hull[i * 2 + 1];
+                double length = Math.hypot(ex, ey);
+                if (length == 0) {
+                    continue;
+                }
+                double ux = ex / length;
+                double uy = ey / length;
+                double minU = Double.MAX_VALUE;
+                double maxU = -Double.MAX_VALUE;
+                double minV = Double.MAX_VALUE;
+                double maxV = -Double.MAX_VALUE;
+                for (int k = 0; k < points; k++) {
+                    double u = hull[k * 2] * ux + hull[k * 2 + 1] * uy;
+                    double v = -hull[k * 2] * uy + hull[k * 2 + 1] * ux;
+                    minU = Math.min(minU, u);
+                    maxU = Math.max(maxU, u);
+                    minV = Math.min(minV, v);
+                    maxV = Math.max(maxV, v);
+                }
+                double area = (maxU - minU) * (maxV - minV);
+                if (area < bestArea) {
+                    bestArea = area;
+                    best = new Candidate();
+                    best.angle = Math.atan2(uy, ux);
+                    best.area = area;
+                    best.corners = new double[]{
+                            minU * ux - minV * uy, minU * uy + minV * ux,
+                            maxU * ux - minV * uy, maxU * uy + minV * ux,
+                            maxU * ux - maxV * uy, maxU * uy + maxV * ux,
+                            minU * ux - maxV * uy, minU * uy + maxV * ux};
+                }
+            }
+            if (best == null) {
+                return null;
+            }
+            // Report the angle of whichever side is closest to horizontal
+            best.normalizeAngle();
+            return best.score(near, width, height) ? best : null;
+        }
+
+        /**
+         * Rotates the corner order so the first side is the one within 45 degrees of horizontal.
+         */
+        private void normalizeAngle() {
+            while (angle > Math.PI / 4 || angle <= -Math.PI / 4) {
+                if (angle > Math.PI / 4) {
+                    angle -= Math.PI / 2;
+                    // the previous side (from the last corner to the first) now leads
+                    corners = rotateCorners(corners, 3);
+                } else {
+                    angle += Math.PI / 2;
+                    corners = rotateCorners(corners, 1);
+                }
+            }
+        }
+
+        private static double[] rotateCorners(double[] corners, int shift) {
+            double[] rotated = new double[8];
+            for (int i = 0; i < 4; i++) {
+                int from = (i + shift) % 4;
+                rotated[i * 2] = corners[from * 2];
+                rotated[i * 2 + 1] = corners[from * 2 + 1];
+            }
+            return rotated;
+        }
+
+        private boolean score(boolean[] near, int width, int height) {
+            areaFraction = area / ((double) width * height);
+            if (areaFraction < MIN_AREA_FRACTION || areaFraction > MAX_AREA_FRACTION) {
+                return false;
+            }
+            double first = Math.hypot(corners[2] - corners[0], corners[3] - corners[1]);
+            double second = Math.hypot(corners[4] - corners[2], corners[5] - corners[3]);
+            aspect = Math.max(first, second) / Math.max(1e-9, Math.min(first, second));
+            double aspectError = (aspect - CARD_ASPECT_RATIO) / ASPECT_TOLERANCE;
+            double aspectScore = Math.max(0, 1 - aspectError * aspectError);
+            if (aspectScore == 0) {
+                return false;
+            }
+
+            coverage = perimeterCoverage(near, width, height);
+            double sizeScore = Math.min(1, (areaFraction - MIN_AREA_FRACTION) / (FULL_AREA_FRACTION - MIN_AREA_FRACTION));
+            score = coverage * aspectScore * sizeScore;
+            return score > 0;
+        }
+
+        /**
+         * Fraction of the rectangle's outline, sampled every pixel, that lies on or next to an edge.
+         */
+        private double perimeterCoverage(boolean[] near, int width, int height) {
+            int samples = 0;
+            int hits = 0;
+            for (int side = 0; side < 4; side++) {
+                double x0 = corners[side * 2];
+                double y0 = corners[side * 2 + 1];
+                double x1 = corners[(side + 1) % 4 * 2];
+                double y1 = corners[(side + 1) % 4 * 2 + 1];
+                int steps = (int) Math.ceil(Math.hypot(x1 - x0, y1 - y0));
+                for (int s = 0; s < steps; s++) {
+                    int x = (int) Math.round(x0 + (x1 - x0) * s / steps);
+                    int y = (int) Math.round(y0 + (y1 - y0) * s / steps);
+                    samples++;
+                    if (x >= 0 && y >= 0 && x < width && y < height && near[y * width + x]) {
+                        hits++;
+                    }
+                }
+            }
+            return samples == 0 ? 0 : (double) hits / samples;
+        }
+    }
+}
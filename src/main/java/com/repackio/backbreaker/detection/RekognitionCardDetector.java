@@ -0,0 +1,163 @@
+package com.repackio.backbreaker.detection;
+
+import com.repackio.backbreaker.aws.dto.CardAnalysisResult;
+import com.repackio.backbreaker.aws.services.RekognitionService;
+import com.repackio.backbreaker.image.EncodedImage;
+import com.repackio.backbreaker.image.ImageCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.rekognition.model.DetectLabelsResponse;
+import software.amazon.awssdk.services.rekognition.model.Instance;
+import software.amazon.awssdk.services.rekognition.model.Label;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Middle stage: the bounding box of the most confident card-like object from Rekognition
+ * {@code DetectLabels}. Rekognition reports no rotation, so a result from this stage leaves the
+ * image as it is and only crops. Off unless {@code detection.rekognition.enabled=true}.
+ * <p>
+ * The Rekognition client blocks, so async detections run on a pool of
+ * {@code detection.rekognition.concurrency} threads. The crop step cancels a detection when the
+ * card's deadline passes; that interrupts the call in flight, or skips it if it is still queued.
+ */
+@Slf4j
+@Component
+@Order(20)
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "detection.rekognition.enabled", havingValue = "true")
+public class RekognitionCardDetector implements CardDetector {
+
+    /**
+     * Largest image Rekognition accepts as inline bytes.
+     */
+    private static final int MAX_IMAGE_BYTES = 5 * 1024 * 1024;
+    private static final Set<String> SUPPORTED_MEDIA_TYPES = Set.of("image/jpeg", "image/png");
+
+    private final RekognitionService rekognitionService;
+
+    @Value("${detection.rekognition.confidence-threshold:90.0}")
+    private double confidenceThreshold;
+
+    /**
+     * Labels whose instances are taken to be the card.
+     */
+    @Value("${detection.rekognition.labels:Card,Trading Card,Business Card,Document,Paper}")
+    private List<String> labels;
+
+    @Value("${detection.rekognition.concurrency:8}")
+    private int concurrency;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void start() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, concurrency), runnable -> {
+            Thread thread = new Thread(runnable, "rekognition-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public String name() {
+        return "rekognition";
+    }
+
+    @Override
+    public double confidenceThreshold() {
+        return confidenceThreshold;
+    }
+
+    @Override
+    public CompletableFuture<CardAnalysisResult> detectAsync(BufferedImage image, EncodedImage source) {
+        CompletableFuture<CardAnalysisResult> result = new CompletableFuture<>();
+        Future<?> call;
+        try {
+            call = executor.submit(() -> {
+                try {
+                    result.complete(detect(image, source));
+                } catch (Exception e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                call.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public CardAnalysisResult detect(BufferedImage image, EncodedImage source) throws IOException {
+        DetectLabelsResponse response = rekognitionService.detectLabels(imageBytes(image, source));
+
+        Label bestLabel = null;
+        Instance best = null;
+        for (Label label : response.labels()) {
+            if (!labels.contains(label.name())) {
+                continue;
+            }
+            for (Instance instance : label.instances()) {
+                if (instance.boundingBox() != null && (best == null || instance.confidence() > best.confidence())) {
+                    best = instance;
+                    bestLabel = label;
+                }
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+
+        CardAnalysisResult.BoundingBoxDto box = new CardAnalysisResult.BoundingBoxDto();
+        box.setLeft(best.boundingBox().left());
+        box.setTop(best.boundingBox().top());
+        box.setWidth(best.boundingBox().width());
+        box.setHeight(best.boundingBox().height());
+
+        CardAnalysisResult result = new CardAnalysisResult();
+        result.setBoundingBox(box);
+        result.setRotationDegrees(0);
+        result.setConfidence(best.confidence());
+        result.setReasoning("Rekognition label '" + bestLabel.name() + "'");
+        return result;
+    }
+
+    /**
+     * The uploaded bytes if Rekognition accepts them as they are. A source with an EXIF rotation
+     * is re-encoded from the decoded pixels, since Rekognition would return a box relative to the
+     * rotated frame rather than to the pixels the crop is applied to.
+     */
+    private static byte[] imageBytes(BufferedImage image, EncodedImage source) throws IOException {
+        if (source != null && source.sizeBytes() <= MAX_IMAGE_BYTES && SUPPORTED_MEDIA_TYPES.contains(source.mediaType())
+                && ImageCodec.exifOrientation(source) == 1) {
+            return source.data();
+        }
+        return ImageCodec.encodeJpeg(image).data();
+    }
+}
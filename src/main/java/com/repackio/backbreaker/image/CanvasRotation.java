@@ -0,0 +1,74 @@
+package com.repackio.backbreaker.image;
+
+import java.awt.geom.AffineTransform;
+
+/**
+ * A planned rotation of an image: the angle applied, the size of the rotated canvas and the
+ * transform from source to canvas coordinates. Positive angles turn the image clockwise.
+ * <p>
+ * This is the frame card analyses are expressed in: a bounding box is relative to the canvas of
+ * the analysis' {@code rotation_degrees}.
+ */
+public record CanvasRotation(double degrees, int width, int height, AffineTransform transform) {
+
+    /**
+     * Works out how an image of the given size is rotated: the angle actually applied (angles within
+     * a degree of a quarter turn snap to it), the size of the rotated canvas, and the transform from
+     * source to canvas coordinates (rotation about the centre, canvas grown to fit arbitrary angles).
+     */
+    public static CanvasRotation plan(int width, int height, double degrees) {
+        if (Math.abs(degrees) < 0.1 || Math.abs(degrees - 360) < 0.1) {
+            return new CanvasRotation(0, width, height, new AffineTransform());
+        }
+
+        // Normalize degrees to 0-360 range
+        degrees = degrees % 360;
+        if (degrees < 0) {
+            degrees += 360;
+        }
+
+        // Check if it's close to a 90-degree multiple for optimized rotation
+        for (int quarter : new int[]{90, 180, 270}) {
+            if (isCloseToAngle(degrees, quarter)) {
+                degrees = quarter;
+                break;
+            }
+        }
+
+        int newWidth;
+        int newHeight;
+        if (degrees == 90 || degrees == 270) {
+            newWidth = height;
+            newHeight = width;
+        } else if (degrees == 180) {
+            newWidth = width;
+            newHeight = height;
+        } else {
+            // Calculate new bounds after rotation
+            double radians = Math.toRadians(degrees);
+            double sin = Math.abs(Math.sin(radians));
+            double cos = Math.abs(Math.cos(radians));
+            newWidth = (int) Math.ceil(width * cos + height * sin);
+            newHeight = (int) Math.ceil(height * cos + width * sin);
+        }
+
+        // Create transform: translate to center, rotate, translate back
+        AffineTransform transform = new AffineTransform();
+        transform.translate(newWidth / 2.0, newHeight / 2.0);
+        transform.rotate(Math.toRadians(degrees));
+        transform.translate(-width / 2.0, -height / 2.0);
+
+        return new CanvasRotation(degrees, newWidth, newHeight, transform);
+    }
+
+    /**
+     * Checks if an angle is within 1 degree of a target angle.
+     */
+    private static boolean isCloseToAngle(double angle, double target) {
+        return Math.abs(angle - target) < 1.0;
+    }
+
+    public boolean isQuarterTurn() {
+        return degrees == 90 || degrees == 180 || degrees == 270;
+    }
+}
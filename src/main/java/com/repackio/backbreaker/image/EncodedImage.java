@@ -0,0 +1,27 @@
+package com.repackio.backbreaker.image;
+
+/**
+ * An image in its encoded form (JPEG, PNG...) together with its media type and pixel dimensions.
+ * <p>
+ * The byte array is shared, not copied; callers must not modify it.
+ *
+ * @param data      Encoded image bytes, exactly as stored or sent
+ * @param mediaType MIME type of the encoding, e.g. {@code image/jpeg}
+ * @param width     Width in pixels as stored (before any EXIF orientation is applied)
+ * @param height    Height in pixels as stored
+ */
+public record EncodedImage(byte[] data, String mediaType, int width, int height) {
+
+    public int sizeBytes() {
+        return data.length;
+    }
+
+    public int longestEdge() {
+        return Math.max(width, height);
+    }
+
+    @Override
+    public String toString() {
+        return "EncodedImage[" + mediaType + ", " + width + "x" + height + ", " + data.length + " bytes]";
+    }
+}
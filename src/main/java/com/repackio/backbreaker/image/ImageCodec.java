@@ -0,0 +1,190 @@
+package com.repackio.backbreaker.image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Encoding and decoding helpers shared by the S3 and Bedrock code paths.
+ */
+public final class ImageCodec {
+
+    public static final String JPEG = "image/jpeg";
+
+    private static final int EXIF_ORIENTATION_TAG = 0x0112;
+
+    private ImageCodec() {
+    }
+
+    /**
+     * Reads the format and dimensions from the image header without decoding any pixels.
+     */
+    public static EncodedImage probe(byte[] data) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format (" + data.length + " bytes)");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                String[] mimeTypes = reader.getOriginatingProvider().getMIMETypes();
+                String mediaType = mimeTypes != null && mimeTypes.length > 0
+                        ? mimeTypes[0]
+                        : "image/" + reader.getFormatName().toLowerCase();
+                return new EncodedImage(data, mediaType, reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Decodes the full image.
+     */
+    public static BufferedImage decode(EncodedImage image) throws IOException {
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(image.data()));
+        if (decoded == null) {
+            throw new IOException("Unable to decode " + image);
+        }
+        return decoded;
+    }
+
+    /**
+     * Decodes a reduced-resolution preview, reading only every n-th pixel in each direction so the
+     * longest edge is at most {@code maxEdge}. Full-resolution pixels are never materialized.
+     */
+    public static BufferedImage decodeSubsampled(EncodedImage image, int maxEdge) throws IOException {
+        int factor = Math.max(1, (int) Math.ceil((double) image.longestEdge() / Math.max(1, maxEdge)));
+        return read(image, param -> param.setSourceSubsampling(factor, factor, 0, 0));
+    }
+
+    /**
+     * Decodes only the given region of the image, at full resolution.
+     */
+    public static BufferedImage decodeRegion(EncodedImage image, Rectangle region) throws IOException {
+        Rectangle bounds = region.intersection(new Rectangle(0, 0, image.width(), image.height()));
+        if (bounds.isEmpty()) {
+            throw new IllegalArgumentException("Region " + region + " lies outside " + image);
+        }
+        return read(image, param -> param.setSourceRegion(bounds));
+    }
+
+    private static BufferedImage read(EncodedImage image, Consumer<ImageReadParam> configure) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(image.data()))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                throw new IOException("Unable to decode " + image);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                configure.accept(param);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Encodes the image as JPEG. Images with an alpha channel are flattened first,
+     * since the JPEG writer silently produces nothing for them.
+     */
+    public static EncodedImage encodeJpeg(BufferedImage image) throws IOException {
+        BufferedImage opaque = image;
+        if (image.getColorModel().hasAlpha()) {
+            opaque = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = opaque.createGraphics();
+            g2d.drawImage(image, 0, 0, Color.WHITE, null);
+            g2d.dispose();
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        if (!ImageIO.write(opaque, "jpg", baos)) {
+            throw new IOException("No JPEG writer for image type " + image.getType());
+        }
+        return new EncodedImage(baos.toByteArray(), JPEG, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Returns the EXIF orientation (1-8) of a JPEG, or 1 (normal) if the image is not a JPEG
+     * or carries no orientation tag. Only the header segments are scanned.
+     */
+    public static int exifOrientation(EncodedImage image) {
+        if (!JPEG.equals(image.mediaType())) {
+            return 1;
+        }
+        byte[] data = image.data();
+        if (data.length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != 0xD8) {
+            return 1;
+        }
+
+        int pos = 2;
+        while (pos + 4 <= data.length && (data[pos] & 0xFF) == 0xFF) {
+            int marker = data[pos + 1] & 0xFF;
+            int length = readShort(data, pos + 2, false);
+            // Start of scan: no more metadata segments
+            if (marker == 0xDA || length < 2) {
+                return 1;
+            }
+            if (marker == 0xE1 && isExifHeader(data, pos + 4)) {
+                return readOrientation(data, pos + 10, Math.min(data.length, pos + 2 + length));
+            }
+            pos += 2 + length;
+        }
+        return 1;
+    }
+
+    private static boolean isExifHeader(byte[] data, int pos) {
+        return pos + 6 <= data.length
+                && data[pos] == 'E' && data[pos + 1] == 'x' && data[pos + 2] == 'i' && data[pos + 3] == 'f'
+                && data[pos + 4] == 0 && data[pos + 5] == 0;
+    }
+
+    private static int readOrientation(byte[] data, int tiff, int end) {
+        if (tiff + 8 > end) {
+            return 1;
+        }
+        boolean littleEndian = data[tiff] == 'I' && data[tiff + 1] == 'I';
+        int ifd = tiff + readInt(data, tiff + 4, littleEndian);
+        if (ifd < tiff || ifd + 2 > end) {
+            return 1;
+        }
+        int entries = readShort(data, ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                return 1;
+            }
+            if (readShort(data, entry, littleEndian) == EXIF_ORIENTATION_TAG) {
+                int orientation = readShort(data, entry + 8, littleEndian);
+                return orientation >= 1 && orientation <= 8 ? orientation : 1;
+            }
+        }
+        return 1;
+    }
+
+    private static int readShort(byte[] data, int pos, boolean littleEndian) {
+        int b0 = data[pos] & 0xFF;
+        int b1 = data[pos + 1] & 0xFF;
+        return littleEndian ? (b1 << 8) | b0 : (b0 << 8) | b1;
+    }
+
+    private static int readInt(byte[] data, int pos, boolean littleEndian) {
+        int hi = readShort(data, littleEndian ? pos + 2 : pos, littleEndian);
+        int lo = readShort(data, littleEndian ? pos : pos + 2, littleEndian);
+        return (hi << 16) | lo;
+    }
+}
@@ -0,0 +1,207 @@
+package com.repackio.backbreaker.image;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Exact 0/90/180/270-degree rotations done as pixel permutations on packed-int rasters.
+ * <p>
+ * A quarter turn needs no interpolation, so instead of rendering through {@code Graphics2D} the
+ * source is read straight from its data buffer in strips of {@value #BLOCK} rows, converted to
+ * packed RGB once, and transposed in {@value #BLOCK}x{@value #BLOCK} blocks so both the reads and
+ * the writes stay in cache. The output is always {@code TYPE_INT_RGB}, whatever the source type
+ * (including the {@code TYPE_CUSTOM} images ImageIO sometimes returns).
+ */
+public final class QuarterTurnRotator {
+
+    private static final int BLOCK = 64;
+
+    private QuarterTurnRotator() {
+    }
+
+    /**
+     * Rotates the whole image clockwise by {@code quarterTurns * 90} degrees.
+     */
+    public static BufferedImage rotate(BufferedImage image, int quarterTurns) {
+        return rotate(image, new Rectangle(0, 0, image.getWidth(), image.getHeight()), quarterTurns);
+    }
+
+    /**
+     * Rotates a region of the image clockwise by {@code quarterTurns * 90} degrees.
+     * Only the region is read; the result has the region's size (swapped for odd turns).
+     */
+    public static BufferedImage rotate(BufferedImage image, Rectangle region, int quarterTurns) {
+        Rectangle bounds = region.intersection(new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+        if (bounds.isEmpty()) {
+            throw new IllegalArgumentException("Region " + region + " lies outside the image");
+        }
+        int turns = Math.floorMod(quarterTurns, 4);
+        int width = bounds.width;
+        int height = bounds.height;
+
+        boolean swap = turns == 1 || turns == 3;
+        BufferedImage rotated = new BufferedImage(swap ? height : width, swap ? width : height, BufferedImage.TYPE_INT_RGB);
+        int[] dst = ((DataBufferInt) rotated.getRaster().getDataBuffer()).getData();
+
+        StripReader reader = StripReader.of(image, bounds);
+        for (int y0 = 0; y0 < height; y0 += BLOCK) {
+            int rows = Math.min(BLOCK, height - y0);
+            reader.load(y0, rows);
+            int[] src = reader.pixels;
+            int offset = reader.offset;
+            int stride = reader.stride;
+
+            switch (turns) {
+                case 0 -> {
+                    for (int r = 0; r < rows; r++) {
+                        System.arraycopy(src, offset + r * stride, dst, (y0 + r) * width, width);
+                    }
+                }
+                case 2 -> {
+                    for (int r = 0; r < rows; r++) {
+                        int in = offset + r * stride;
+                        int out = (height - 1 - y0 - r) * width + width - 1;
+                        for (int x = 0; x < width; x++) {
+                            dst[out - x] = src[in + x];
+                        }
+                    }
+                }
+                case 1 -> {
+                    // (x, y) -> (height - 1 - y, x)
+                    for (int x0 = 0; x0 < width; x0 += BLOCK) {
+                        int x1 = Math.min(width, x0 + BLOCK);
+                        for (int x = x0; x < x1; x++) {
+                            int out = x * height + height - 1 - y0;
+                            int in = offset + x;
+                            for (int r = 0; r < rows; r++) {
+                                dst[out - r] = src[in + r * stride];
+                            }
+                        }
+                    }
+                }
+                default -> {
+                    // (x, y) -> (y, width - 1 - x)
+                    for (int x0 = 0; x0 < width; x0 += BLOCK) {
+                        int x1 = Math.min(width, x0 + BLOCK);
+                        for (int x = x0; x < x1; x++) {
+                            int out = (width - 1 - x) * height + y0;
+                            int in = offset + x;
+                            for (int r = 0; r < rows; r++) {
+                                dst[out + r] = src[in + r * stride];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return rotated;
+    }
+
+    /**
+     * Supplies strips of source rows as packed RGB ints. Packed-int sources are read in place;
+     * interleaved byte sources are converted into a reused scratch strip; anything else is drawn
+     * once into a packed RGB copy of the region.
+     */
+    private abstract static class StripReader {
+
+        int[] pixels;
+        int offset;
+        int stride;
+
+        abstract void load(int y0, int rows);
+
+        static StripReader of(BufferedImage image, Rectangle region) {
+            Raster raster = image.getRaster();
+            int type = image.getType();
+            DataBuffer buffer = raster.getDataBuffer();
+
+            if (type == BufferedImage.TYPE_INT_RGB
+                    && raster.getSampleModel() instanceof SinglePixelPackedSampleModel sm
+                    && buffer instanceof DataBufferInt ints && ints.getNumBanks() == 1) {
+                int x = region.x - raster.getSampleModelTranslateX();
+                int y = region.y - raster.getSampleModelTranslateY();
+                return new PackedIntReader(ints.getData(), ints.getOffset() + y * sm.getScanlineStride() + x,
+                        sm.getScanlineStride());
+            }
+
+            if (!image.getColorModel().hasAlpha()
+                    && image.getColorModel().getColorSpace().isCS_sRGB()
+                    && raster.getSampleModel() instanceof ComponentSampleModel sm
+                    && buffer instanceof DataBufferByte bytes && bytes.getNumBanks() == 1
+                    && sm.getNumBands() == 3 && sm.getPixelStride() >= 3) {
+                return new InterleavedByteReader(bytes.getData(), sm, raster, region);
+            }
+
+            BufferedImage packed = new BufferedImage(region.width, region.height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2d = packed.createGraphics();
+            g2d.drawImage(image, -region.x, -region.y, null);
+            g2d.dispose();
+            return of(packed, new Rectangle(0, 0, region.width, region.height));
+        }
+    }
+
+    private static final class PackedIntReader extends StripReader {
+
+        private final int base;
+
+        PackedIntReader(int[] data, int base, int stride) {
+            this.pixels = data;
+            this.base = base;
+            this.stride = stride;
+        }
+
+        @Override
+        void load(int y0, int rows) {
+            offset = base + y0 * stride;
+        }
+    }
+
+    private static final class InterleavedByteReader extends StripReader {
+
+        private final byte[] data;
+        private final int base;
+        private final int scanlineStride;
+        private final int pixelStride;
+        private final int red;
+        private final int green;
+        private final int blue;
+        private final int width;
+
+        InterleavedByteReader(byte[] data, ComponentSampleModel sm, Raster raster, Rectangle region) {
+            this.data = data;
+            this.scanlineStride = sm.getScanlineStride();
+            this.pixelStride = sm.getPixelStride();
+            int[] bandOffsets = sm.getBandOffsets();
+            this.red = bandOffsets[0];
+            this.green = bandOffsets[1];
+            this.blue = bandOffsets[2];
+            this.width = region.width;
+            int x = region.x - raster.getSampleModelTranslateX();
+            int y = region.y - raster.getSampleModelTranslateY();
+            this.base = raster.getDataBuffer().getOffset() + y * scanlineStride + x * pixelStride;
+            this.pixels = new int[BLOCK * width];
+            this.offset = 0;
+            this.stride = width;
+        }
+
+        @Override
+        void load(int y0, int rows) {
+            for (int r = 0; r < rows; r++) {
+                int in = base + (y0 + r) * scanlineStride;
+                int out = r * width;
+                for (int x = 0; x < width; x++, in += pixelStride) {
+                    pixels[out + x] = (data[in + red] & 0xFF) << 16
+                            | (data[in + green] & 0xFF) << 8
+                            | (data[in + blue] & 0xFF);
+                }
+            }
+        }
+    }
+}
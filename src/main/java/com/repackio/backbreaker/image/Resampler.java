@@ -0,0 +1,385 @@
+package com.repackio.backbreaker.image;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Separable image resampling on packed RGB {@code int[]} rasters.
+ * <p>
+ * Unlike a bilinear {@code drawImage}, which samples only four source pixels per output pixel
+ * and aliases once the image shrinks by more than 2x, every source pixel contributes to the
+ * output here. The filter weights for each axis are computed once per resize, in 14-bit fixed
+ * point, and then applied as a vertical pass followed by a horizontal pass. Both passes can be
+ * split into row tiles on the common {@code ForkJoinPool}.
+ */
+public final class Resampler {
+
+    /**
+     * Resampling filters, cheapest first.
+     */
+    public enum Filter {
+        /**
+         * Each output pixel is the exact area-weighted average of the source pixels it covers.
+         */
+        AREA(0.5),
+        /**
+         * Windowed sinc with three lobes: sharper than {@link #AREA} at roughly 3x the cost.
+         */
+        LANCZOS3(3.0);
+
+        private final double radius;
+
+        Filter(double radius) {
+            this.radius = radius;
+        }
+    }
+
+    private static final int PRECISION_BITS = 14;
+    private static final int ONE = 1 << PRECISION_BITS;
+    private static final int ROUNDING = 1 << (PRECISION_BITS - 1);
+    private static final int TILE_ROWS = 64;
+
+    /**
+     * Below this many output pixels of work per pass, tiles are not worth handing to other threads.
+     */
+    private static final long MIN_PARALLEL_WORK = 1L << 20;
+
+    private Resampler() {
+    }
+
+    /**
+     * Resizes {@code image} to {@code width}x{@code height}. Any alpha is dropped; the result is
+     * always {@code TYPE_INT_RGB}.
+     *
+     * @param parallel Whether to run tiles on the common {@code ForkJoinPool}. Leave this off when
+     *                 many images are already being resized concurrently.
+     */
+    public static BufferedImage resize(BufferedImage image, int width, int height, Filter filter, boolean parallel) {
+        return resize(image, new Rectangle(0, 0, image.getWidth(), image.getHeight()), width, height, filter, parallel);
+    }
+
+    /**
+     * Resizes a region of {@code image} to {@code width}x{@code height}. Packed {@code TYPE_INT_RGB}
+     * and interleaved 8-bit RGB rasters (such as the {@code TYPE_3BYTE_BGR} images JPEGs decode
+     * to) are read in place, so only the region's pixels are touched and nothing is copied first.
+     * Other sources are normalized to packed RGB (see {@link QuarterTurnRotator}).
+     */
+    public static BufferedImage resize(BufferedImage image, Rectangle region, int width, int height,
+                                       Filter filter, boolean parallel) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid target size " + width + "x" + height);
+        }
+        Rectangle bounds = region.intersection(new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+        if (bounds.isEmpty()) {
+            throw new IllegalArgumentException("Region " + region + " lies outside the image");
+        }
+        int srcWidth = bounds.width;
+        int srcHeight = bounds.height;
+
+        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] dst = ((DataBufferInt) resized.getRaster().getDataBuffer()).getData();
+
+        Kernel horizontal = Kernel.of(srcWidth, width, filter);
+        Kernel vertical = Kernel.of(srcHeight, height, filter);
+        long verticalWork = (long) height * srcWidth * vertical.taps;
+        long horizontalWork = (long) height * width * horizontal.taps;
+
+        // Vertical pass first: each intermediate row blends whole source rows in memory order,
+        // which the JIT vectorizes, so the pass over the full source is the cheap one
+        Raster raster = image.getRaster();
+        if (raster.getSampleModel() instanceof PixelInterleavedSampleModel sm && isInterleavedRgb(image, sm)) {
+            // Interleaved bytes are blended as plain samples; the channels only matter horizontally
+            byte[] src = ((DataBufferByte) raster.getDataBuffer()).getData();
+            int stride = sm.getScanlineStride();
+            int base = raster.getDataBuffer().getOffset()
+                    + (bounds.y - raster.getSampleModelTranslateY()) * stride
+                    + (bounds.x - raster.getSampleModelTranslateX()) * 3;
+            int[] bands = sm.getBandOffsets();
+            int samples = srcWidth * 3;
+            int[] rows = new int[height * samples];
+            forEachTile(height, verticalWork, parallel,
+                    (from, to) -> resampleSampleColumns(src, base, stride, rows, samples, vertical, from, to));
+            forEachTile(height, horizontalWork, parallel,
+                    (from, to) -> resampleSampleRows(rows, samples, bands, dst, width, horizontal, from, to));
+            return resized;
+        }
+
+        int[] src;
+        int base;
+        int stride;
+        if (image.getType() == BufferedImage.TYPE_INT_RGB
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel sm
+                && raster.getDataBuffer() instanceof DataBufferInt ints && ints.getNumBanks() == 1) {
+            src = ints.getData();
+            stride = sm.getScanlineStride();
+            base = ints.getOffset() + (bounds.y - raster.getSampleModelTranslateY()) * stride
+                    + bounds.x - raster.getSampleModelTranslateX();
+        } else {
+            BufferedImage packed = QuarterTurnRotator.rotate(image, bounds, 0);
+            src = ((DataBufferInt) packed.getRaster().getDataBuffer()).getData();
+            stride = srcWidth;
+            base = 0;
+        }
+        int[] rows = new int[height * srcWidth];
+        forEachTile(height, verticalWork, parallel,
+                (from, to) -> resampleColumns(src, base, stride, rows, srcWidth, vertical, from, to));
+
+        // Horizontal pass: every intermediate row shrinks to the target width
+        forEachTile(height, horizontalWork, parallel,
+                (from, to) -> resampleRows(rows, srcWidth, dst, width, horizontal, from, to));
+        return resized;
+    }
+
+    /**
+     * True for opaque sRGB images stored as three interleaved bytes per pixel in a single bank.
+     */
+    private static boolean isInterleavedRgb(BufferedImage image, PixelInterleavedSampleModel sm) {
+        return !image.getColorModel().hasAlpha()
+                && image.getColorModel().getColorSpace().isCS_sRGB()
+                && image.getRaster().getDataBuffer() instanceof DataBufferByte bytes && bytes.getNumBanks() == 1
+                && sm.getNumBands() == 3 && sm.getPixelStride() == 3;
+    }
+
+    private static void resampleRows(int[] src, int srcWidth, int[] dst, int dstWidth, Kernel kernel, int fromRow, int toRow) {
+        int taps = kernel.taps;
+        int[] weights = kernel.weights;
+        for (int y = fromRow; y < toRow; y++) {
+            int row = y * srcWidth;
+            int out = y * dstWidth;
+            for (int x = 0; x < dstWidth; x++) {
+                int in = row + kernel.start[x];
+                int w = x * taps;
+                int r = ROUNDING;
+                int g = ROUNDING;
+                int b = ROUNDING;
+                for (int k = 0, n = kernel.count[x]; k < n; k++) {
+                    int pixel = src[in + k];
+                    int weight = weights[w + k];
+                    r += (pixel >> 16 & 0xFF) * weight;
+                    g += (pixel >> 8 & 0xFF) * weight;
+                    b += (pixel & 0xFF) * weight;
+                }
+                dst[out + x] = pack(r, g, b);
+            }
+        }
+    }
+
+    private static void resampleColumns(int[] src, int base, int stride, int[] dst, int width, Kernel kernel,
+                                        int fromRow, int toRow) {
+        int taps = kernel.taps;
+        int[] weights = kernel.weights;
+        int[] r = new int[width];
+        int[] g = new int[width];
+        int[] b = new int[width];
+        for (int y = fromRow; y < toRow; y++) {
+            Arrays.fill(r, ROUNDING);
+            Arrays.fill(g, ROUNDING);
+            Arrays.fill(b, ROUNDING);
+            // Walk the contributing rows in memory order, accumulating the whole output row at once
+            for (int k = 0, n = kernel.count[y]; k < n; k++) {
+                int weight = weights[y * taps + k];
+                int in = base + (kernel.start[y] + k) * stride;
+                for (int x = 0; x < width; x++) {
+                    int pixel = src[in + x];
+                    r[x] += (pixel >> 16 & 0xFF) * weight;
+                    g[x] += (pixel >> 8 & 0xFF) * weight;
+                    b[x] += (pixel & 0xFF) * weight;
+                }
+            }
+            int out = y * width;
+            for (int x = 0; x < width; x++) {
+                dst[out + x] = pack(r[x], g[x], b[x]);
+            }
+        }
+    }
+
+    /**
+     * Vertical pass over interleaved 8-bit samples: {@code samples} values per row, 0-255 each.
+     */
+    private static void resampleSampleColumns(byte[] src, int base, int stride, int[] dst, int samples, Kernel kernel,
+                                              int fromRow, int toRow) {
+        int taps = kernel.taps;
+        int[] weights = kernel.weights;
+        int[] sum = new int[samples];
+        for (int y = fromRow; y < toRow; y++) {
+            Arrays.fill(sum, ROUNDING);
+            int n = kernel.count[y];
+            int k = 0;
+            // Two rows per sweep halve the loads and stores of the running sums
+            for (; k + 1 < n; k += 2) {
+                int weight0 = weights[y * taps + k];
+                int weight1 = weights[y * taps + k + 1];
+                int in0 = base + (kernel.start[y] + k) * stride;
+                int in1 = in0 + stride;
+                for (int i = 0; i < samples; i++) {
+                    sum[i] += (src[in0 + i] & 0xFF) * weight0 + (src[in1 + i] & 0xFF) * weight1;
+                }
+            }
+            if (k < n) {
+                int weight = weights[y * taps + k];
+                int in = base + (kernel.start[y] + k) * stride;
+                for (int i = 0; i < samples; i++) {
+                    sum[i] += (src[in + i] & 0xFF) * weight;
+                }
+            }
+            int out = y * samples;
+            for (int i = 0; i < samples; i++) {
+                dst[out + i] = clamp(sum[i] >> PRECISION_BITS);
+            }
+        }
+    }
+
+    /**
+     * Horizontal pass from interleaved samples to packed RGB; {@code bands} gives the offsets of
+     * red, green and blue within a pixel.
+     */
+    private static void resampleSampleRows(int[] src, int samples, int[] bands, int[] dst, int dstWidth, Kernel kernel,
+                                           int fromRow, int toRow) {
+        int taps = kernel.taps;
+        int[] weights = kernel.weights;
+        int red = bands[0];
+        int green = bands[1];
+        int blue = bands[2];
+        for (int y = fromRow; y < toRow; y++) {
+            int row = y * samples;
+            int out = y * dstWidth;
+            for (int x = 0; x < dstWidth; x++) {
+                int in = row + kernel.start[x] * 3;
+                int w = x * taps;
+                int r = ROUNDING;
+                int g = ROUNDING;
+                int b = ROUNDING;
+                for (int k = 0, n = kernel.count[x]; k < n; k++, in += 3) {
+                    int weight = weights[w + k];
+                    r += src[in + red] * weight;
+                    g += src[in + green] * weight;
+                    b += src[in + blue] * weight;
+                }
+                dst[out + x] = pack(r, g, b);
+            }
+        }
+    }
+
+    private static int pack(int r, int g, int b) {
+        return clamp(r >> PRECISION_BITS) << 16 | clamp(g >> PRECISION_BITS) << 8 | clamp(b >> PRECISION_BITS);
+    }
+
+    private static int clamp(int channel) {
+        return channel < 0 ? 0 : Math.min(channel, 255);
+    }
+
+    private static void forEachTile(int rows, long work, boolean parallel, TileTask task) {
+        int tiles = (rows + TILE_ROWS - 1) / TILE_ROWS;
+        if (!parallel || tiles < 2 || work < MIN_PARALLEL_WORK) {
+            task.run(0, rows);
+            return;
+        }
+        IntStream.range(0, tiles).parallel()
+                .forEach(tile -> task.run(tile * TILE_ROWS, Math.min(rows, (tile + 1) * TILE_ROWS)));
+    }
+
+    @FunctionalInterface
+    private interface TileTask {
+        void run(int fromRow, int toRow);
+    }
+
+    /**
+     * Fixed-point filter weights for one axis: output pixel {@code i} is the weighted sum of source
+     * pixels {@code start[i] .. start[i] + count[i] - 1}, with weights at {@code weights[i * taps]}.
+     * Each output pixel's weights sum to exactly {@code 1 << 14}, so flat areas stay flat.
+     */
+    private static final class Kernel {
+
+        final int taps;
+        final int[] start;
+        final int[] count;
+        final int[] weights;
+
+        private Kernel(int taps, int[] start, int[] count, int[] weights) {
+            this.taps = taps;
+            this.start = start;
+            this.count = count;
+            this.weights = weights;
+        }
+
+        static Kernel of(int srcSize, int dstSize, Filter filter) {
+            double scale = (double) srcSize / dstSize;
+            // When shrinking, the filter stretches to cover every source pixel under an output pixel
+            double stretch = Math.max(scale, 1.0);
+            double support = filter.radius * stretch;
+            int taps = (int) Math.ceil(support) * 2 + 1;
+
+            int[] start = new int[dstSize];
+            int[] count = new int[dstSize];
+            int[] weights = new int[dstSize * taps];
+            double[] raw = new double[taps];
+
+            for (int i = 0; i < dstSize; i++) {
+                double center = (i + 0.5) * scale;
+                int first = Math.max(0, (int) Math.floor(center - support));
+                int last = Math.min(srcSize, (int) Math.ceil(center + support));
+                int n = Math.min(taps, last - first);
+
+                double total = 0;
+                for (int k = 0; k < n; k++) {
+                    raw[k] = filter == Filter.AREA
+                            ? overlap(first + k, i * scale, (i + 1) * scale)
+                            : lanczos3((first + k + 0.5 - center) / stretch);
+                    total += raw[k];
+                }
+
+                // Quantize, folding the rounding error into the largest weight
+                int sum = 0;
+                int largest = 0;
+                for (int k = 0; k < n; k++) {
+                    int weight = (int) Math.round(raw[k] / total * ONE);
+                    weights[i * taps + k] = weight;
+                    sum += weight;
+                    if (weight > weights[i * taps + largest]) {
+                        largest = k;
+                    }
+                }
+                weights[i * taps + largest] += ONE - sum;
+
+                // Trim zero weights at both ends so the inner loops skip them
+                int lead = 0;
+                while (lead < n - 1 && weights[i * taps + lead] == 0) {
+                    lead++;
+                }
+                int trail = n;
+                while (trail > lead + 1 && weights[i * taps + trail - 1] == 0) {
+                    trail--;
+                }
+                System.arraycopy(weights, i * taps + lead, weights, i * taps, trail - lead);
+                start[i] = first + lead;
+                count[i] = trail - lead;
+            }
+            return new Kernel(taps, start, count, weights);
+        }
+
+        /**
+         * Length of the overlap between source pixel {@code [pixel, pixel + 1)} and {@code [from, to)}.
+         */
+        private static double overlap(int pixel, double from, double to) {
+            return Math.max(0, Math.min(pixel + 1, to) - Math.max(pixel, from));
+        }
+
+        private static double lanczos3(double x) {
+            if (x == 0) {
+                return 1;
+            }
+            if (x <= -3 || x >= 3) {
+                return 0;
+            }
+            double px = Math.PI * x;
+            return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+        }
+    }
+}
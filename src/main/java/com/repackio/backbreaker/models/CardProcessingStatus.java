@@ -15,7 +15,7 @@ public class CardProcessingStatus {
 
     @Setter
     @Column(nullable = false, unique = true, length = 32)
-    private String code; // pending, queued, processing, done, error
+    private String code; // pending, queued, processing, done, degraded, error
 
     public CardProcessingStatus() {
     }
@@ -0,0 +1,92 @@
+package com.repackio.backbreaker.processing;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time budget for processing one card, started when the card is picked up. Handlers check it
+ * before each step and derive the timeouts of their calls from what is left, so a card that runs
+ * out fails right away instead of holding its worker.
+ */
+public final class CardDeadline {
+
+    private static final CardDeadline NONE = new CardDeadline(null, 0);
+
+    private final Duration budget;
+    private final long expiresNanos;
+
+    private CardDeadline(Duration budget, long expiresNanos) {
+        this.budget = budget;
+        this.expiresNanos = expiresNanos;
+    }
+
+    /**
+     * A deadline {@code budget} from now; a null, zero or negative budget means no deadline.
+     */
+    public static CardDeadline after(Duration budget) {
+        if (budget == null || budget.isZero() || budget.isNegative()) {
+            return NONE;
+        }
+        return new CardDeadline(budget, System.nanoTime() + budget.toNanos());
+    }
+
+    public static CardDeadline none() {
+        return NONE;
+    }
+
+    public boolean isBounded() {
+        return budget != null;
+    }
+
+    public boolean isExpired() {
+        return isBounded() && remainingNanos() <= 0;
+    }
+
+    /**
+     * Nanoseconds left, at least zero; {@code Long.MAX_VALUE} without a deadline.
+     */
+    public long remainingNanos() {
+        return isBounded() ? Math.max(0, expiresNanos - System.nanoTime()) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Fails if the deadline has passed.
+     *
+     * @param step What was about to run, for the failure reason
+     */
+    public void check(String step) {
+        if (isExpired()) {
+            throw exceeded(step);
+        }
+    }
+
+    /**
+     * The timeout for a call about to run: {@code cap} or what is left of the budget, whichever is
+     * shorter. Without a deadline this is {@code cap}, which may be null for no timeout.
+     *
+     * @throws CardDeadlineExceededException if the deadline has already passed
+     */
+    public Duration timeout(Duration cap, String step) {
+        check(step);
+        if (!isBounded()) {
+            return cap;
+        }
+        Duration remaining = Duration.ofNanos(remainingNanos());
+        return cap == null || remaining.compareTo(cap) < 0 ? remaining : cap;
+    }
+
+    public CardDeadlineExceededException exceeded(String step) {
+        return new CardDeadlineExceededException("Card deadline of " + format(budget) + " exceeded during " + step);
+    }
+
+    @Override
+    public String toString() {
+        return isBounded()
+                ? format(budget) + " (" + TimeUnit.NANOSECONDS.toMillis(remainingNanos()) + " ms left)"
+                : "none";
+    }
+
+    private static String format(Duration duration) {
+        return duration.toString().substring(2).toLowerCase();
+    }
+}
@@ -0,0 +1,11 @@
+package com.repackio.backbreaker.processing;
+
+/**
+ * Thrown when a card runs out of its {@link CardDeadline}. The message says which step was cut off.
+ */
+public class CardDeadlineExceededException extends RuntimeException {
+
+    public CardDeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,90 @@
+package com.repackio.backbreaker.processing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs the ordered {@link CardProcessingHandler} chain for a single card.
+ * <p>
+ * Consecutive {@link CardSideHandler}s are grouped into one stage that runs for the front and the
+ * back in parallel; all other handlers run on the calling thread. For the default chain this means
+ * download, crop and upload run side by side for both images and join before the card is marked
+ * complete. The card's {@link CardDeadline} is checked before every handler, so a card that has
+ * run out of time fails before starting more work.
+ */
+@Slf4j
+@Component
+public class CardPipeline {
+
+    private final CardProcessingExecutor cardExecutor;
+    private final List<CardProcessingHandler> handlers;
+    private final List<Stage> stages;
+
+    public CardPipeline(CardProcessingExecutor cardExecutor,
+                        @Autowired(required = false) List<CardProcessingHandler> handlers) {
+        this.cardExecutor = cardExecutor;
+        this.handlers = handlers == null ? Collections.emptyList() : List.copyOf(handlers);
+        this.stages = buildStages(this.handlers);
+    }
+
+    public void process(CardProcessingContext context) throws Exception {
+        CardDeadline deadline = context.getDeadline();
+        for (Stage stage : stages) {
+            if (stage.sideHandlers().isEmpty()) {
+                deadline.check(stage.handler().getClass().getSimpleName());
+                stage.handler().handle(context);
+            } else {
+                cardExecutor.forEachSide(side -> {
+                    for (CardSideHandler handler : stage.sideHandlers()) {
+                        deadline.check(handler.getClass().getSimpleName() + " (" + side.label() + ")");
+                        handler.handle(context, side);
+                    }
+                });
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return handlers.isEmpty();
+    }
+
+    public List<CardProcessingHandler> getHandlers() {
+        return handlers;
+    }
+
+    private static List<Stage> buildStages(List<CardProcessingHandler> handlers) {
+        List<Stage> stages = new ArrayList<>();
+        List<CardSideHandler> sideRun = new ArrayList<>();
+        for (CardProcessingHandler handler : handlers) {
+            if (handler instanceof CardSideHandler sideHandler && sideHandler.runsPerSide()) {
+                sideRun.add(sideHandler);
+                continue;
+            }
+            if (!sideRun.isEmpty()) {
+                stages.add(new Stage(null, List.copyOf(sideRun)));
+                sideRun.clear();
+            }
+            stages.add(new Stage(handler, List.of()));
+        }
+        if (!sideRun.isEmpty()) {
+            stages.add(new Stage(null, List.copyOf(sideRun)));
+        }
+        log.info("Card pipeline: {}", stages.stream().map(Stage::describe).toList());
+        return stages;
+    }
+
+    private record Stage(CardProcessingHandler handler, List<CardSideHandler> sideHandlers) {
+
+        String describe() {
+            if (sideHandlers.isEmpty()) {
+                return handler.getClass().getSimpleName();
+            }
+            return "per-side" + sideHandlers.stream().map(h -> h.getClass().getSimpleName()).toList();
+        }
+    }
+}
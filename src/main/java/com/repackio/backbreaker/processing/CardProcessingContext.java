@@ -1,5 +1,6 @@
 package com.repackio.backbreaker.processing;
 
+import com.repackio.backbreaker.image.EncodedImage;
 import com.repackio.backbreaker.models.ProductSeries;
 import com.repackio.backbreaker.models.SeriesCard;
 
@@ -9,20 +10,31 @@ public class CardProcessingContext {
 
     private final ProductSeries series;
     private final SeriesCard card;
+    private final CardDeadline deadline;
 
     private S3Location frontOriginalLocation;
     private S3Location backOriginalLocation;
     private S3Location frontProcessedLocation;
     private S3Location backProcessedLocation;
 
+    private EncodedImage frontOriginalEncoded;
+    private EncodedImage backOriginalEncoded;
+
     private BufferedImage frontOriginal;
     private BufferedImage backOriginal;
     private BufferedImage frontProcessed;
     private BufferedImage backProcessed;
 
+    private volatile boolean degraded;
+
     public CardProcessingContext(ProductSeries series, SeriesCard card) {
+        this(series, card, CardDeadline.none());
+    }
+
+    public CardProcessingContext(ProductSeries series, SeriesCard card, CardDeadline deadline) {
         this.series = series;
         this.card = card;
+        this.deadline = deadline;
     }
 
     public ProductSeries getSeries() {
@@ -33,6 +45,13 @@ public class CardProcessingContext {
         return card;
     }
 
+    /**
+     * The card's time budget; every handler derives its timeouts from what is left of it.
+     */
+    public CardDeadline getDeadline() {
+        return deadline;
+    }
+
     public S3Location getFrontOriginalLocation() {
         return frontOriginalLocation;
     }
@@ -65,6 +84,22 @@ public class CardProcessingContext {
         this.backProcessedLocation = backProcessedLocation;
     }
 
+    public EncodedImage getFrontOriginalEncoded() {
+        return frontOriginalEncoded;
+    }
+
+    public void setFrontOriginalEncoded(EncodedImage frontOriginalEncoded) {
+        this.frontOriginalEncoded = frontOriginalEncoded;
+    }
+
+    public EncodedImage getBackOriginalEncoded() {
+        return backOriginalEncoded;
+    }
+
+    public void setBackOriginalEncoded(EncodedImage backOriginalEncoded) {
+        this.backOriginalEncoded = backOriginalEncoded;
+    }
+
     public BufferedImage getFrontOriginal() {
         return frontOriginal;
     }
@@ -96,4 +131,92 @@ public class CardProcessingContext {
     public void setBackProcessed(BufferedImage backProcessed) {
         this.backProcessed = backProcessed;
     }
+
+    /**
+     * Whether the card was processed without Bedrock because it was unavailable, so it should be
+     * reprocessed once Bedrock recovers.
+     */
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    /**
+     * Flags the card as {@linkplain #isDegraded() degraded}. Safe to call from both side workers.
+     */
+    public void markDegraded() {
+        this.degraded = true;
+    }
+
+    // ---- Per-side accessors ----
+
+    public String getOriginalUrl(CardSide side) {
+        return side == CardSide.FRONT ? card.getFrontImgUrl() : card.getBackImgUrl();
+    }
+
+    public S3Location getOriginalLocation(CardSide side) {
+        return side == CardSide.FRONT ? frontOriginalLocation : backOriginalLocation;
+    }
+
+    public void setOriginalLocation(CardSide side, S3Location location) {
+        if (side == CardSide.FRONT) {
+            this.frontOriginalLocation = location;
+        } else {
+            this.backOriginalLocation = location;
+        }
+    }
+
+    public S3Location getProcessedLocation(CardSide side) {
+        return side == CardSide.FRONT ? frontProcessedLocation : backProcessedLocation;
+    }
+
+    public void setProcessedLocation(CardSide side, S3Location location) {
+        if (side == CardSide.FRONT) {
+            this.frontProcessedLocation = location;
+        } else {
+            this.backProcessedLocation = location;
+        }
+    }
+
+    /**
+     * The original upload as downloaded, before decoding.
+     */
+    public EncodedImage getOriginalEncoded(CardSide side) {
+        return side == CardSide.FRONT ? frontOriginalEncoded : backOriginalEncoded;
+    }
+
+    public void setOriginalEncoded(CardSide side, EncodedImage image) {
+        if (side == CardSide.FRONT) {
+            this.frontOriginalEncoded = image;
+        } else {
+            this.backOriginalEncoded = image;
+        }
+    }
+
+    /**
+     * The decoded original. In two-phase decode mode this is a subsampled preview of
+     * {@link #getOriginalEncoded(CardSide)}.
+     */
+    public BufferedImage getOriginal(CardSide side) {
+        return side == CardSide.FRONT ? frontOriginal : backOriginal;
+    }
+
+    public void setOriginal(CardSide side, BufferedImage image) {
+        if (side == CardSide.FRONT) {
+            this.frontOriginal = image;
+        } else {
+            this.backOriginal = image;
+        }
+    }
+
+    public BufferedImage getProcessed(CardSide side) {
+        return side == CardSide.FRONT ? frontProcessed : backProcessed;
+    }
+
+    public void setProcessed(CardSide side, BufferedImage image) {
+        if (side == CardSide.FRONT) {
+            this.frontProcessed = image;
+        } else {
+            this.backProcessed = image;
+        }
+    }
 }
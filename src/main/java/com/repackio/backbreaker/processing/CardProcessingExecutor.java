@@ -0,0 +1,158 @@
+package com.repackio.backbreaker.processing;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Bounded executor for per-card work.
+ * <p>
+ * All series share one fixed-size worker pool, which caps the number of cards in flight
+ * across the application. Each call to {@link #runAll} additionally holds a semaphore so a
+ * single large series cannot occupy every worker.
+ * <p>
+ * A second pool, twice the size of the card pool, runs the front and back of a card in
+ * parallel (see {@link #forEachSide}). Side tasks never wait on other tasks, so the two pools
+ * cannot deadlock each other.
+ */
+@Slf4j
+@Component
+public class CardProcessingExecutor {
+
+    private final ExecutorService workers;
+    private final ExecutorService sideWorkers;
+    private final int globalConcurrency;
+    private final int seriesConcurrency;
+
+    public CardProcessingExecutor(CardProcessingProperties properties) {
+        this.globalConcurrency = Math.max(1, properties.getGlobalConcurrency());
+        this.seriesConcurrency = Math.max(1, properties.getSeriesConcurrency());
+        this.workers = Executors.newFixedThreadPool(globalConcurrency, namedThreadFactory("card-worker-"));
+        this.sideWorkers = Executors.newFixedThreadPool(globalConcurrency * 2, namedThreadFactory("card-side-"));
+        log.info("Card processing executor started (global concurrency: {}, per-series concurrency: {})",
+                globalConcurrency, seriesConcurrency);
+    }
+
+    /**
+     * Runs the task for every item on the shared worker pool and waits for all of them to finish.
+     * At most {@code seriesConcurrency} items of this call are submitted at any time; the calling
+     * thread blocks until a slot frees up. Exceptions thrown by the task are logged and swallowed,
+     * so tasks are expected to record their own failures.
+     */
+    public <T> void runAll(Collection<T> items, Consumer<T> task) throws InterruptedException {
+        Semaphore slots = new Semaphore(seriesConcurrency);
+        List<Future<?>> futures = new ArrayList<>(items.size());
+
+        try {
+            for (T item : items) {
+                slots.acquire();
+                try {
+                    futures.add(workers.submit(() -> {
+                        try {
+                            task.accept(item);
+                        } finally {
+                            slots.release();
+                        }
+                    }));
+                } catch (RuntimeException ex) {
+                    slots.release();
+                    throw ex;
+                }
+            }
+
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    log.error("Card task failed unexpectedly", ex.getCause());
+                }
+            }
+        } catch (InterruptedException ex) {
+            futures.forEach(future -> future.cancel(true));
+            throw ex;
+        }
+    }
+
+    /**
+     * Runs the task for the front and the back of a card in parallel and waits for both.
+     * If either side fails, the other side is cancelled (interrupting any blocking call it is in)
+     * and the first failure is rethrown.
+     */
+    public void forEachSide(SideTask task) throws Exception {
+        ExecutorCompletionService<CardSide> completion = new ExecutorCompletionService<>(sideWorkers);
+        Map<CardSide, Future<CardSide>> futures = new EnumMap<>(CardSide.class);
+        for (CardSide side : CardSide.values()) {
+            futures.put(side, completion.submit(() -> {
+                task.run(side);
+                return side;
+            }));
+        }
+
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                completion.take().get();
+            }
+        } catch (ExecutionException ex) {
+            futures.values().forEach(future -> future.cancel(true));
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw new IllegalStateException("Card side task failed", cause);
+        } catch (InterruptedException ex) {
+            futures.values().forEach(future -> future.cancel(true));
+            throw ex;
+        }
+    }
+
+    public int getGlobalConcurrency() {
+        return globalConcurrency;
+    }
+
+    public int getSeriesConcurrency() {
+        return seriesConcurrency;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Card workers did not terminate in time, interrupting");
+            workers.shutdownNow();
+        }
+        sideWorkers.shutdownNow();
+    }
+
+    /**
+     * Work for one side of a card.
+     */
+    @FunctionalInterface
+    public interface SideTask {
+        void run(CardSide side) throws Exception;
+    }
+
+    static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,64 @@
+package com.repackio.backbreaker.processing;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Configuration properties for the card processing pipeline.
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "processing")
+public class CardProcessingProperties {
+
+    /**
+     * Maximum number of cards from a single series processed at the same time.
+     */
+    private int seriesConcurrency = 8;
+
+    /**
+     * Maximum number of cards processed at the same time across all series.
+     * This is the size of the shared card worker pool.
+     */
+    private int globalConcurrency = 16;
+
+    /**
+     * When enabled, downloads decode only a subsampled preview, which is what Bedrock analyzes.
+     * The crop step then decodes just the card's region of the original at full resolution.
+     */
+    private boolean twoPhaseDecode = true;
+
+    /**
+     * Longest edge, in pixels, of the preview decoded in two-phase mode.
+     */
+    private int previewMaxDimension = 1568;
+
+    /**
+     * Time budget for one card through the whole handler chain (see {@link CardDeadline});
+     * zero disables it.
+     */
+    private Duration cardDeadline = Duration.ofMinutes(5);
+
+    /**
+     * Longest single S3 request attempt, further limited by what is left of the card's budget.
+     */
+    private Duration s3AttemptTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Where the cards of a finalized series are processed.
+     */
+    private ExecutionMode executionMode = ExecutionMode.LOCAL;
+
+    public enum ExecutionMode {
+        /** On the instance that received the finalize request. */
+        LOCAL,
+        /**
+         * Fanned out to the card queue and processed by the queue consumers of every instance
+         * (which need {@code aws.sqs.consumer.enabled=true}).
+         */
+        QUEUE
+    }
+}
@@ -0,0 +1,23 @@
+package com.repackio.backbreaker.processing;
+
+/**
+ * The two independently processed images of a card.
+ */
+public enum CardSide {
+
+    FRONT("front"),
+    BACK("back");
+
+    private final String label;
+
+    CardSide(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Lower-case name used in S3 keys and log messages.
+     */
+    public String label() {
+        return label;
+    }
+}
@@ -0,0 +1,28 @@
+package com.repackio.backbreaker.processing;
+
+/**
+ * A pipeline step whose work for the front and the back of a card is independent.
+ * <p>
+ * {@link CardPipeline} runs consecutive side handlers once per side, with both sides in parallel,
+ * and joins them before the next regular handler. Called directly, the handler processes the
+ * front and then the back. A handler that needs both sides at once in its current configuration
+ * returns {@code false} from {@link #runsPerSide()} and is run as a regular handler.
+ */
+public interface CardSideHandler extends CardProcessingHandler {
+
+    void handle(CardProcessingContext context, CardSide side) throws Exception;
+
+    /**
+     * Whether the pipeline should run this handler once per side in parallel.
+     */
+    default boolean runsPerSide() {
+        return true;
+    }
+
+    @Override
+    default void handle(CardProcessingContext context) throws Exception {
+        for (CardSide side : CardSide.values()) {
+            handle(context, side);
+        }
+    }
+}
@@ -5,12 +5,9 @@ import com.repackio.backbreaker.models.SeriesCard;
 import com.repackio.backbreaker.repositories.ProductSeriesRepository;
 import com.repackio.backbreaker.repositories.SeriesCardRepository;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Collections;
 import java.util.List;
 
 @Service
@@ -19,15 +16,21 @@ public class SeriesCardProcessingService {
 
     private final ProductSeriesRepository productSeriesRepository;
     private final SeriesCardRepository seriesCardRepository;
-    private final List<CardProcessingHandler> handlers;
+    private final CardProcessingExecutor cardExecutor;
+    private final CardPipeline pipeline;
+    private final CardProcessingProperties properties;
 
     public SeriesCardProcessingService(
             ProductSeriesRepository productSeriesRepository,
             SeriesCardRepository seriesCardRepository,
-            @Autowired(required = false) List<CardProcessingHandler> handlers) {
+            CardProcessingExecutor cardExecutor,
+            CardPipeline pipeline,
+            CardProcessingProperties properties) {
         this.productSeriesRepository = productSeriesRepository;
         this.seriesCardRepository = seriesCardRepository;
-        this.handlers = handlers;
+        this.cardExecutor = cardExecutor;
+        this.pipeline = pipeline;
+        this.properties = properties;
     }
 
     @Async
@@ -41,39 +44,74 @@ public class SeriesCardProcessingService {
         }
     }
 
-    @Transactional
+    /**
+     * Runs the handler chain for every card of the series on the shared card executor.
+     * Cards are independent, so each one is saved on its own as soon as it completes.
+     */
     protected SeriesProcessingReport processInternal(ProductSeries series) {
         List<SeriesCard> cards = seriesCardRepository
                 .findBySeriesIdAndFrontImgUrlIsNotNullAndBackImgUrlIsNotNull(series.getId().longValue());
 
-        if (handlers == null || handlers.isEmpty() || cards.isEmpty()) {
+        if (pipeline.isEmpty() || cards.isEmpty()) {
             log.info("Series {} has no cards/handlers to process", series.getId());
             return new SeriesProcessingReport(series.getId().longValue(), cards.size());
         }
 
         SeriesProcessingReport report = new SeriesProcessingReport(series.getId().longValue(), cards.size());
 
-        for (SeriesCard card : cards) {
-            CardProcessingContext context = new CardProcessingContext(series, card);
-            try {
-                for (CardProcessingHandler handler : handlers) {
-                    handler.handle(context);
-                }
+        try {
+            cardExecutor.runAll(cards, card -> processCard(series, card, report));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            log.warn("Processing of series {} was interrupted", series.getId());
+        }
+        report.complete();
+
+        log.info("Completed processing series {}: {} succeeded ({} degraded), {} failed in {} ms (cumulative card time {} ms, speedup {}x)",
+                series.getId(), report.getProcessedCards(), report.getDegradedCards().size(), report.getFailures().size(),
+                report.getWallClockTime().toMillis(), report.getCumulativeCardTime().toMillis(),
+                String.format("%.2f", report.getSpeedup()));
+        return report;
+    }
+
+    private void processCard(ProductSeries series, SeriesCard card, SeriesProcessingReport report) {
+        long started = System.nanoTime();
+        CardProcessingContext context = new CardProcessingContext(series, card,
+                CardDeadline.after(properties.getCardDeadline()));
+        try {
+            pipeline.process(context);
 
-                seriesCardRepository.save(card);
-                report.markSuccess();
-            } catch (Exception ex) {
-                log.error("Failed to process card {} in series {}: {}", card.getId(), series.getId(), ex.getMessage(), ex);
-                report.markFailure(card.getId(), ex.getMessage());
+            seriesCardRepository.save(card);
+            report.markSuccess();
+            if (context.isDegraded()) {
+                report.markDegraded(card.getId());
             }
+        } catch (Exception ex) {
+            String reason = failureReason(context, ex);
+            log.error("Failed to process card {} in series {}: {}", card.getId(), series.getId(), reason, ex);
+            report.markFailure(card.getId(), reason);
+        } finally {
+            report.recordCardTime(System.nanoTime() - started);
         }
+    }
 
-        log.info("Completed processing series {}: {} succeeded, {} failed",
-                series.getId(), report.getProcessedCards(), report.getFailures().size());
-        return report;
+    /**
+     * The reason recorded for a failed card. A failure after the card's deadline passed (such as
+     * an SDK timeout cut short by the budget) is reported as the deadline being exceeded.
+     */
+    private static String failureReason(CardProcessingContext context, Exception ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CardDeadlineExceededException) {
+                return cause.getMessage();
+            }
+        }
+        if (context.getDeadline().isExpired()) {
+            return context.getDeadline().exceeded("processing").getMessage() + ": " + ex.getMessage();
+        }
+        return ex.getMessage();
     }
 
     public List<CardProcessingHandler> getHandlers() {
-        return handlers == null ? Collections.emptyList() : Collections.unmodifiableList(handlers);
+        return pipeline.getHandlers();
     }
 }
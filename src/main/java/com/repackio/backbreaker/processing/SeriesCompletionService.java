@@ -0,0 +1,44 @@
+package com.repackio.backbreaker.processing;
+
+import com.repackio.backbreaker.models.SeriesCard;
+import com.repackio.backbreaker.repositories.ProductSeriesRepository;
+import com.repackio.backbreaker.repositories.SeriesCardRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Saves cards processed from the queue and tells when the last card of a series is done.
+ * <p>
+ * The cards of one series finish on many workers across instances. Each finished card is saved
+ * while holding the series row lock, and the unfinished cards are counted before and after the
+ * save, so exactly one save sees the series go from one unfinished card to none, even if a
+ * redelivered message processes a card twice.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SeriesCompletionService {
+
+    private final ProductSeriesRepository productSeriesRepository;
+    private final SeriesCardRepository seriesCardRepository;
+
+    /**
+     * Saves a card that reached a final status (done, degraded or error).
+     *
+     * @return true if this was the last unfinished card of its series
+     */
+    @Transactional
+    public boolean saveFinishedCard(SeriesCard card) {
+        Long seriesId = card.getSeriesId();
+        productSeriesRepository.findByIdForUpdate(seriesId.intValue());
+
+        long unfinishedBefore = seriesCardRepository.countUnfinishedCardsWithImages(seriesId);
+        seriesCardRepository.saveAndFlush(card);
+        long unfinishedAfter = seriesCardRepository.countUnfinishedCardsWithImages(seriesId);
+
+        log.debug("Card {} finished, {} cards of series {} left", card.getId(), unfinishedAfter, seriesId);
+        return unfinishedBefore > 0 && unfinishedAfter == 0;
+    }
+}
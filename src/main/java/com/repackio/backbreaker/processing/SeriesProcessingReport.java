@@ -1,15 +1,26 @@
 package com.repackio.backbreaker.processing;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.time.Duration;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Outcome of processing a series. Safe to update from multiple card workers at once.
+ */
 public class SeriesProcessingReport {
 
     private final Long seriesId;
     private final int totalCards;
-    private int processedCards = 0;
-    private final List<CardProcessingFailure> failures = new ArrayList<>();
+    private final AtomicInteger processedCards = new AtomicInteger();
+    private final Queue<CardProcessingFailure> failures = new ConcurrentLinkedQueue<>();
+    private final Queue<Long> degradedCards = new ConcurrentLinkedQueue<>();
+
+    private final long startedNanos = System.nanoTime();
+    private final LongAdder cardNanos = new LongAdder();
+    private volatile long completedNanos = -1;
 
     public SeriesProcessingReport(Long seriesId, int totalCards) {
         this.seriesId = seriesId;
@@ -17,13 +28,35 @@ public class SeriesProcessingReport {
     }
 
     public void markSuccess() {
-        this.processedCards++;
+        processedCards.incrementAndGet();
     }
 
     public void markFailure(Long cardId, String reason) {
         failures.add(new CardProcessingFailure(cardId, reason));
     }
 
+    /**
+     * Records a successful card that was processed without Bedrock (see
+     * {@link CardProcessingContext#isDegraded()}).
+     */
+    public void markDegraded(Long cardId) {
+        degradedCards.add(cardId);
+    }
+
+    /**
+     * Adds the time a single card spent in the handler chain, successful or not.
+     */
+    public void recordCardTime(long elapsedNanos) {
+        cardNanos.add(elapsedNanos);
+    }
+
+    /**
+     * Marks the end of the series run, freezing the wall-clock time.
+     */
+    public void complete() {
+        completedNanos = System.nanoTime();
+    }
+
     public Long getSeriesId() {
         return seriesId;
     }
@@ -33,10 +66,40 @@ public class SeriesProcessingReport {
     }
 
     public int getProcessedCards() {
-        return processedCards;
+        return processedCards.get();
     }
 
     public List<CardProcessingFailure> getFailures() {
-        return Collections.unmodifiableList(failures);
+        return List.copyOf(failures);
+    }
+
+    /**
+     * IDs of the successful cards that should be reprocessed once Bedrock is available again.
+     */
+    public List<Long> getDegradedCards() {
+        return List.copyOf(degradedCards);
+    }
+
+    /**
+     * Elapsed time between the start of the run and {@link #complete()} (or now, if still running).
+     */
+    public Duration getWallClockTime() {
+        long end = completedNanos >= 0 ? completedNanos : System.nanoTime();
+        return Duration.ofNanos(end - startedNanos);
+    }
+
+    /**
+     * Sum of the time spent on every card, i.e. how long the run would take sequentially.
+     */
+    public Duration getCumulativeCardTime() {
+        return Duration.ofNanos(cardNanos.sum());
+    }
+
+    /**
+     * Ratio of cumulative card time to wall-clock time; 1.0 means no gain from parallelism.
+     */
+    public double getSpeedup() {
+        long wallNanos = getWallClockTime().toNanos();
+        return wallNanos <= 0 ? 1.0 : (double) cardNanos.sum() / wallNanos;
     }
 }
@@ -0,0 +1,55 @@
+package com.repackio.backbreaker.processing;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executor whose tasks run on the thread that {@linkplain #await awaits} the result they lead to.
+ * <p>
+ * CPU work continued from an async call, such as cropping once a Bedrock detection arrives, then
+ * runs on the card or side worker that waits for it, and so stays within the limits of
+ * {@link CardProcessingExecutor} instead of landing on the common pool or an SDK I/O thread.
+ * Handing it to those pools instead could deadlock: their threads would all be waiting for
+ * continuations queued behind them. One instance serves one wait.
+ */
+public final class WaitingThreadExecutor implements Executor {
+
+    private static final Runnable WAKE_UP = () -> {
+    };
+
+    private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+
+    @Override
+    public void execute(Runnable task) {
+        tasks.add(task);
+    }
+
+    /**
+     * Runs the tasks submitted to this executor until {@code future} completes.
+     *
+     * @param timeoutNanos Longest time to wait; {@code Long.MAX_VALUE} waits indefinitely
+     * @throws TimeoutException if the future has not completed in time
+     */
+    public <T> T await(CompletableFuture<T> future, long timeoutNanos)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        // Wake up if the future completes without a task of ours, e.g. when it is cancelled
+        future.whenComplete((value, error) -> tasks.add(WAKE_UP));
+        long start = System.nanoTime();
+        while (!future.isDone()) {
+            long remaining = timeoutNanos - (System.nanoTime() - start);
+            if (remaining <= 0) {
+                throw new TimeoutException();
+            }
+            Runnable task = tasks.poll(remaining, TimeUnit.NANOSECONDS);
+            if (task != null) {
+                task.run();
+            }
+        }
+        return future.get();
+    }
+}
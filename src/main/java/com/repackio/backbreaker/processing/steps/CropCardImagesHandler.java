@@ -1,31 +1,93 @@
 package com.repackio.backbreaker.processing.steps;
 
+import com.repackio.backbreaker.aws.dto.CroppedCard;
+import com.repackio.backbreaker.aws.dto.CroppedCardPair;
 import com.repackio.backbreaker.aws.services.ImageCropService;
+import com.repackio.backbreaker.processing.CardDeadline;
 import com.repackio.backbreaker.processing.CardProcessingContext;
-import com.repackio.backbreaker.processing.CardProcessingHandler;
+import com.repackio.backbreaker.processing.CardSide;
+import com.repackio.backbreaker.processing.CardSideHandler;
+import com.repackio.backbreaker.processing.WaitingThreadExecutor;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
-import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 
 @Component
 @Order(30)
 @RequiredArgsConstructor
 @ConditionalOnBean(ImageCropService.class)
-public class CropCardImagesHandler implements CardProcessingHandler {
+public class CropCardImagesHandler implements CardSideHandler {
 
     private final ImageCropService imageCropService;
 
+    /**
+     * When enabled, both sides are analyzed in a single Bedrock request,
+     * so this step waits for both downloads instead of running per side.
+     */
+    @Value("${bedrock.crop.paired:false}")
+    private boolean pairedAnalysis;
+
+    @Override
+    public boolean runsPerSide() {
+        return !pairedAnalysis;
+    }
+
+    @Override
+    public void handle(CardProcessingContext context) throws Exception {
+        if (!pairedAnalysis) {
+            CardSideHandler.super.handle(context);
+            return;
+        }
+        WaitingThreadExecutor cropExecutor = new WaitingThreadExecutor();
+        CroppedCardPair cropped = await(cropExecutor, imageCropService.cropCardPairAsync(
+                context.getOriginal(CardSide.FRONT), context.getOriginalEncoded(CardSide.FRONT),
+                context.getOriginal(CardSide.BACK), context.getOriginalEncoded(CardSide.BACK), cropExecutor),
+                context.getDeadline(), "crop of both sides", "Failed to process card images with Bedrock");
+        context.setProcessed(CardSide.FRONT, cropped.front());
+        context.setProcessed(CardSide.BACK, cropped.back());
+        if (cropped.degraded()) {
+            context.markDegraded();
+        }
+    }
+
     @Override
-    public void handle(CardProcessingContext context) {
+    public void handle(CardProcessingContext context, CardSide side) throws Exception {
+        // cropCard handles both cropping and orientation detection via Bedrock Claude Sonnet
+        WaitingThreadExecutor cropExecutor = new WaitingThreadExecutor();
+        CroppedCard cropped = await(cropExecutor,
+                imageCropService.cropCardAsync(context.getOriginal(side), context.getOriginalEncoded(side), cropExecutor),
+                context.getDeadline(), "crop of the " + side.label() + " image",
+                "Failed to process card " + side.label() + " image with Bedrock");
+        context.setProcessed(side, cropped.image());
+        if (cropped.degraded()) {
+            context.markDegraded();
+        }
+    }
+
+    /**
+     * Waits for an async crop. The Bedrock call itself runs on the async client, so only this
+     * worker waits, not an HTTP connection thread; the crop that follows runs on this worker too
+     * (see {@link WaitingThreadExecutor}). If the worker is interrupted (e.g. the other side of
+     * the card failed) or the card's deadline passes, the in-flight request is cancelled.
+     */
+    private static <T> T await(WaitingThreadExecutor cropExecutor, CompletableFuture<T> future, CardDeadline deadline,
+                               String step, String failureMessage) throws InterruptedException {
         try {
-            // cropCard handles both cropping and orientation detection via Bedrock Claude Sonnet
-            context.setFrontProcessed(imageCropService.cropCard(context.getFrontOriginal()));
-            context.setBackProcessed(imageCropService.cropCard(context.getBackOriginal()));
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to process card images with Bedrock", e);
+            return cropExecutor.await(future, deadline.remainingNanos());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw e;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw deadline.exceeded(step);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(failureMessage, e.getCause());
         }
     }
 }
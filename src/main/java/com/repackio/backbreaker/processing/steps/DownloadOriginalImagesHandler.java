@@ -1,8 +1,13 @@
 package com.repackio.backbreaker.processing.steps;
 
 import com.repackio.backbreaker.aws.services.S3ImageService;
+import com.repackio.backbreaker.image.EncodedImage;
+import com.repackio.backbreaker.image.ImageCodec;
+import com.repackio.backbreaker.processing.CardDeadline;
 import com.repackio.backbreaker.processing.CardProcessingContext;
-import com.repackio.backbreaker.processing.CardProcessingHandler;
+import com.repackio.backbreaker.processing.CardProcessingProperties;
+import com.repackio.backbreaker.processing.CardSide;
+import com.repackio.backbreaker.processing.CardSideHandler;
 import com.repackio.backbreaker.processing.S3Location;
 import com.repackio.backbreaker.processing.S3LocationResolver;
 import lombok.RequiredArgsConstructor;
@@ -13,24 +18,31 @@ import org.springframework.stereotype.Component;
 @Component
 @Order(20)
 @RequiredArgsConstructor
-public class DownloadOriginalImagesHandler implements CardProcessingHandler {
+public class DownloadOriginalImagesHandler implements CardSideHandler {
 
     private final S3ImageService s3ImageService;
     private final S3LocationResolver locationResolver;
+    private final CardProcessingProperties properties;
 
     @Value("${aws.s3.uploadsBucket}")
     private String uploadsBucket;
 
     @Override
-    public void handle(CardProcessingContext context) throws Exception {
-        S3Location frontLocation = locationResolver.resolve(
-                context.getCard().getFrontImgUrl(), uploadsBucket);
-        S3Location backLocation = locationResolver.resolve(
-                context.getCard().getBackImgUrl(), uploadsBucket);
-
-        context.setFrontOriginalLocation(frontLocation);
-        context.setBackOriginalLocation(backLocation);
-        context.setFrontOriginal(s3ImageService.downloadImage(frontLocation.bucket(), frontLocation.key()));
-        context.setBackOriginal(s3ImageService.downloadImage(backLocation.bucket(), backLocation.key()));
+    public void handle(CardProcessingContext context, CardSide side) throws Exception {
+        S3Location location = locationResolver.resolve(context.getOriginalUrl(side), uploadsBucket);
+
+        context.setOriginalLocation(side, location);
+
+        // Keep the uploaded bytes so they can be sent to Bedrock without re-encoding
+        CardDeadline deadline = context.getDeadline();
+        String step = "download of the " + side.label() + " image";
+        EncodedImage original = s3ImageService.downloadEncodedImage(location.bucket(), location.key(),
+                deadline.timeout(properties.getS3AttemptTimeout(), step), deadline.timeout(null, step));
+        context.setOriginalEncoded(side, original);
+
+        // In two-phase mode only a preview is decoded here; the crop step decodes the card region
+        context.setOriginal(side, properties.isTwoPhaseDecode()
+                ? ImageCodec.decodeSubsampled(original, properties.getPreviewMaxDimension())
+                : ImageCodec.decode(original));
     }
 }
@@ -19,10 +19,21 @@ public class MarkProcessingCompleteHandler implements CardProcessingHandler {
 
     @Override
     public void handle(CardProcessingContext context) {
-        CardProcessingStatus doneStatus = statusRepository.findByCode("done")
-                .orElseThrow(() -> new IllegalStateException("Done status not configured"));
+        CardProcessingStatus status = context.isDegraded() ? degradedStatus() : doneStatus();
 
-        context.getCard().setProcessingStatus(doneStatus);
+        context.getCard().setProcessingStatus(status);
         context.getCard().setProcessedAt(Instant.now());
     }
+
+    /**
+     * Degraded cards were cropped without Bedrock; their status lets a later pass find and redo them.
+     */
+    private CardProcessingStatus degradedStatus() {
+        return statusRepository.findOrCreateByCode("degraded");
+    }
+
+    private CardProcessingStatus doneStatus() {
+        return statusRepository.findByCode("done")
+                .orElseThrow(() -> new IllegalStateException("Status 'done' not configured"));
+    }
 }
@@ -2,8 +2,12 @@ package com.repackio.backbreaker.processing.steps;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.repackio.backbreaker.aws.services.S3ImageService;
+import com.repackio.backbreaker.models.SeriesCard;
+import com.repackio.backbreaker.processing.CardDeadline;
 import com.repackio.backbreaker.processing.CardProcessingContext;
-import com.repackio.backbreaker.processing.CardProcessingHandler;
+import com.repackio.backbreaker.processing.CardProcessingProperties;
+import com.repackio.backbreaker.processing.CardSide;
+import com.repackio.backbreaker.processing.CardSideHandler;
 import com.repackio.backbreaker.processing.S3Location;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
@@ -13,41 +17,42 @@ import org.springframework.stereotype.Component;
 @Component
 @Order(40)
 @RequiredArgsConstructor
-public class UploadProcessedImagesHandler implements CardProcessingHandler {
+public class UploadProcessedImagesHandler implements CardSideHandler {
 
     private final S3ImageService s3ImageService;
     private final ObjectMapper objectMapper;
+    private final CardProcessingProperties properties;
 
     @Value("${aws.s3.processedBucket}")
     private String processedBucket;
 
     @Override
-    public void handle(CardProcessingContext context) throws Exception {
+    public void handle(CardProcessingContext context, CardSide side) throws Exception {
         String baseKey = "processed/series/" + context.getSeries().getId() +
                 "/cards/" + context.getCard().getId();
 
-        S3Location frontLocation = new S3Location(processedBucket, baseKey + "/front_cropped.jpg");
-        S3Location backLocation = new S3Location(processedBucket, baseKey + "/back_cropped.jpg");
-
-        context.setFrontProcessedLocation(frontLocation);
-        context.setBackProcessedLocation(backLocation);
-
-        s3ImageService.uploadImage(frontLocation.bucket(), frontLocation.key(),
-                fallbackImage(context.getFrontProcessed(), context.getFrontOriginal()));
-        s3ImageService.uploadImage(backLocation.bucket(), backLocation.key(),
-                fallbackImage(context.getBackProcessed(), context.getBackOriginal()));
-
-        String frontUrl = "s3://" + frontLocation.bucket() + "/" + frontLocation.key();
-        String backUrl = "s3://" + backLocation.bucket() + "/" + backLocation.key();
-
-        context.getCard().setProcessedFrontImgUrl(frontUrl);
-        context.getCard().setProcessedBackImgUrl(backUrl);
-        context.getCard().setFrontScanResults(objectMapper.createObjectNode()
-                .put("processed_image_url", frontUrl)
-                .toString());
-        context.getCard().setBackScanResults(objectMapper.createObjectNode()
-                .put("processed_image_url", backUrl)
-                .toString());
+        S3Location location = new S3Location(processedBucket, baseKey + "/" + side.label() + "_cropped.jpg");
+        context.setProcessedLocation(side, location);
+
+        CardDeadline deadline = context.getDeadline();
+        String step = "upload of the " + side.label() + " image";
+        s3ImageService.uploadImage(location.bucket(), location.key(),
+                fallbackImage(context.getProcessed(side), context.getOriginal(side)),
+                deadline.timeout(properties.getS3AttemptTimeout(), step), deadline.timeout(null, step));
+
+        String url = "s3://" + location.bucket() + "/" + location.key();
+        String scanResults = objectMapper.createObjectNode()
+                .put("processed_image_url", url)
+                .toString();
+
+        SeriesCard card = context.getCard();
+        if (side == CardSide.FRONT) {
+            card.setProcessedFrontImgUrl(url);
+            card.setFrontScanResults(scanResults);
+        } else {
+            card.setProcessedBackImgUrl(url);
+            card.setBackScanResults(scanResults);
+        }
     }
 
     private java.awt.image.BufferedImage fallbackImage(java.awt.image.BufferedImage preferred,
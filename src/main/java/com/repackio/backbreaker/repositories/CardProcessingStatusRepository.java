@@ -1,6 +1,7 @@
 package com.repackio.backbreaker.repositories;
 
 import com.repackio.backbreaker.models.CardProcessingStatus;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.Optional;
@@ -8,4 +9,19 @@ import java.util.Optional;
 public interface CardProcessingStatusRepository extends JpaRepository<CardProcessingStatus, Long> {
 
     Optional<CardProcessingStatus> findByCode(String code);
+
+    /**
+     * The status with this code, created on first use. For statuses introduced after the table
+     * was seeded (degraded, error), which nothing else provides.
+     */
+    default CardProcessingStatus findOrCreateByCode(String code) {
+        return findByCode(code).orElseGet(() -> {
+            try {
+                return saveAndFlush(new CardProcessingStatus(code));
+            } catch (DataIntegrityViolationException e) {
+                // Created concurrently by another worker or instance
+                return findByCode(code).orElseThrow(() -> e);
+            }
+        });
+    }
 }
@@ -1,12 +1,16 @@
 package com.repackio.backbreaker.repositories;
 
 import com.repackio.backbreaker.models.ProductSeries;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Optional;
+
 @Repository
 public interface ProductSeriesRepository extends JpaRepository<ProductSeries, Integer> {
 
@@ -23,4 +27,11 @@ public interface ProductSeriesRepository extends JpaRepository<ProductSeries, In
             nativeQuery = true
     )
     int finalizeSeriesById(Long id);
+
+    /**
+     * Loads a series and locks its row until the surrounding transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ProductSeries s WHERE s.id = :id")
+    Optional<ProductSeries> findByIdForUpdate(Integer id);
 }
@@ -2,10 +2,57 @@ package com.repackio.backbreaker.repositories;
 
 import com.repackio.backbreaker.models.SeriesCard;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface SeriesCardRepository extends JpaRepository<SeriesCard, Long> {
 
     List<SeriesCard> findBySeriesIdAndFrontImgUrlIsNotNullAndBackImgUrlIsNotNull(Long seriesId);
+
+    /**
+     * Sets the processing status of every card of a series that has both images, in one statement.
+     *
+     * @return The number of cards updated
+     */
+    @Modifying
+    @Transactional
+    @Query(
+            value = "UPDATE series_cards " +
+                    "SET processing_status = :statusId " +
+                    "WHERE series_id = :seriesId " +
+                    "AND front_img_url IS NOT NULL AND back_img_url IS NOT NULL",
+            nativeQuery = true
+    )
+    int updateProcessingStatusOfCardsWithImages(Long seriesId, Long statusId);
+
+    /**
+     * Sets the processing status of the given cards, in one statement.
+     *
+     * @return The number of cards updated
+     */
+    @Modifying
+    @Transactional
+    @Query(
+            value = "UPDATE series_cards SET processing_status = :statusId WHERE id IN (:cardIds)",
+            nativeQuery = true
+    )
+    int updateProcessingStatusOfCards(Collection<Long> cardIds, Long statusId);
+
+    /**
+     * Counts the cards of a series that have both images and are not finished yet
+     * (done, degraded or error).
+     */
+    @Query(
+            value = "SELECT COUNT(*) FROM series_cards c " +
+                    "LEFT JOIN card_processing_status s ON s.id = c.processing_status " +
+                    "WHERE c.series_id = :seriesId " +
+                    "AND c.front_img_url IS NOT NULL AND c.back_img_url IS NOT NULL " +
+                    "AND (s.code IS NULL OR s.code NOT IN ('done', 'degraded', 'error'))",
+            nativeQuery = true
+    )
+    long countUnfinishedCardsWithImages(Long seriesId);
 }
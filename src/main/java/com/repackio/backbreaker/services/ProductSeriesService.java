@@ -1,6 +1,7 @@
 package com.repackio.backbreaker.services;
 
 import com.repackio.backbreaker.models.ProductSeries;
+import com.repackio.backbreaker.processing.CardProcessingProperties;
 import com.repackio.backbreaker.processing.SeriesCardProcessingService;
 import com.repackio.backbreaker.processing.SeriesProcessingReport;
 import com.repackio.backbreaker.repositories.ProductSeriesRepository;
@@ -8,7 +9,6 @@ import jakarta.persistence.EntityNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class ProductSeriesService {
@@ -17,14 +17,26 @@ public class ProductSeriesService {
 
     private final ProductSeriesRepository repo;
     private final SeriesCardProcessingService processingService;
+    private final SeriesCardService seriesCardService;
+    private final CardProcessingProperties processingProperties;
 
     public ProductSeriesService(ProductSeriesRepository repo,
-                                SeriesCardProcessingService processingService) {
+                                SeriesCardProcessingService processingService,
+                                SeriesCardService seriesCardService,
+                                CardProcessingProperties processingProperties) {
         this.repo = repo;
         this.processingService = processingService;
+        this.seriesCardService = seriesCardService;
+        this.processingProperties = processingProperties;
     }
 
-    @Transactional
+    /**
+     * Finalizes a series and starts processing its cards, either on this instance or, in queue
+     * execution mode, by enqueueing them for the workers of every instance. Not transactional: the
+     * finalize is committed before cards are enqueued, and no transaction is held open meanwhile.
+     * If some cards cannot be enqueued, the series stays finalized, those cards are marked as
+     * failed and the exception is rethrown.
+     */
     public SeriesFinalizeResult finalizeSeries(Long id) {
         log.debug("Finalizing series id={}", id);
         ProductSeries series = repo.findById(id.intValue())
@@ -38,8 +50,12 @@ public class ProductSeriesService {
         if (!finalized) {
             log.warn("Finalize request for series id={} did not update any rows", id);
         } else {
-            log.info("Series id={} finalized", id);
-            processingService.processSeriesAsync(series.getId().longValue());
+            log.info("Series id={} finalized, processing mode {}", id, processingProperties.getExecutionMode());
+            if (processingProperties.getExecutionMode() == CardProcessingProperties.ExecutionMode.QUEUE) {
+                seriesCardService.processAllCardsInSeries(series.getId().longValue());
+            } else {
+                processingService.processSeriesAsync(series.getId().longValue());
+            }
             processingStarted = true;
         }
 
@@ -2,6 +2,7 @@ package com.repackio.backbreaker.services;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.repackio.backbreaker.aws.dto.CardProcessingMessage;
+import com.repackio.backbreaker.aws.services.CardMessagesNotSentException;
 import com.repackio.backbreaker.aws.services.SqsProducerService;
 import com.repackio.backbreaker.models.CardProcessingStatus;
 import com.repackio.backbreaker.models.SeriesCard;
@@ -9,12 +10,13 @@ import com.repackio.backbreaker.repositories.CardProcessingStatusRepository;
 import com.repackio.backbreaker.repositories.ProductSeriesRepository;
 import com.repackio.backbreaker.repositories.SeriesCardRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.net.URI;
 import java.util.List;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class SeriesCardService {
@@ -25,7 +27,15 @@ public class SeriesCardService {
     private final ObjectMapper objectMapper;
     private final ProductSeriesRepository repo;
 
-    @Transactional
+    /**
+     * Marks every card of the series that has both images as queued and enqueues them for
+     * processing. The status is set with one statement and the messages are sent in parallel
+     * batches, so no transaction is held open while talking to SQS. Cards whose message could
+     * not be sent are marked as failed before the exception is rethrown, so they do not stay
+     * queued without a message and keep their series from ever completing.
+     *
+     * @throws CardMessagesNotSentException if some cards could not be enqueued
+     */
     public void processAllCardsInSeries(Long seriesId) {
 
         // Statuses
@@ -34,16 +44,27 @@ public class SeriesCardService {
 
         List<SeriesCard> cards = seriesCardRepository
                 .findBySeriesIdAndFrontImgUrlIsNotNullAndBackImgUrlIsNotNull(seriesId);
+        if (cards.isEmpty()) {
+            return;
+        }
 
-        for (SeriesCard card : cards) {
-            // set status to queued
-            card.setProcessingStatus(queuedStatus);
-            seriesCardRepository.save(card);
+        // Queued before the messages go out, so a worker's "processing" is never overwritten
+        int queued = seriesCardRepository.updateProcessingStatusOfCardsWithImages(seriesId, queuedStatus.getId());
 
-            CardProcessingMessage msg = buildMessageFromCard(card);
-            sqsProducerService.sendCardMessage(msg);
+        List<CardProcessingMessage> messages = cards.stream()
+                .map(this::buildMessageFromCard)
+                .toList();
+        long start = System.nanoTime();
+        try {
+            sqsProducerService.sendCardMessages(messages);
+        } catch (CardMessagesNotSentException ex) {
+            CardProcessingStatus errorStatus = statusRepository.findOrCreateByCode("error");
+            int failed = seriesCardRepository.updateProcessingStatusOfCards(ex.getCardIds(), errorStatus.getId());
+            log.error("Series {}: marked {} cards that could not be enqueued as failed", seriesId, failed);
+            throw ex;
         }
-
+        log.info("Series {}: queued {} cards, enqueued {} messages in {} ms",
+                seriesId, queued, messages.size(), (System.nanoTime() - start) / 1_000_000);
     }
 
     /**
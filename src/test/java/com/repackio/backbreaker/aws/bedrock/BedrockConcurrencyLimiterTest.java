@@ -0,0 +1,60 @@
+package com.repackio.backbreaker.aws.bedrock;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BedrockConcurrencyLimiterTest {
+
+    private static final String MODEL = "model";
+
+    private BedrockConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        BedrockModelConfig config = new BedrockModelConfig();
+        config.getLimiter().setInitialLimit(1);
+        config.getLimiter().setMaxLimit(1);
+        config.getLimiter().setAcquireTimeout(Duration.ofMillis(200));
+        limiter = new BedrockConcurrencyLimiter(config, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void queuedAcquireTimesOut() {
+        limiter.acquire(MODEL, null).join();
+        CompletableFuture<BedrockConcurrencyLimiter.Permit> queued = limiter.acquire(MODEL, null);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(BedrockThrottledException.class, error.getCause());
+    }
+
+    @Test
+    void blockingAcquireTimesOut() {
+        limiter.acquire(MODEL, null).join();
+        assertThrows(BedrockThrottledException.class, () -> limiter.acquireBlocking(MODEL, null));
+    }
+
+    @Test
+    void releasedSlotSkipsCancelledAndTimedOutWaiters() throws Exception {
+        BedrockConcurrencyLimiter.Permit held = limiter.acquire(MODEL, null).join();
+        CompletableFuture<BedrockConcurrencyLimiter.Permit> cancelled = limiter.acquire(MODEL, null);
+        CompletableFuture<BedrockConcurrencyLimiter.Permit> timedOut = limiter.acquire(MODEL, null);
+        cancelled.cancel(false);
+        assertThrows(ExecutionException.class, () -> timedOut.get(5, TimeUnit.SECONDS));
+
+        CompletableFuture<BedrockConcurrencyLimiter.Permit> waiting = limiter.acquire(MODEL, null);
+        held.release(BedrockConcurrencyLimiter.Outcome.IGNORED);
+        assertTrue(waiting.isDone());
+        assertFalse(waiting.isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,140 @@
+package com.repackio.backbreaker.aws.bedrock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.repackio.backbreaker.image.EncodedImage;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import software.amazon.awssdk.core.SdkBytes;
+
+import java.lang.management.ManagementFactory;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares bytes allocated per request body between the streaming builder and the previous
+ * base64-string / JSON-tree / String approach, for a front+back pair of 3 MB JPEGs.
+ * <p>
+ * Run with {@code mvn test -Dbenchmark=true -Dtest=BedrockRequestBuilderBenchmark}.
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BedrockRequestBuilderBenchmark {
+
+    private static final int IMAGE_BYTES = 3 * 1024 * 1024;
+    private static final int WARMUP = 20;
+    private static final int ITERATIONS = 50;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BedrockRequestBuilder builder = new BedrockRequestBuilder(objectMapper);
+
+    @Test
+    void streamingBodyAllocatesLessThanTreeBody() throws Exception {
+        Random random = new Random(42);
+        byte[][] bytes = new byte[2][IMAGE_BYTES];
+        random.nextBytes(bytes[0]);
+        random.nextBytes(bytes[1]);
+        EncodedImage[] images = {
+                new EncodedImage(bytes[0], "image/jpeg", 4032, 3024),
+                new EncodedImage(bytes[1], "image/jpeg", 4032, 3024)};
+        String prompt = "Analyze the card. ".repeat(200);
+
+        for (BedrockModelProvider provider : new BedrockModelProvider[]{
+                BedrockModelProvider.ANTHROPIC, BedrockModelProvider.META, BedrockModelProvider.AMAZON}) {
+            EncodedImage[] payload = provider == BedrockModelProvider.AMAZON ? new EncodedImage[]{images[0]} : images;
+            assertEquals(objectMapper.readTree(legacyBody(provider, payload, prompt).asByteArray()),
+                    objectMapper.readTree(builder.buildImageRequest(provider, payload, prompt, 4096, 0.0)),
+                    "Body mismatch for " + provider);
+        }
+
+        long streaming = allocatedPerIteration(() ->
+                SdkBytes.fromByteArrayUnsafe(builder.buildImageRequest(
+                        BedrockModelProvider.ANTHROPIC, images, prompt, 4096, 0.0)));
+        long legacy = allocatedPerIteration(() -> legacyBody(BedrockModelProvider.ANTHROPIC, images, prompt));
+
+        long bodySize = builder.buildImageRequest(BedrockModelProvider.ANTHROPIC, images, prompt, 4096, 0.0).length;
+        System.out.printf("Request body: %,d bytes%n", bodySize);
+        System.out.printf("Streaming builder: %,d bytes allocated per request (%.2fx body)%n",
+                streaming, (double) streaming / bodySize);
+        System.out.printf("Tree builder:      %,d bytes allocated per request (%.2fx body)%n",
+                legacy, (double) legacy / bodySize);
+
+        assertTrue(streaming < legacy / 2,
+                "Streaming builder should allocate well under half of the tree builder");
+    }
+
+    private long allocatedPerIteration(Body body) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        for (int i = 0; i < WARMUP; i++) {
+            body.build();
+        }
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            body.build();
+        }
+        return (threads.getThreadAllocatedBytes(threadId) - before) / ITERATIONS;
+    }
+
+    /**
+     * The request body as it was built before streaming: base64 strings in a JSON tree,
+     * serialized to a String and re-encoded to UTF-8 bytes.
+     */
+    private SdkBytes legacyBody(BedrockModelProvider provider, EncodedImage[] images, String prompt) throws Exception {
+        String[] base64Images = new String[images.length];
+        for (int i = 0; i < images.length; i++) {
+            base64Images[i] = Base64.getEncoder().encodeToString(images[i].data());
+        }
+
+        ObjectNode root = objectMapper.createObjectNode();
+        switch (provider) {
+            case ANTHROPIC -> {
+                root.put("anthropic_version", "bedrock-2023-05-31");
+                root.put("max_tokens", 4096);
+                root.put("temperature", 0.0);
+                ObjectNode message = root.putArray("messages").addObject();
+                message.put("role", "user");
+                ArrayNode content = message.putArray("content");
+                for (String base64Image : base64Images) {
+                    ObjectNode image = content.addObject();
+                    image.put("type", "image");
+                    ObjectNode source = image.putObject("source");
+                    source.put("type", "base64");
+                    source.put("media_type", "image/jpeg");
+                    source.put("data", base64Image);
+                }
+                content.addObject().put("type", "text").put("text", prompt);
+            }
+            case META -> {
+                root.put("prompt", prompt);
+                root.put("max_gen_len", 4096);
+                root.put("temperature", 0.0);
+                ArrayNode imagesArray = root.putArray("images");
+                for (String base64Image : base64Images) {
+                    imagesArray.add(base64Image);
+                }
+            }
+            case AMAZON -> {
+                ObjectNode config = root.putObject("textGenerationConfig");
+                config.put("maxTokenCount", 4096);
+                config.put("temperature", 0.0);
+                root.put("inputText", prompt);
+                root.put("inputImage", base64Images[0]);
+            }
+            default -> throw new IllegalArgumentException(provider.name());
+        }
+        return SdkBytes.fromUtf8String(objectMapper.writeValueAsString(root));
+    }
+
+    @FunctionalInterface
+    private interface Body {
+        Object build() throws Exception;
+    }
+}
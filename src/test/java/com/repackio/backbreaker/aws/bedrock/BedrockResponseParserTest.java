@@ -0,0 +1,47 @@
+package com.repackio.backbreaker.aws.bedrock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BedrockResponseParserTest {
+
+    private final BedrockResponseParser parser = new BedrockResponseParser(new ObjectMapper());
+
+    @Test
+    void readsClaudeUsageAfterTheContent() {
+        String body = """
+                {"id":"msg_1","content":[{"type":"tool_use","name":"answer",
+                 "input":{"usage":{"input_tokens":999},"boundingBox":{"left":0.1}}}],
+                 "stop_reason":"tool_use",
+                 "usage":{"input_tokens":12,"cache_creation_input_tokens":3,"cache_read_input_tokens":1500,
+                  "output_tokens":40,"server_tool_use":{"web_search_requests":0}}}""";
+
+        assertEquals(new BedrockUsage(12, 40, 1500, 3), parser.parseUsage(BedrockModelProvider.ANTHROPIC, body));
+    }
+
+    @Test
+    void readsLlamaUsage() {
+        String body = """
+                {"generation":"{\\"rotationDegrees\\":90}","prompt_token_count":800,
+                 "generation_token_count":55,"stop_reason":"stop"}""";
+
+        assertEquals(new BedrockUsage(800, 55, 0, 0), parser.parseUsage(BedrockModelProvider.META, body));
+    }
+
+    @Test
+    void readsTitanUsageFromTheFirstResult() {
+        String body = """
+                {"inputTextTokenCount":300,"results":[{"outputText":"{}","tokenCount":20,"completionReason":"FINISH"},
+                 {"tokenCount":7}]}""";
+
+        assertEquals(new BedrockUsage(300, 20, 0, 0), parser.parseUsage(BedrockModelProvider.AMAZON, body));
+    }
+
+    @Test
+    void responseWithoutUsageGivesNone() {
+        assertEquals(BedrockUsage.NONE, parser.parseUsage(BedrockModelProvider.ANTHROPIC, "{\"content\":[]}"));
+        assertEquals(BedrockUsage.NONE, parser.parseUsage(BedrockModelProvider.ANTHROPIC, "not json"));
+    }
+}
@@ -0,0 +1,105 @@
+package com.repackio.backbreaker.aws.bedrock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BedrockResultCacheTest {
+
+    private BedrockResultCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        cache = new BedrockResultCache(new BedrockModelConfig(), new ObjectMapper(), new SimpleMeterRegistry());
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void coalescesConcurrentLoadsAndCachesTheResult() throws Exception {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> first = cache.getAsync("k", String.class, () -> load(source));
+        CompletableFuture<String> second = cache.getAsync("k", String.class, () -> load(new CompletableFuture<>()));
+
+        assertEquals(1, loads.get());
+        source.complete("result");
+        assertEquals("result", first.get(1, TimeUnit.SECONDS));
+        assertEquals("result", second.get(1, TimeUnit.SECONDS));
+
+        CompletableFuture<String> third = cache.getAsync("k", String.class, () -> load(new CompletableFuture<>()));
+        assertEquals("result", third.getNow(null));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void cancellingOneWaiterKeepsTheLoadForTheOthers() throws Exception {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> first = cache.getAsync("k", String.class, () -> load(source));
+        CompletableFuture<String> second = cache.getAsync("k", String.class, () -> load(new CompletableFuture<>()));
+
+        first.cancel(true);
+        assertFalse(source.isCancelled());
+        source.complete("result");
+        assertEquals("result", second.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void cancellingEveryWaiterCancelsTheLoad() throws Exception {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> first = cache.getAsync("k", String.class, () -> load(source));
+        CompletableFuture<String> second = cache.getAsync("k", String.class, () -> load(new CompletableFuture<>()));
+
+        first.cancel(true);
+        second.cancel(true);
+        assertTrue(source.isCancelled());
+
+        // The abandoned load is not shared with later callers
+        CompletableFuture<String> retry = cache.getAsync("k", String.class, () -> load(CompletableFuture.completedFuture("again")));
+        assertEquals("again", retry.get(1, TimeUnit.SECONDS));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void loaderThatThrowsDoesNotBlockLaterCallers() throws Exception {
+        IllegalStateException failure = new IllegalStateException("no request");
+        CompletableFuture<String> failed = cache.getAsync("k", String.class, () -> {
+            throw failure;
+        });
+        ExecutionException error = assertThrows(ExecutionException.class, () -> failed.get(1, TimeUnit.SECONDS));
+        assertSame(failure, error.getCause());
+
+        CompletableFuture<String> retry = cache.getAsync("k", String.class, () -> load(CompletableFuture.completedFuture("result")));
+        assertEquals("result", retry.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void failedLoadIsNotCached() throws Exception {
+        CompletableFuture<String> source = new CompletableFuture<>();
+        CompletableFuture<String> first = cache.getAsync("k", String.class, () -> load(source));
+        source.completeExceptionally(new RuntimeException("throttled"));
+        assertInstanceOf(RuntimeException.class,
+                assertThrows(ExecutionException.class, () -> first.get(1, TimeUnit.SECONDS)).getCause());
+
+        CompletableFuture<String> retry = cache.getAsync("k", String.class, () -> load(CompletableFuture.completedFuture("result")));
+        assertEquals("result", retry.get(1, TimeUnit.SECONDS));
+        assertEquals(2, loads.get());
+    }
+
+    private CompletableFuture<String> load(CompletableFuture<String> source) {
+        loads.incrementAndGet();
+        return source;
+    }
+}
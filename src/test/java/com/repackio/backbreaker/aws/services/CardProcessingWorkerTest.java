@@ -0,0 +1,284 @@
+package com.repackio.backbreaker.aws.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.repackio.backbreaker.aws.SqsConsumerProperties;
+import com.repackio.backbreaker.models.CardProcessingStatus;
+import com.repackio.backbreaker.models.ProductSeries;
+import com.repackio.backbreaker.models.SeriesCard;
+import com.repackio.backbreaker.processing.CardPipeline;
+import com.repackio.backbreaker.processing.CardProcessingContext;
+import com.repackio.backbreaker.processing.CardProcessingProperties;
+import com.repackio.backbreaker.processing.SeriesCompletionService;
+import com.repackio.backbreaker.repositories.CardProcessingStatusRepository;
+import com.repackio.backbreaker.repositories.ProductSeriesRepository;
+import com.repackio.backbreaker.repositories.SeriesCardRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchResponse;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.MessageSystemAttributeName;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CardProcessingWorkerTest {
+
+    private final LinkedBlockingQueue<Message> queue = new LinkedBlockingQueue<>();
+    private final List<Integer> requestedMessages = new CopyOnWriteArrayList<>();
+    private final List<List<String>> deleteBatches = new CopyOnWriteArrayList<>();
+    private final Set<String> renewed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger received = new AtomicInteger();
+
+    private SqsClient sqsClient;
+    private CardPipeline pipeline;
+    private SeriesCardRepository seriesCardRepository;
+    private CardProcessingStatusRepository statusRepository;
+    private SeriesCompletionService completionService;
+    private SqsConsumerProperties properties;
+    private CardProcessingWorker worker;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        sqsClient = mock(SqsClient.class);
+        when(sqsClient.receiveMessage(any(ReceiveMessageRequest.class))).thenAnswer(invocation -> {
+            ReceiveMessageRequest request = invocation.getArgument(0);
+            requestedMessages.add(request.maxNumberOfMessages());
+            List<Message> messages = new ArrayList<>();
+            Message first = queue.poll(20, TimeUnit.MILLISECONDS);
+            if (first != null) {
+                messages.add(first);
+                queue.drainTo(messages, request.maxNumberOfMessages() - 1);
+            }
+            received.addAndGet(messages.size());
+            return ReceiveMessageResponse.builder().messages(messages).build();
+        });
+        when(sqsClient.deleteMessageBatch(any(Consumer.class))).thenCallRealMethod();
+        when(sqsClient.deleteMessageBatch(any(DeleteMessageBatchRequest.class))).thenAnswer(invocation -> {
+            DeleteMessageBatchRequest request = invocation.getArgument(0);
+            deleteBatches.add(request.entries().stream().map(DeleteMessageBatchRequestEntry::id).toList());
+            return DeleteMessageBatchResponse.builder().build();
+        });
+        when(sqsClient.changeMessageVisibilityBatch(any(Consumer.class))).thenCallRealMethod();
+        when(sqsClient.changeMessageVisibilityBatch(any(ChangeMessageVisibilityBatchRequest.class))).thenAnswer(invocation -> {
+            ChangeMessageVisibilityBatchRequest request = invocation.getArgument(0);
+            request.entries().stream().map(ChangeMessageVisibilityBatchRequestEntry::id).forEach(renewed::add);
+            return ChangeMessageVisibilityBatchResponse.builder().build();
+        });
+
+        seriesCardRepository = mock(SeriesCardRepository.class);
+        when(seriesCardRepository.findAllById(any())).thenAnswer(invocation -> {
+            List<SeriesCard> cards = new ArrayList<>();
+            for (Long id : invocation.<Iterable<Long>>getArgument(0)) {
+                SeriesCard card = new SeriesCard();
+                ReflectionTestUtils.setField(card, "id", id);
+                card.setSeriesId(1L);
+                cards.add(card);
+            }
+            return cards;
+        });
+        ProductSeriesRepository productSeriesRepository = mock(ProductSeriesRepository.class);
+        ProductSeries series = new ProductSeries();
+        series.setId(1);
+        when(productSeriesRepository.findAllById(any())).thenReturn(List.of(series));
+
+        pipeline = mock(CardPipeline.class);
+        properties = new SqsConsumerProperties();
+        properties.setEnabled(true);
+        properties.setPollers(2);
+        properties.setWorkers(4);
+        properties.setAckMaxWait(Duration.ofMillis(100));
+        properties.setHeartbeatInterval(Duration.ofMinutes(1));
+
+        statusRepository = mock(CardProcessingStatusRepository.class);
+        completionService = mock(SeriesCompletionService.class);
+        worker = new CardProcessingWorker(sqsClient, pipeline, completionService,
+                seriesCardRepository, productSeriesRepository, new ObjectMapper(),
+                statusRepository, properties, new CardProcessingProperties(),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(worker, "queueUrl", "queue");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        worker.stop();
+    }
+
+    @Test
+    void receivesNoMoreMessagesThanThereAreIdleWorkers() throws Exception {
+        properties.setWorkers(2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        doAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            release.await();
+            running.decrementAndGet();
+            return null;
+        }).when(pipeline).process(any(CardProcessingContext.class));
+        enqueue(10);
+
+        worker.start();
+        waitFor(() -> running.get() == 2);
+        Thread.sleep(200);
+        assertEquals(2, received.get(), "messages held while both workers are busy");
+        assertTrue(requestedMessages.stream().allMatch(n -> n <= 2), "receive sizes " + requestedMessages);
+
+        release.countDown();
+        waitFor(() -> deletedIds().size() == 10);
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    void deletesProcessedMessagesInBatches() throws Exception {
+        properties.setWorkers(10);
+        enqueue(25);
+
+        worker.start();
+        waitFor(() -> deletedIds().size() == 25);
+        assertTrue(deleteBatches.stream().allMatch(batch -> batch.size() <= 10), "batch sizes");
+        assertTrue(deleteBatches.size() < 25, "expected batched deletes, got " + deleteBatches.size());
+    }
+
+    @Test
+    void renewsVisibilityOfMessagesStillBeingProcessed() throws Exception {
+        properties.setHeartbeatInterval(Duration.ofMillis(50));
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(pipeline).process(any(CardProcessingContext.class));
+        enqueue(1);
+
+        worker.start();
+        waitFor(() -> renewed.contains("m0"));
+        release.countDown();
+        waitFor(() -> deletedIds().contains("m0"));
+
+        // Nothing is renewed once the message is done
+        renewed.clear();
+        Thread.sleep(200);
+        assertTrue(renewed.isEmpty(), "renewed after completion: " + renewed);
+    }
+
+    @Test
+    void keepsPollingAfterLoadingCardsFails() throws Exception {
+        properties.setWorkers(1);
+        AtomicBoolean failOnce = new AtomicBoolean(true);
+        List<SeriesCard> card = new ArrayList<>();
+        SeriesCard seriesCard = new SeriesCard();
+        ReflectionTestUtils.setField(seriesCard, "id", 1L);
+        seriesCard.setSeriesId(1L);
+        card.add(seriesCard);
+        doAnswer(invocation -> {
+            if (failOnce.getAndSet(false)) {
+                throw new IllegalStateException("database down");
+            }
+            return card;
+        }).when(seriesCardRepository).findAllById(any());
+        queue.add(message("m0", 0L));
+
+        worker.start();
+        waitFor(() -> !failOnce.get());
+        queue.add(message("m1", 1L));
+        waitFor(() -> deletedIds().contains("m1"));
+        assertFalse(deletedIds().contains("m0"), "the failed receive is left for redelivery");
+    }
+
+    @Test
+    void deletesUnreadableMessages() throws Exception {
+        queue.add(Message.builder().messageId("bad").receiptHandle("r-bad").body("not json").build());
+
+        worker.start();
+        waitFor(() -> deletedIds().contains("bad"));
+    }
+
+    @Test
+    void marksCardFailedOnItsLastDeliveryEvenWithoutAnErrorStatusRow() throws Exception {
+        properties.setMaxReceiveCount(3);
+        doThrow(new IllegalStateException("crop failed")).when(pipeline).process(any(CardProcessingContext.class));
+        when(statusRepository.findByCode("error")).thenReturn(Optional.empty());
+        when(statusRepository.findOrCreateByCode("error")).thenCallRealMethod();
+        when(statusRepository.saveAndFlush(any(CardProcessingStatus.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        queue.add(message("early", 0L).toBuilder()
+                .attributes(Map.of(MessageSystemAttributeName.APPROXIMATE_RECEIVE_COUNT, "1"))
+                .build());
+        queue.add(message("last", 1L).toBuilder()
+                .attributes(Map.of(MessageSystemAttributeName.APPROXIMATE_RECEIVE_COUNT, "3"))
+                .build());
+
+        worker.start();
+        waitFor(() -> deletedIds().contains("last"));
+        ArgumentCaptor<SeriesCard> saved = ArgumentCaptor.forClass(SeriesCard.class);
+        verify(completionService).saveFinishedCard(saved.capture());
+        assertEquals(1L, saved.getValue().getId());
+        assertEquals("error", saved.getValue().getProcessingStatus().getCode());
+        assertFalse(deletedIds().contains("early"), "earlier deliveries are left for a retry");
+    }
+
+    private void enqueue(int count) {
+        for (long i = 0; i < count; i++) {
+            queue.add(message("m" + i, i));
+        }
+    }
+
+    private static Message message(String id, long cardId) {
+        return Message.builder()
+                .messageId(id)
+                .receiptHandle("r-" + id)
+                .body("{\"seriesId\":1,\"cardId\":" + cardId + "}")
+                .build();
+    }
+
+    private Set<String> deletedIds() {
+        Set<String> ids = ConcurrentHashMap.newKeySet();
+        deleteBatches.forEach(ids::addAll);
+        return ids;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("condition not met within 5 seconds");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
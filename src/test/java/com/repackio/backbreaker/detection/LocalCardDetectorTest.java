@@ -0,0 +1,194 @@
+package com.repackio.backbreaker.detection;
+
+import com.repackio.backbreaker.aws.dto.CardAnalysisResult;
+import com.repackio.backbreaker.image.CanvasRotation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the detector on synthetic photos the size of a two-phase decode preview: a card with
+ * artwork and text, tilted up to 20 degrees, on a striped background.
+ */
+class LocalCardDetectorTest {
+
+    /** Confidence at which the crop fallback uses a local detection (detection.local.fallback-threshold). */
+    private static final double FALLBACK_THRESHOLD = 60;
+    private static final int LONG_EDGE = 1568;
+
+    private LocalCardDetector detector;
+
+    @BeforeEach
+    void setUp() {
+        detector = new LocalCardDetector();
+        ReflectionTestUtils.setField(detector, "maxDimension", 400);
+        ReflectionTestUtils.setField(detector, "confidenceThreshold", 90.0);
+    }
+
+    @Test
+    void findsTiltedCards() {
+        Random random = new Random(7);
+        int confident = 0;
+        int trials = 30;
+        for (int trial = 0; trial < trials; trial++) {
+            double tilt = (random.nextDouble() * 2 - 1) * 20;
+            Photo photo = photo(random, trial % 3 == 0, trial % 5 == 4, tilt);
+            CardAnalysisResult result = detector.detect(photo.image);
+
+            String label = "trial " + trial + " (tilt " + Math.round(tilt) + ")";
+            assertNotNull(result, label);
+            assertCard(photo, result, label);
+            assertTrue(result.getConfidence() >= FALLBACK_THRESHOLD, label + ": confidence " + result.getConfidence());
+            if (result.getConfidence() >= detector.confidenceThreshold()) {
+                confident++;
+            }
+        }
+        assertTrue(confident >= trials * 0.8, confident + " of " + trials + " cards decided without Bedrock");
+    }
+
+    @Test
+    void turnsLandscapeCardToPortrait() {
+        Photo photo = photo(new Random(11), false, true, 0);
+        CardAnalysisResult result = detector.detect(photo.image);
+
+        assertNotNull(result);
+        assertEquals(90, result.getRotationDegrees(), 0.01);
+        assertCard(photo, result, "landscape card");
+        CanvasRotation rotation = CanvasRotation.plan(photo.image.getWidth(), photo.image.getHeight(), 90);
+        double width = result.getBoundingBox().getWidth() * rotation.width();
+        double height = result.getBoundingBox().getHeight() * rotation.height();
+        assertTrue(height > width, "portrait after rotation: " + width + "x" + height);
+    }
+
+    @Test
+    void findsNothingOnAnEmptyBackground() {
+        BufferedImage image = new BufferedImage(1200, LONG_EDGE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.BLUE, 1200, LONG_EDGE, Color.ORANGE));
+        g.fillRect(0, 0, 1200, LONG_EDGE);
+        g.dispose();
+
+        CardAnalysisResult result = detector.detect(image);
+        assertTrue(result == null || result.getConfidence() < FALLBACK_THRESHOLD);
+    }
+
+    @Test
+    void clutterStaysBelowTheFallbackThreshold() {
+        Random random = new Random(3);
+        for (int density = 1; density <= 5; density++) {
+            BufferedImage image = new BufferedImage(1200, LONG_EDGE, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = image.createGraphics();
+            g.setPaint(new GradientPaint(0, 0, Color.BLUE, 1200, LONG_EDGE, Color.ORANGE));
+            g.fillRect(0, 0, 1200, LONG_EDGE);
+            for (int i = 0; i < 60 * density; i++) {
+                g.setColor(new Color(random.nextInt()));
+                g.fillOval(random.nextInt(1200), random.nextInt(LONG_EDGE), 20 + random.nextInt(200), 20 + random.nextInt(200));
+            }
+            if (density == 5) {
+                g.setColor(Color.WHITE);
+                for (int x = 0; x < 1200; x += 9) {
+                    g.drawLine(x, 0, x, LONG_EDGE);
+                }
+            }
+            g.dispose();
+
+            CardAnalysisResult result = detector.detect(image);
+            assertTrue(result == null || result.getConfidence() < FALLBACK_THRESHOLD,
+                    "clutter " + density + ": confidence " + (result == null ? null : result.getConfidence()));
+        }
+    }
+
+    /**
+     * Checks the rotation and, on the canvas rotated by it, the bounding box of the card.
+     */
+    private static void assertCard(Photo photo, CardAnalysisResult result, String label) {
+        double expected = Math.abs(photo.tilt) < 1 ? 0 : -photo.tilt;
+        if (photo.landscape) {
+            expected += 90;
+        }
+        expected = (expected + 360) % 360;
+        double rotationError = Math.abs((result.getRotationDegrees() - expected + 540) % 360 - 180);
+        assertTrue(rotationError < 1.5, label + ": rotation " + result.getRotationDegrees() + ", expected " + expected);
+
+        int width = photo.image.getWidth();
+        int height = photo.image.getHeight();
+        CanvasRotation rotation = CanvasRotation.plan(width, height, expected);
+        Rectangle2D card = rotation.transform().createTransformedShape(photo.card).getBounds2D();
+        CardAnalysisResult.BoundingBoxDto box = result.getBoundingBox();
+        double error = Math.max(
+                Math.max(Math.abs(box.getLeft() * rotation.width() - card.getX()),
+                        Math.abs(box.getTop() * rotation.height() - card.getY())),
+                Math.max(Math.abs(box.getWidth() * rotation.width() - card.getWidth()),
+                        Math.abs(box.getHeight() * rotation.height() - card.getHeight())));
+        assertTrue(error < 0.03 * Math.max(width, height), label + ": box off by " + Math.round(error) + " px");
+    }
+
+    private static Photo photo(Random random, boolean wide, boolean landscape, double tilt) {
+        int width = wide ? LONG_EDGE : LONG_EDGE * 3 / 4;
+        int height = wide ? LONG_EDGE * 3 / 4 : LONG_EDGE;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        Color background = new Color(60 + random.nextInt(80), 50 + random.nextInt(60), 40 + random.nextInt(40));
+        g.setColor(background);
+        g.fillRect(0, 0, width, height);
+        for (int i = 0; i < 60; i++) {
+            g.setColor(new Color(Math.min(255, background.getRed() + random.nextInt(30)),
+                    background.getGreen(), background.getBlue()));
+            g.fillRect(0, random.nextInt(height), width, 2 + random.nextInt(12));
+        }
+
+        double cardWidth = 470 + random.nextInt(350);
+        double cardHeight = cardWidth * 1.4;
+        if (landscape) {
+            double swap = cardWidth;
+            cardWidth = cardHeight;
+            cardHeight = swap;
+        }
+        AffineTransform placement = new AffineTransform();
+        placement.translate(width / 2.0 + (random.nextDouble() - 0.5) * width * 0.2,
+                height / 2.0 + (random.nextDouble() - 0.5) * height * 0.2);
+        placement.rotate(Math.toRadians(tilt));
+
+        AffineTransform previous = g.getTransform();
+        g.transform(placement);
+        g.setColor(new Color(230, 230, 225));
+        g.fill(new RoundRectangle2D.Double(-cardWidth / 2, -cardHeight / 2, cardWidth, cardHeight, 16, 16));
+        g.setColor(new Color(random.nextInt(255), random.nextInt(255), random.nextInt(255)));
+        g.fillRect((int) (-cardWidth / 2 + 24), (int) (-cardHeight / 2 + 24), (int) cardWidth - 48, (int) (cardHeight * 0.7));
+        for (int i = 0; i < 20; i++) {
+            g.setColor(new Color(random.nextInt(255), random.nextInt(255), random.nextInt(255)));
+            g.fillOval((int) (-cardWidth / 2 + 24 + random.nextInt((int) cardWidth - 80)),
+                    (int) (-cardHeight / 2 + 24 + random.nextInt((int) (cardHeight * 0.6))),
+                    20 + random.nextInt(40), 20 + random.nextInt(40));
+        }
+        g.setColor(Color.BLACK);
+        g.setFont(new Font("SansSerif", Font.BOLD, 32));
+        g.drawString("PLAYER NAME", (float) (-cardWidth / 2 + 32), (float) (cardHeight / 2 - 48));
+        g.setTransform(previous);
+        g.dispose();
+
+        Rectangle2D outline = new Rectangle2D.Double(-cardWidth / 2, -cardHeight / 2, cardWidth, cardHeight);
+        return new Photo(image, placement.createTransformedShape(outline), tilt, landscape);
+    }
+
+    private record Photo(BufferedImage image, Shape card, double tilt, boolean landscape) {
+    }
+}
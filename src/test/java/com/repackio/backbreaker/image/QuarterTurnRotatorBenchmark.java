@@ -0,0 +1,103 @@
+package com.repackio.backbreaker.image;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.awt.Graphics2D;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Compares {@link QuarterTurnRotator} with a {@code Graphics2D} rotation of a 12 MP image, for a
+ * JPEG-style {@code TYPE_3BYTE_BGR} source and a PNG-style {@code TYPE_CUSTOM} one, and checks
+ * that both produce the same pixels.
+ * <p>
+ * Run with {@code mvn test -Dbenchmark=true -Dtest=QuarterTurnRotatorBenchmark}.
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class QuarterTurnRotatorBenchmark {
+
+    private static final int WIDTH = 4000;
+    private static final int HEIGHT = 3000;
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 10;
+
+    @Test
+    void rotatesThreeByteBgr() {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+        new Random(42).nextBytes(((DataBufferByte) image.getRaster().getDataBuffer()).getData());
+        compare("TYPE_3BYTE_BGR", image);
+    }
+
+    @Test
+    void rotatesCustomRgb() {
+        WritableRaster raster = Raster.createInterleavedRaster(
+                DataBuffer.TYPE_BYTE, WIDTH, HEIGHT, WIDTH * 3, 3, new int[]{0, 1, 2}, null);
+        new Random(42).nextBytes(((DataBufferByte) raster.getDataBuffer()).getData());
+        ColorModel colorModel = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB),
+                false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+        compare("TYPE_CUSTOM", new BufferedImage(colorModel, raster, false, null));
+    }
+
+    private void compare(String label, BufferedImage image) {
+        for (int turns = 1; turns <= 3; turns++) {
+            int quarterTurns = turns;
+            BufferedImage expected = graphicsRotate(image, quarterTurns);
+            BufferedImage actual = QuarterTurnRotator.rotate(image, quarterTurns);
+            assertArrayEquals(pixels(expected), pixels(actual), label + " rotated " + turns * 90 + " degrees");
+
+            double graphics = millisPerIteration(() -> graphicsRotate(image, quarterTurns));
+            double raster = millisPerIteration(() -> QuarterTurnRotator.rotate(image, quarterTurns));
+            System.out.printf("%s %d deg: Graphics2D %.1f ms, raster %.1f ms%n", label, turns * 90, graphics, raster);
+        }
+    }
+
+    /**
+     * The rotation as the crop service drew it before: a rotate-and-translate transform into a
+     * packed RGB image of the rotated size.
+     */
+    private static BufferedImage graphicsRotate(BufferedImage image, int quarterTurns) {
+        boolean swap = quarterTurns % 2 == 1;
+        int width = swap ? image.getHeight() : image.getWidth();
+        int height = swap ? image.getWidth() : image.getHeight();
+        AffineTransform transform = new AffineTransform();
+        transform.translate(width / 2.0, height / 2.0);
+        transform.quadrantRotate(quarterTurns);
+        transform.translate(-image.getWidth() / 2.0, -image.getHeight() / 2.0);
+
+        BufferedImage rotated = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = rotated.createGraphics();
+        g2d.drawImage(image, transform, null);
+        g2d.dispose();
+        return rotated;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    private static double millisPerIteration(Supplier<BufferedImage> rotation) {
+        for (int i = 0; i < WARMUP; i++) {
+            rotation.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            rotation.get();
+        }
+        return (System.nanoTime() - start) / 1e6 / ITERATIONS;
+    }
+}
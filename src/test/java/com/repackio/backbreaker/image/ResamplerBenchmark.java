@@ -0,0 +1,122 @@
+package com.repackio.backbreaker.image;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares {@link Resampler} with Java2D for shrinking a 12 MP card crop to 500x700, at a
+ * non-integer ratio like real crops: a single bilinear {@code drawImage} (fast but aliased) and
+ * {@code SCALE_AREA_AVERAGING} (the Java2D option of comparable quality). Aliasing is measured on a one-pixel checkerboard, which an
+ * alias-free filter turns into flat mid-gray, as the largest deviation from that gray.
+ * <p>
+ * Run with {@code mvn test -Dbenchmark=true -Dtest=ResamplerBenchmark}.
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ResamplerBenchmark {
+
+    private static final int WIDTH = 2900;
+    private static final int HEIGHT = 4100;
+    private static final int TARGET_WIDTH = 500;
+    private static final int TARGET_HEIGHT = 700;
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 10;
+
+    @Test
+    void resamplerIsAliasFreeAndFasterThanJava2dAreaAveraging() {
+        BufferedImage checkerboard = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) checkerboard.getRaster().getDataBuffer()).getData();
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                pixels[y * WIDTH + x] = ((x + y) & 1) == 0 ? 0xFFFFFF : 0;
+            }
+        }
+
+        int bilinearError = grayError(bilinear(checkerboard));
+        int java2dAreaError = grayError(java2dAreaAveraging(checkerboard));
+        System.out.printf("Checkerboard error: bilinear %d, Java2D area averaging %d%n",
+                bilinearError, java2dAreaError);
+        for (Resampler.Filter filter : Resampler.Filter.values()) {
+            int resampledError = grayError(Resampler.resize(checkerboard, TARGET_WIDTH, TARGET_HEIGHT, filter, false));
+            System.out.printf("Checkerboard error: %s %d%n", filter, resampledError);
+            assertTrue(resampledError <= 8, filter + " should not alias");
+        }
+        // JPEGs decode to interleaved bytes, which are read in place
+        BufferedImage decoded = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+        decoded.getGraphics().drawImage(checkerboard, 0, 0, null);
+        int decodedError = grayError(Resampler.resize(decoded, TARGET_WIDTH, TARGET_HEIGHT, Resampler.Filter.AREA, false));
+        assertTrue(decodedError <= 8, "AREA should not alias on 3BYTE_BGR");
+
+        BufferedImage noise = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        int[] noisePixels = ((DataBufferInt) noise.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < noisePixels.length; i++) {
+            noisePixels[i] = random.nextInt() & 0xFFFFFF;
+        }
+
+        double java2dArea = millisPerIteration(() -> java2dAreaAveraging(noise));
+        System.out.printf("Bilinear drawImage:      %.1f ms%n", millisPerIteration(() -> bilinear(noise)));
+        System.out.printf("Java2D area averaging:   %.1f ms%n", java2dArea);
+        for (Resampler.Filter filter : Resampler.Filter.values()) {
+            for (boolean parallel : new boolean[]{false, true}) {
+                double millis = millisPerIteration(() ->
+                        Resampler.resize(noise, TARGET_WIDTH, TARGET_HEIGHT, filter, parallel));
+                System.out.printf("Resampler %-8s %-10s %.1f ms%n", filter, parallel ? "parallel" : "sequential", millis);
+            }
+        }
+        double area = millisPerIteration(() ->
+                Resampler.resize(noise, TARGET_WIDTH, TARGET_HEIGHT, Resampler.Filter.AREA, false));
+        assertTrue(area < java2dArea, "AREA should be faster than Java2D area averaging");
+    }
+
+    private static BufferedImage bilinear(BufferedImage image) {
+        BufferedImage resized = new BufferedImage(TARGET_WIDTH, TARGET_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = resized.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(image, 0, 0, TARGET_WIDTH, TARGET_HEIGHT, null);
+        g2d.dispose();
+        return resized;
+    }
+
+    private static BufferedImage java2dAreaAveraging(BufferedImage image) {
+        Image scaled = image.getScaledInstance(TARGET_WIDTH, TARGET_HEIGHT, Image.SCALE_AREA_AVERAGING);
+        BufferedImage resized = new BufferedImage(TARGET_WIDTH, TARGET_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = resized.createGraphics();
+        g2d.drawImage(scaled, 0, 0, null);
+        g2d.dispose();
+        return resized;
+    }
+
+    private static int grayError(BufferedImage image) {
+        int error = 0;
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int green = image.getRGB(x, y) >> 8 & 0xFF;
+                error = Math.max(error, Math.abs(green * 2 - 255) / 2);
+            }
+        }
+        return error;
+    }
+
+    private static double millisPerIteration(Supplier<BufferedImage> resize) {
+        for (int i = 0; i < WARMUP; i++) {
+            resize.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            resize.get();
+        }
+        return (System.nanoTime() - start) / 1e6 / ITERATIONS;
+    }
+}
@@ -0,0 +1,55 @@
+package com.repackio.backbreaker.processing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WaitingThreadExecutorTest {
+
+    @Test
+    void runsContinuationsOnTheWaitingThread() throws Exception {
+        WaitingThreadExecutor executor = new WaitingThreadExecutor();
+        CompletableFuture<String> detection = new CompletableFuture<>();
+        CompletableFuture<Thread> crop = detection.thenApplyAsync(d -> Thread.currentThread(), executor);
+
+        CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS).execute(() -> detection.complete("box"));
+        assertSame(Thread.currentThread(), executor.await(crop, TimeUnit.SECONDS.toNanos(5)));
+    }
+
+    @Test
+    void runsExceptionalContinuationsOnTheWaitingThread() throws Exception {
+        WaitingThreadExecutor executor = new WaitingThreadExecutor();
+        CompletableFuture<String> detection = new CompletableFuture<>();
+        CompletableFuture<Thread> crop = detection
+                .thenApplyAsync(d -> Thread.currentThread(), executor)
+                .exceptionallyAsync(e -> Thread.currentThread(), executor);
+
+        CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS)
+                .execute(() -> detection.completeExceptionally(new IllegalStateException("throttled")));
+        assertSame(Thread.currentThread(), executor.await(crop, Long.MAX_VALUE));
+    }
+
+    @Test
+    void timesOut() {
+        WaitingThreadExecutor executor = new WaitingThreadExecutor();
+        CompletableFuture<String> never = new CompletableFuture<>();
+        long start = System.nanoTime();
+        assertThrows(TimeoutException.class, () -> executor.await(never, TimeUnit.MILLISECONDS.toNanos(100)));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    void returnsWhenCompletedWithoutATask() throws Exception {
+        WaitingThreadExecutor executor = new WaitingThreadExecutor();
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture.delayedExecutor(50, TimeUnit.MILLISECONDS).execute(() -> future.complete("done"));
+        assertEquals("done", executor.await(future, Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,67 @@
+package com.repackio.backbreaker.processing.steps;
+
+import com.repackio.backbreaker.models.CardProcessingStatus;
+import com.repackio.backbreaker.models.ProductSeries;
+import com.repackio.backbreaker.models.SeriesCard;
+import com.repackio.backbreaker.processing.CardProcessingContext;
+import com.repackio.backbreaker.repositories.CardProcessingStatusRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MarkProcessingCompleteHandlerTest {
+
+    private CardProcessingStatusRepository statusRepository;
+    private MarkProcessingCompleteHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        statusRepository = mock(CardProcessingStatusRepository.class);
+        when(statusRepository.findByCode("done")).thenReturn(Optional.of(new CardProcessingStatus("done")));
+        when(statusRepository.findOrCreateByCode(any())).thenCallRealMethod();
+        handler = new MarkProcessingCompleteHandler(statusRepository);
+    }
+
+    @Test
+    void marksCardDone() {
+        CardProcessingContext context = context();
+        handler.handle(context);
+
+        assertEquals("done", context.getCard().getProcessingStatus().getCode());
+        assertNotNull(context.getCard().getProcessedAt());
+    }
+
+    @Test
+    void marksDegradedCardDegraded() {
+        when(statusRepository.findByCode("degraded")).thenReturn(Optional.of(new CardProcessingStatus("degraded")));
+        CardProcessingContext context = context();
+        context.markDegraded();
+        handler.handle(context);
+
+        assertEquals("degraded", context.getCard().getProcessingStatus().getCode());
+    }
+
+    @Test
+    void createsTheDegradedStatusOnFirstUse() {
+        when(statusRepository.findByCode("degraded")).thenReturn(Optional.empty());
+        when(statusRepository.saveAndFlush(any(CardProcessingStatus.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        CardProcessingContext context = context();
+        context.markDegraded();
+        handler.handle(context);
+
+        assertEquals("degraded", context.getCard().getProcessingStatus().getCode());
+        verify(statusRepository).saveAndFlush(any(CardProcessingStatus.class));
+    }
+
+    private static CardProcessingContext context() {
+        return new CardProcessingContext(new ProductSeries(), new SeriesCard());
+    }
+}
@@ -0,0 +1,119 @@
+package com.repackio.backbreaker.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.repackio.backbreaker.aws.services.CardMessagesNotSentException;
+import com.repackio.backbreaker.aws.services.SqsProducerService;
+import com.repackio.backbreaker.models.CardProcessingStatus;
+import com.repackio.backbreaker.models.SeriesCard;
+import com.repackio.backbreaker.repositories.CardProcessingStatusRepository;
+import com.repackio.backbreaker.repositories.ProductSeriesRepository;
+import com.repackio.backbreaker.repositories.SeriesCardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.services.sqs.SqsAsyncClient;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResponse;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchResultEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SeriesCardServiceTest {
+
+    private static final long QUEUED = 2L;
+    private static final long ERROR = 5L;
+
+    private SqsAsyncClient sqsAsyncClient;
+    private SeriesCardRepository seriesCardRepository;
+    private SeriesCardService service;
+    private Set<Long> rejectedCards = Set.of();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        sqsAsyncClient = mock(SqsAsyncClient.class);
+        when(sqsAsyncClient.sendMessageBatch(any(Consumer.class))).thenAnswer(invocation -> {
+            SendMessageBatchRequest.Builder builder = SendMessageBatchRequest.builder();
+            invocation.<Consumer<SendMessageBatchRequest.Builder>>getArgument(0).accept(builder);
+            SendMessageBatchResponse.Builder response = SendMessageBatchResponse.builder();
+            List<BatchResultErrorEntry> failed = new ArrayList<>();
+            List<SendMessageBatchResultEntry> sent = new ArrayList<>();
+            for (SendMessageBatchRequestEntry entry : builder.build().entries()) {
+                long cardId = new ObjectMapper().readTree(entry.messageBody()).get("cardId").asLong();
+                if (rejectedCards.contains(cardId)) {
+                    failed.add(BatchResultErrorEntry.builder().id(entry.id()).senderFault(true)
+                            .code("InvalidMessageContents").message("rejected").build());
+                } else {
+                    sent.add(SendMessageBatchResultEntry.builder().id(entry.id()).build());
+                }
+            }
+            return CompletableFuture.completedFuture(response.successful(sent).failed(failed).build());
+        });
+        SqsProducerService producer = new SqsProducerService(mock(SqsClient.class), sqsAsyncClient, new ObjectMapper());
+        ReflectionTestUtils.setField(producer, "queueUrl", "queue");
+
+        seriesCardRepository = mock(SeriesCardRepository.class);
+        when(seriesCardRepository.findBySeriesIdAndFrontImgUrlIsNotNullAndBackImgUrlIsNotNull(1L))
+                .thenReturn(List.of(card(10L), card(11L), card(12L)));
+        when(seriesCardRepository.updateProcessingStatusOfCardsWithImages(1L, QUEUED)).thenReturn(3);
+
+        CardProcessingStatusRepository statusRepository = mock(CardProcessingStatusRepository.class);
+        when(statusRepository.findByCode("queued")).thenReturn(Optional.of(status("queued", QUEUED)));
+        when(statusRepository.findByCode("error")).thenReturn(Optional.of(status("error", ERROR)));
+        when(statusRepository.findOrCreateByCode(any())).thenCallRealMethod();
+
+        service = new SeriesCardService(seriesCardRepository, statusRepository, producer, new ObjectMapper(),
+                mock(ProductSeriesRepository.class));
+    }
+
+    @Test
+    void queuesEveryCard() {
+        service.processAllCardsInSeries(1L);
+
+        verify(seriesCardRepository).updateProcessingStatusOfCardsWithImages(1L, QUEUED);
+        verify(seriesCardRepository, never()).updateProcessingStatusOfCards(any(), anyLong());
+    }
+
+    @Test
+    void marksCardsThatCouldNotBeEnqueuedAsFailed() {
+        rejectedCards = Set.of(11L);
+
+        CardMessagesNotSentException error = assertThrows(CardMessagesNotSentException.class,
+                () -> service.processAllCardsInSeries(1L));
+        assertEquals(List.of(11L), error.getCardIds());
+        verify(seriesCardRepository).updateProcessingStatusOfCards(eq(List.of(11L)), eq(ERROR));
+    }
+
+    private static SeriesCard card(long id) {
+        SeriesCard card = new SeriesCard();
+        ReflectionTestUtils.setField(card, "id", id);
+        card.setSeriesId(1L);
+        card.setFrontImgUrl("series/1/cards/" + id + "/front.jpg");
+        card.setBackImgUrl("series/1/cards/" + id + "/back.jpg");
+        return card;
+    }
+
+    private static CardProcessingStatus status(String code, long id) {
+        CardProcessingStatus status = new CardProcessingStatus(code);
+        ReflectionTestUtils.setField(status, "id", id);
+        return status;
+    }
+}